@@ -0,0 +1,75 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of the compiler separately, over a list of inputs given by subclasses.
+ * <p>
+ * Every stage gets the output of the previous one already computed, so a regression shows up only in the stage that
+ * caused it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractStageBenchmark {
+
+    protected Map<String, String> config;
+
+    protected List<BenchmarkInputs.Input> inputs;
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (var input : inputs) {
+            blackhole.consume(new JmmParserImpl().parse(input.code, config));
+        }
+    }
+
+    @Benchmark
+    public void buildSymbolTable(Blackhole blackhole) {
+        for (var input : inputs) {
+            blackhole.consume(JmmSymbolTableBuilder.build(input.parserResult.getRootNode()));
+        }
+    }
+
+    @Benchmark
+    public void semanticAnalysis(Blackhole blackhole) {
+        for (var input : inputs) {
+            blackhole.consume(new JmmAnalysisImpl().semanticAnalysis(input.parserResult));
+        }
+    }
+
+    @Benchmark
+    public void toOllir(Blackhole blackhole) {
+        for (var input : inputs) {
+            blackhole.consume(new JmmOptimizationImpl().toOllir(input.semanticsResult));
+        }
+    }
+
+    @Benchmark
+    public void toJasmin(Blackhole blackhole) {
+        for (var input : inputs) {
+            blackhole.consume(new JasminBackendImpl().toJasmin(input.ollirResult));
+        }
+    }
+}
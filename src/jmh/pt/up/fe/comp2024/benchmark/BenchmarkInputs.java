@@ -0,0 +1,135 @@
+package pt.up.fe.comp2024.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ProgramGenerator;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sources used by the benchmarks, together with the output of every stage for each of them.
+ * <p>
+ * Each stage is benchmarked on the output of the previous one, so only sources that go through the whole pipeline
+ * without errors are kept.
+ */
+public class BenchmarkInputs {
+
+    public static final String FIXTURES = "fixtures";
+    public static final String SYNTHETIC = "synthetic";
+
+    private static final File FIXTURES_FOLDER = new File("test/pt/up/fe/comp/cpf");
+    private static final File LIBS_FOLDER = new File("libs-jmm/java");
+
+    /**
+     * One source and the result of each stage over it.
+     */
+    public static class Input {
+        public final String name;
+        public final String code;
+        public final JmmParserResult parserResult;
+        public final JmmSemanticsResult semanticsResult;
+        public final OllirResult ollirResult;
+
+        private Input(String name, String code, JmmParserResult parserResult, JmmSemanticsResult semanticsResult,
+                      OllirResult ollirResult) {
+            this.name = name;
+            this.code = code;
+            this.parserResult = parserResult;
+            this.semanticsResult = semanticsResult;
+            this.ollirResult = ollirResult;
+        }
+    }
+
+    public static List<Input> load(String corpus, Map<String, String> config) {
+        var sources = switch (corpus) {
+            case FIXTURES -> getFixtureSources();
+            case SYNTHETIC -> getSyntheticSources();
+            default -> throw new RuntimeException("Unknown benchmark corpus '" + corpus + "'");
+        };
+
+        var inputs = new ArrayList<Input>();
+        for (var source : sources) {
+            prepare(source[0], source[1], config).ifPresent(inputs::add);
+        }
+
+        if (inputs.isEmpty()) {
+            throw new RuntimeException("No valid input in corpus '" + corpus + "', is the working directory the repository root?");
+        }
+
+        System.out.println("Corpus '" + corpus + "': " + inputs.size() + " of " + sources.size() + " sources compile");
+
+        return inputs;
+    }
+
+    /**
+     * Runs every stage over the given source.
+     *
+     * @return the source with the result of each stage, or empty if some stage fails
+     */
+    public static Optional<Input> prepare(String name, String code, Map<String, String> config) {
+        try {
+            var parserResult = new JmmParserImpl().parse(code, config);
+            if (ReportUtils.anyError(parserResult.getReports())) {
+                return Optional.empty();
+            }
+
+            var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                return Optional.empty();
+            }
+
+            var ollirResult = new JmmOptimizationImpl().toOllir(semanticsResult);
+            var jasminResult = new JasminBackendImpl().toJasmin(ollirResult);
+            if (ReportUtils.anyError(jasminResult.getReports())) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new Input(name, code, parserResult, semanticsResult, ollirResult));
+        } catch (RuntimeException e) {
+            // Not supported by some stage, leave it out
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return pairs of name and code, for the checkpoint fixtures and the library classes in libs-jmm
+     */
+    private static List<String[]> getFixtureSources() {
+        var sources = new ArrayList<String[]>();
+
+        for (var file : SpecsIo.getFilesRecursive(FIXTURES_FOLDER, "jmm")) {
+            sources.add(new String[]{file.getPath(), SpecsIo.read(file)});
+        }
+
+        // Library classes are plain Java, the only construct Java-- does not accept is the 'public' in the class
+        for (var file : SpecsIo.getFilesRecursive(LIBS_FOLDER, "java")) {
+            var code = SpecsIo.read(file).replaceFirst("public\\s+class", "class");
+            sources.add(new String[]{file.getPath(), code});
+        }
+
+        sources.sort((a, b) -> a[0].compareTo(b[0]));
+        return sources;
+    }
+
+    private static List<String[]> getSyntheticSources() {
+        var generator = new ProgramGenerator()
+                .setMethods(200)
+                .setStatements(20)
+                .setLocals(12);
+
+        List<String[]> sources = new ArrayList<>();
+        sources.add(new String[]{generator.getClassName(), generator.generate()});
+        return sources;
+    }
+}
@@ -0,0 +1,46 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.ProgramGenerator;
+
+import java.util.List;
+
+/**
+ * Measures each stage of the compiler over a generated program, growing one dimension of its shape at a time.
+ * <p>
+ * Time per stage against the size gives the scaling curve of each stage. For memory, run with the GC profiler, e.g.
+ * {@code gradle jmh -PjmhArgs="-prof gc ScalingBenchmark"}, and look at gc.alloc.rate.norm.
+ */
+public class ScalingBenchmark extends AbstractStageBenchmark {
+
+    public static final String METHODS = "methods";
+    public static final String STATEMENTS = "statements";
+    public static final String LOCALS = "locals";
+    public static final String DEPTH = "depth";
+
+    @Param({METHODS, STATEMENTS, LOCALS, DEPTH})
+    public String shape;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    @Setup
+    public void setup() {
+        config = CompilerConfig.getDefault();
+
+        var generator = switch (shape) {
+            case METHODS -> new ProgramGenerator().setMethods(size);
+            case STATEMENTS -> new ProgramGenerator().setMethods(1).setStatements(size);
+            case LOCALS -> new ProgramGenerator().setMethods(1).setLocals(size);
+            case DEPTH -> new ProgramGenerator().setMethods(1).setExpressionDepth(size);
+            default -> throw new RuntimeException("Unknown shape '" + shape + "'");
+        };
+
+        var name = shape + "_" + size;
+        var input = BenchmarkInputs.prepare(name, generator.generate(), config)
+                .orElseThrow(() -> new RuntimeException("Generated program '" + name + "' does not compile"));
+        inputs = List.of(input);
+    }
+}
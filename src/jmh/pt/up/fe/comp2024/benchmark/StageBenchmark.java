@@ -0,0 +1,20 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import pt.up.fe.comp2024.CompilerConfig;
+
+/**
+ * Measures each stage of the compiler over all the sources of a corpus. Run with {@code gradle jmh}.
+ */
+public class StageBenchmark extends AbstractStageBenchmark {
+
+    @Param({BenchmarkInputs.FIXTURES, BenchmarkInputs.SYNTHETIC})
+    public String corpus;
+
+    @Setup
+    public void setup() {
+        config = CompilerConfig.getDefault();
+        inputs = BenchmarkInputs.load(corpus, config);
+    }
+}
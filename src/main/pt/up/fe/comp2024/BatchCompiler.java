@@ -0,0 +1,86 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles several sources on a bounded pool of worker threads.
+ * <p>
+ * Each source goes through the whole pipeline in a single task, and results are returned in input order.
+ */
+public class BatchCompiler {
+
+    private final Map<String, String> config;
+    private final JmmCompiler compiler;
+
+    public BatchCompiler(Map<String, String> config) {
+        this.config = config;
+        this.compiler = new JmmCompiler();
+    }
+
+    public List<CompilationResult> compile(List<File> inputFiles) {
+        var threads = Math.min(CompilerConfig.getThreads(config), Math.max(inputFiles.size(), 1));
+        var pool = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<CompilationResult>> futures = new ArrayList<>();
+            for (var inputFile : inputFiles) {
+                futures.add(pool.submit(() -> compileFile(inputFile)));
+            }
+
+            List<CompilationResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(getResult(futures.get(i), inputFiles.get(i)));
+            }
+
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private CompilationResult getResult(Future<CompilationResult> future, File inputFile) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while compiling '" + inputFile + "'", e);
+        } catch (ExecutionException e) {
+            // Errors, such as a StackOverflowError on deeply nested code, are reported as well
+            var cause = e.getCause() instanceof Exception exception ? exception : new RuntimeException(e.getCause());
+            var report = Report.newError(Stage.OTHER, -1, -1, "Exception during compilation", cause);
+            return new CompilationResult(inputFile.getPath(), List.of(report));
+        }
+    }
+
+    private CompilationResult compileFile(File inputFile) {
+        // Each file gets its own config, so that stages see the right input file
+        var fileConfig = new HashMap<>(config);
+        CompilerConfig.setInputFile(fileConfig, inputFile);
+
+        var result = compiler.compile(inputFile.getPath(), SpecsIo.read(inputFile), fileConfig);
+
+        if (result.isSuccess()) {
+            var outputDir = CompilerConfig.getOutputDir(config).orElse(inputFile.getAbsoluteFile().getParentFile());
+
+            if (result.getClassFileResult().isPresent()) {
+                result.getClassFileResult().get().write(outputDir);
+            } else {
+                var jasminResult = result.getJasminResult().orElseThrow();
+                SpecsIo.write(new File(outputDir, jasminResult.getClassName() + ".j"), jasminResult.getJasminCode());
+            }
+        }
+
+        return result;
+    }
+}
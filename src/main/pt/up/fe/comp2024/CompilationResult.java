@@ -0,0 +1,82 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.profiling.StageMeasurement;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of running the whole pipeline over a single source.
+ * <p>
+ * The OLLIR and Jasmin results are only present if the stages that produce them were reached. With the class file
+ * backend, the result of code generation is a class file instead of Jasmin code.
+ */
+public class CompilationResult {
+
+    private final String name;
+    private final List<Report> reports;
+    private final OllirResult ollirResult;
+    private final JasminResult jasminResult;
+    private final ClassFileResult classFileResult;
+    private final List<StageMeasurement> measurements;
+
+    public CompilationResult(String name, List<Report> reports, OllirResult ollirResult, JasminResult jasminResult,
+                             ClassFileResult classFileResult, List<StageMeasurement> measurements) {
+        this.name = name;
+        this.reports = reports;
+        this.ollirResult = ollirResult;
+        this.jasminResult = jasminResult;
+        this.classFileResult = classFileResult;
+        this.measurements = measurements;
+    }
+
+    public CompilationResult(String name, List<Report> reports, OllirResult ollirResult, JasminResult jasminResult,
+                             List<StageMeasurement> measurements) {
+        this(name, reports, ollirResult, jasminResult, null, measurements);
+    }
+
+    public CompilationResult(String name, List<Report> reports, List<StageMeasurement> measurements) {
+        this(name, reports, null, null, measurements);
+    }
+
+    public CompilationResult(String name, List<Report> reports) {
+        this(name, reports, Collections.emptyList());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public Optional<OllirResult> getOllirResult() {
+        return Optional.ofNullable(ollirResult);
+    }
+
+    public Optional<JasminResult> getJasminResult() {
+        return Optional.ofNullable(jasminResult);
+    }
+
+    public Optional<ClassFileResult> getClassFileResult() {
+        return Optional.ofNullable(classFileResult);
+    }
+
+    /**
+     * @return the measurements of each stage that ran, empty if profiling was not enabled
+     */
+    public List<StageMeasurement> getMeasurements() {
+        return measurements;
+    }
+
+    public boolean isSuccess() {
+        return (jasminResult != null || classFileResult != null) && !ReportUtils.anyError(reports);
+    }
+}
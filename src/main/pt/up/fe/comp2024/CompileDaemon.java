@@ -0,0 +1,207 @@
+package pt.up.fe.comp2024;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a compiler JVM alive and serves compile requests over a loopback socket.
+ * <p>
+ * The protocol is one JSON object per line in each direction. A request has the form
+ * {@code {"name": "Foo.jmm", "source": "...", "config": {"optimize": "true"}}}, where only "source" is required.
+ * The answer has the name, a "success" flag, the "ollir" and "jasmin" code (when those stages were reached), the
+ * "classFile" in Base64 (with the class file backend) and the list of "reports". A connection can send any number of requests,
+ * and is closed after {@link #IDLE_TIMEOUT_MS} without one.
+ * <p>
+ * Since the JVM is reused, class loading, the ANTLR DFA cache (shared by all parser instances) and JIT-compiled code
+ * stay warm between requests.
+ */
+public class CompileDaemon {
+
+    // Connections that send no request for this long are closed
+    static final int IDLE_TIMEOUT_MS = 60_000;
+
+    private final Map<String, String> config;
+    private final JmmCompiler compiler;
+    private final Gson gson;
+
+    public CompileDaemon(Map<String, String> config) {
+        this.config = config;
+        this.compiler = new JmmCompiler();
+        this.gson = new Gson();
+    }
+
+    public void run(int port) throws IOException {
+        try (var server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Compile daemon listening on " + server.getInetAddress().getHostAddress() + ":"
+                    + server.getLocalPort());
+
+            run(server);
+        }
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     * <p>
+     * Each connection is read by a thread of its own, and the "threads" option only bounds the requests compiled at
+     * the same time: a compile thread is taken for each request and released once it is answered, so a client that
+     * keeps its connection open without sending anything does not hold one. Connections idle for longer than
+     * {@link #IDLE_TIMEOUT_MS} are closed.
+     *
+     * @param server
+     */
+    void run(ServerSocket server) throws IOException {
+        var compilePool = Executors.newFixedThreadPool(CompilerConfig.getThreads(config));
+        var connectionPool = Executors.newCachedThreadPool();
+
+        try {
+            while (!server.isClosed()) {
+                var socket = server.accept();
+                connectionPool.submit(() -> serve(socket, compilePool));
+            }
+        } catch (SocketException e) {
+            // Closing the server is how the daemon is stopped
+            if (!server.isClosed()) {
+                throw e;
+            }
+        } finally {
+            connectionPool.shutdownNow();
+            compilePool.shutdownNow();
+        }
+    }
+
+    private void serve(Socket socket, ExecutorService compilePool) {
+        try (socket;
+             var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            socket.setSoTimeout(IDLE_TIMEOUT_MS);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                var request = line;
+                writer.write(compilePool.submit(() -> handle(request)).get());
+                writer.newLine();
+                writer.flush();
+            }
+        } catch (IOException | ExecutionException e) {
+            // Client went away or timed out, nothing else to do for this connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compiles the source in a single JSON request.
+     *
+     * @param request
+     * @return the JSON response, in a single line
+     */
+    public String handle(String request) {
+        JsonObject requestObject;
+        try {
+            requestObject = JsonParser.parseString(request).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            return error("Could not parse request: " + e.getMessage());
+        }
+
+        if (!requestObject.has("source")) {
+            return error("Request does not have a 'source'");
+        }
+
+        if (!isString(requestObject.get("source"))) {
+            return error("The 'source' of a request must be a string");
+        }
+
+        if (requestObject.has("name") && !isString(requestObject.get("name"))) {
+            return error("The 'name' of a request must be a string");
+        }
+
+        if (requestObject.has("config") && !requestObject.get("config").isJsonObject()) {
+            return error("The 'config' of a request must be an object");
+        }
+
+        var name = requestObject.has("name") ? requestObject.get("name").getAsString() : "<request>";
+        var source = requestObject.get("source").getAsString();
+
+        // Options in the request override the ones the daemon was started with
+        var requestConfig = new HashMap<>(config);
+        if (requestObject.has("config")) {
+            for (var entry : requestObject.getAsJsonObject("config").entrySet()) {
+                if (!entry.getValue().isJsonPrimitive()) {
+                    return error("Option '" + entry.getKey() + "' of the request must be a string, number or boolean");
+                }
+
+                requestConfig.put(entry.getKey(), entry.getValue().getAsString());
+            }
+        }
+
+        try {
+            CompilerConfig.verify(requestConfig);
+        } catch (RuntimeException e) {
+            return error("Invalid config: " + e.getMessage());
+        }
+
+        var result = compiler.compile(name, source, requestConfig);
+
+        var response = new JsonObject();
+        response.addProperty("name", name);
+        response.addProperty("success", result.isSuccess());
+        result.getOllirResult().ifPresent(ollir -> response.addProperty("ollir", ollir.getOllirCode()));
+        result.getJasminResult().ifPresent(jasmin -> response.addProperty("jasmin", jasmin.getJasminCode()));
+        result.getClassFileResult().ifPresent(classFile -> response.addProperty("classFile",
+                Base64.getEncoder().encodeToString(classFile.getClassFile())));
+
+        var reports = new JsonArray();
+        result.getReports().stream().map(this::toJson).forEach(reports::add);
+        response.add("reports", reports);
+
+        return gson.toJson(response);
+    }
+
+    private JsonObject toJson(Report report) {
+        var json = new JsonObject();
+        json.addProperty("type", report.getType().name());
+        json.addProperty("stage", report.getStage().name());
+        json.addProperty("line", report.getLine());
+        json.addProperty("column", report.getColumn());
+        json.addProperty("message", report.getMessage());
+        return json;
+    }
+
+    private static boolean isString(JsonElement element) {
+        return element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+    }
+
+    private String error(String message) {
+        var response = new JsonObject();
+        response.addProperty("success", false);
+        response.addProperty("error", message);
+        return gson.toJson(response);
+    }
+}
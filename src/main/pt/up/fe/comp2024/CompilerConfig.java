@@ -1,15 +1,37 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.specs.util.SpecsIo;
+
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public class CompilerConfig {
 
+    public static final String PARSE_MODE_LL = "LL";
+    public static final String PARSE_MODE_SLL = "SLL";
+
+    public static final String BACKEND_JASMIN = "jasmin";
+    public static final String BACKEND_CLASS = "class";
+
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String BATCH_INPUT = "batchInput";
+    private static final String THREADS = "threads";
+    private static final String OUTPUT_DIR = "outputDir";
+    private static final String DAEMON_PORT = "daemonPort";
+    private static final String REUSE_PARSER = "reuseParser";
+    private static final String PARSE_MODE = "parseMode";
+    private static final String PROFILE = "profile";
+    private static final String FUSED_ANALYSIS = "fusedAnalysis";
+    private static final String OLLIR_CODE = "ollirCode";
+    private static final String PARALLEL_METHODS = "parallelMethods";
+    private static final String BACKEND = "backend";
+    private static final String INLINE = "inline";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +40,18 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("b", CompilerConfig.BATCH_INPUT);
+        shortToLong.put("t", CompilerConfig.THREADS);
+        shortToLong.put("d", CompilerConfig.OUTPUT_DIR);
+        shortToLong.put("s", CompilerConfig.DAEMON_PORT);
+        shortToLong.put("p", CompilerConfig.REUSE_PARSER);
+        shortToLong.put("m", CompilerConfig.PARSE_MODE);
+        shortToLong.put("f", CompilerConfig.PROFILE);
+        shortToLong.put("a", CompilerConfig.FUSED_ANALYSIS);
+        shortToLong.put("l", CompilerConfig.OLLIR_CODE);
+        shortToLong.put("j", CompilerConfig.PARALLEL_METHODS);
+        shortToLong.put("c", CompilerConfig.BACKEND);
+        shortToLong.put("n", CompilerConfig.INLINE);
     }
 
 
@@ -32,15 +66,215 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    public static void setInputFile(Map<String, String> config, File inputFile) {
+        config.put(INPUT_FILE, inputFile.getAbsolutePath());
+    }
+
+    public static boolean isBatch(Map<String, String> config) {
+        return config.containsKey(BATCH_INPUT);
+    }
+
+    /**
+     * Expands the '-b' option into the list of files to compile.
+     * <p>
+     * The option is a comma-separated list of paths. Directories are searched recursively for .jmm files.
+     *
+     * @param config
+     * @return the input files, sorted by path inside each directory
+     */
+    public static List<File> getBatchInputs(Map<String, String> config) {
+        var inputs = new ArrayList<File>();
+
+        var batchInput = config.get(BATCH_INPUT);
+        if (batchInput == null) {
+            return inputs;
+        }
+
+        for (String path : batchInput.split(",")) {
+            var file = new File(path.strip());
+
+            if (file.isDirectory()) {
+                SpecsIo.getFilesRecursive(file, "jmm").stream()
+                        .sorted()
+                        .forEach(inputs::add);
+            } else {
+                inputs.add(file);
+            }
+        }
+
+        return inputs;
+    }
+
+    public static int getThreads(Map<String, String> config) {
+        var threads = config.get(THREADS);
+
+        if (threads == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        return getInteger(config, THREADS, threads);
+    }
+
+    public static Optional<File> getOutputDir(Map<String, String> config) {
+        var outputDir = config.get(OUTPUT_DIR);
+
+        if (outputDir == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(outputDir));
+    }
+
+    public static boolean isDaemon(Map<String, String> config) {
+        return config.containsKey(DAEMON_PORT);
+    }
+
+    public static int getDaemonPort(Map<String, String> config) {
+        return getInteger(config, DAEMON_PORT, "0");
+    }
+
+    /**
+     * @param config
+     * @return true if each thread should keep and reuse its lexer and parser instances
+     */
+    public static boolean getReuseParser(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(REUSE_PARSER, "false"));
+    }
+
+    /**
+     * @param config
+     * @return "LL" to always parse with full LL prediction, or "SLL" to try SLL first and only fall back to LL if it
+     * fails
+     */
+    public static String getParseMode(Map<String, String> config) {
+        var parseMode = config.getOrDefault(PARSE_MODE, PARSE_MODE_LL).toUpperCase();
+
+        if (!parseMode.equals(PARSE_MODE_LL) && !parseMode.equals(PARSE_MODE_SLL)) {
+            throw new RuntimeException("Unknown parse mode '" + parseMode + "', expected 'LL' or 'SLL'");
+        }
+
+        return parseMode;
+    }
+
+    /**
+     * @param config
+     * @return "jasmin" to generate Jasmin code, or "class" to write class files directly, without Jasmin code
+     */
+    public static String getBackend(Map<String, String> config) {
+        var backend = config.getOrDefault(BACKEND, BACKEND_JASMIN).toLowerCase();
+
+        if (!backend.equals(BACKEND_JASMIN) && !backend.equals(BACKEND_CLASS)) {
+            throw new RuntimeException("Unknown backend '" + backend + "', expected 'jasmin' or 'class'");
+        }
+
+        return backend;
+    }
+
+    /**
+     * @param config
+     * @return true if semantic analysis should run as a single fused pass instead of one traversal per pass
+     */
+    public static boolean getFusedAnalysis(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(FUSED_ANALYSIS, "false"));
+    }
+
+    /**
+     * @param config
+     * @return true if the OLLIR code of each program should be generated, for debugging. Otherwise the OLLIR class is
+     * built directly from the AST, and compilation results have no OLLIR code
+     */
+    public static boolean getOllirCode(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(OLLIR_CODE, "false"));
+    }
+
+    /**
+     * @param config
+     * @return how many methods of a class are compiled at the same time. '-j' alone uses all processors, '-j=N' uses N
+     * threads, and without the option methods are compiled one after another. The result is the same in every case
+     */
+    public static int getMethodParallelism(Map<String, String> config) {
+        var parallelism = config.get(PARALLEL_METHODS);
+
+        if (parallelism == null) {
+            return 1;
+        }
+
+        if (parallelism.equals("true")) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        return getInteger(config, PARALLEL_METHODS, parallelism);
+    }
+
+    public static boolean isProfiling(Map<String, String> config) {
+        return config.containsKey(PROFILE);
+    }
+
+    /**
+     * @param config
+     * @return the file where stage measurements are written, as CSV if it ends in '.csv' and as JSON otherwise. Empty
+     * if '-f' was given without a file, in which case the JSON is printed to the standard output
+     */
+    public static Optional<File> getProfileOutput(Map<String, String> config) {
+        var profile = config.get(PROFILE);
+
+        if (profile == null || profile.equals("true")) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(profile));
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
 
     public static int getRegisterAllocation(Map<String, String> config) {
-        return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
+        return getInteger(config, REGISTER, "-1");
+    }
+
+    /**
+     * @param config
+     * @return how many OLLIR instructions a method can have at most to be inlined where it is called, with '-o'. '-n=0'
+     * inlines nothing
+     */
+    public static int getInlineBudget(Map<String, String> config) {
+        int budget = getInteger(config, INLINE, "12");
+
+        if (budget < 0) {
+            throw new RuntimeException("Option '-n' expects a non-negative number of instructions, got '" + budget
+                    + "'");
+        }
+
+        return budget;
     }
 
 
+    /**
+     * Reads a numeric option. A short option given without a value, e.g. a bare '-t', is stored as "true" and is
+     * rejected here like any other value that is not a number.
+     *
+     * @param config
+     * @param option       the long name of the option
+     * @param defaultValue the value used if the option was not given
+     * @throws RuntimeException naming the option if its value is not a number
+     */
+    private static int getInteger(Map<String, String> config, String option, String defaultValue) {
+        var value = config.getOrDefault(option, defaultValue);
+        var shortOption = getShortOpt(option);
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            if (value.equals("true")) {
+                throw new RuntimeException("Option '-" + shortOption + "' expects a number, use '-" + shortOption
+                        + "=<N>'");
+            }
+
+            throw new RuntimeException("Option '-" + shortOption + "' expects a number, got '" + value + "'");
+        }
+    }
+
     public static Map<String, String> getDefault() {
 
         var config = new HashMap<String, String>();
@@ -56,6 +290,15 @@ public class CompilerConfig {
         return shortToLong.get(shortOpt);
     }
 
+    private static String getShortOpt(String longOpt) {
+
+        return shortToLong.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(longOpt))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(longOpt);
+    }
+
     private static boolean isShortOpt(String shortOpt) {
 
         return shortToLong.containsKey(shortOpt);
@@ -89,9 +332,32 @@ public class CompilerConfig {
             config.put(getLongOpt(shortOption), value);
         }
 
+        if (isDaemon(config)) {
+            var port = getDaemonPort(config);
+            if (port < 0 || port > 65535) {
+                throw new RuntimeException("Option '-s' expects a port between 0 and 65535, got '" + port + "'");
+            }
+
+            verify(config);
+
+            return config;
+        }
+
+        if (isBatch(config)) {
+            for (var input : getBatchInputs(config)) {
+                if (!input.isFile()) {
+                    throw new RuntimeException("Could not find input file '" + input + "'");
+                }
+            }
+
+            verify(config);
+
+            return config;
+        }
+
         if (!config.containsKey(INPUT_FILE)) {
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
+            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>' or '-b=<DIR_OR_FILES>'");
         }
 
         // make sure we save the absolute path of the input file
@@ -103,12 +369,32 @@ public class CompilerConfig {
         var absolutePath = inputFile.getAbsolutePath();
         config.put(INPUT_FILE, absolutePath);
 
-        // Verify if values are valid
-        getOptimize(config);
-        getRegisterAllocation(config);
+        verify(config);
 
         return config;
     }
 
+    /**
+     * Verifies the values of the options the compilation uses, in every mode.
+     *
+     * @param config
+     * @throws RuntimeException if a value is not valid
+     */
+    public static void verify(Map<String, String> config) {
+        if (getThreads(config) < 1) {
+            throw new RuntimeException("Option '-t' expects a positive number of threads");
+        }
+
+        if (getMethodParallelism(config) < 1) {
+            throw new RuntimeException("Option '-j' expects a positive number of threads");
+        }
+
+        getParseMode(config);
+        getBackend(config);
+        getOptimize(config);
+        getInlineBudget(config);
+        getRegisterAllocation(config);
+    }
+
 
 }
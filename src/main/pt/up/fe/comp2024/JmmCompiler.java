@@ -0,0 +1,145 @@
+package pt.up.fe.comp2024;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.profiling.StageProfiler;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsCollections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Runs every stage of the compiler over a single source, stopping at the first stage that reports errors.
+ * <p>
+ * Stage implementations are created for each call, so the same instance can be used by several threads. If profiling
+ * is enabled in the config, the result also has the measurements of each stage. The result only has OLLIR code if
+ * {@link CompilerConfig#getOllirCode} is enabled, or if the program could not be built without it. The last stage
+ * generates either Jasmin code or a class file, as chosen by {@link CompilerConfig#getBackend}.
+ */
+public class JmmCompiler {
+
+    public CompilationResult compile(String name, String code, Map<String, String> config) {
+        var profiler = CompilerConfig.isProfiling(config) ? new StageProfiler() : StageProfiler.disabled();
+        var classFileBackend = CompilerConfig.getBackend(config).equals(CompilerConfig.BACKEND_CLASS);
+        List<Report> reports = new ArrayList<>();
+
+        try {
+            // Parsing stage
+            JmmParserResult parserResult = profiler.measure("parse", () -> new JmmParserImpl().parse(code, config),
+                    JmmCompiler::countNodes);
+            if (ReportUtils.anyError(parserResult.getReports())) {
+                return new CompilationResult(name, parserResult.getReports(), profiler.getMeasurements());
+            }
+
+            // Semantic Analysis stage
+            JmmSemanticsResult semanticsResult = new JmmAnalysisImpl(profiler).semanticAnalysis(parserResult);
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                return new CompilationResult(name, semanticsResult.getReports(), profiler.getMeasurements());
+            }
+            reports = semanticsResult.getReports();
+
+            // Optimization stage
+            var optimization = new JmmOptimizationImpl();
+            var optimizedSemantics = profiler.measure("optimizeAst", () -> optimization.optimize(semanticsResult),
+                    JmmCompiler::countNodes);
+
+            // Unless its code is wanted, the OLLIR class is built directly, without generating and parsing OLLIR code
+            if (!CompilerConfig.getOllirCode(config)) {
+                var ollirClass = profiler.measure("ollirClass", () -> optimization.toOllirClass(optimizedSemantics),
+                        JmmCompiler::countInstructions);
+
+                if (ollirClass.isPresent()) {
+                    var optimizationReports = profiler.measure("optimizeOllir",
+                            () -> optimization.optimize(ollirClass.get(), config), List::size);
+                    reports = SpecsCollections.concat(reports, optimizationReports);
+                    if (ReportUtils.anyError(optimizationReports)) {
+                        return new CompilationResult(name, reports, profiler.getMeasurements());
+                    }
+                }
+
+                if (ollirClass.isPresent() && classFileBackend) {
+                    ClassFileResult classFileResult = profiler.measure("classFile",
+                            () -> new ClassFileBackendImpl().toClassFile(ollirClass.get(), optimizedSemantics),
+                            classFile -> classFile.getClassFile().length);
+
+                    return new CompilationResult(name, SpecsCollections.concat(reports, classFileResult.getReports()),
+                            null, null, classFileResult, profiler.getMeasurements());
+                }
+
+                if (ollirClass.isPresent()) {
+                    JasminResult jasminResult = profiler.measure("jasmin",
+                            () -> new JasminBackendImpl().toJasmin(ollirClass.get(), optimizedSemantics),
+                            jasmin -> jasmin.getJasminCode().length());
+
+                    return new CompilationResult(name, SpecsCollections.concat(reports, jasminResult.getReports()),
+                            null, jasminResult, profiler.getMeasurements());
+                }
+            }
+
+            var generatedOllir = profiler.measure("ollir", () -> optimization.toOllir(optimizedSemantics),
+                    ollir -> ollir.getOllirCode().length());
+            OllirResult ollirResult = profiler.measure("optimizeOllir", () -> optimization.optimize(generatedOllir),
+                    ollir -> ollir.getOllirCode().length());
+            if (ReportUtils.anyError(ollirResult.getReports())) {
+                return new CompilationResult(name, ollirResult.getReports(), ollirResult, null,
+                        profiler.getMeasurements());
+            }
+            reports = ollirResult.getReports();
+
+            // Code generation stage
+            if (classFileBackend) {
+                ClassFileResult classFileResult = profiler.measure("classFile",
+                        () -> new ClassFileBackendImpl().toClassFile(ollirResult),
+                        classFile -> classFile.getClassFile().length);
+
+                return new CompilationResult(name, classFileResult.getReports(), ollirResult, null, classFileResult,
+                        profiler.getMeasurements());
+            }
+
+            JasminResult jasminResult = profiler.measure("jasmin", () -> new JasminBackendImpl().toJasmin(ollirResult),
+                    jasmin -> jasmin.getJasminCode().length());
+
+            return new CompilationResult(name, jasminResult.getReports(), ollirResult, jasminResult,
+                    profiler.getMeasurements());
+
+        } catch (Exception e) {
+            // A stage failed without producing reports, keep what was collected until then
+            var failedReports = new ArrayList<>(reports);
+            failedReports.add(Report.newError(Stage.OTHER, -1, -1, "Exception during compilation", e));
+
+            return new CompilationResult(name, failedReports, profiler.getMeasurements());
+        }
+    }
+
+    private static long countNodes(JmmParserResult parserResult) {
+        // There is no tree when the code has syntax errors
+        var rootNode = parserResult.getRootNode();
+        return rootNode != null ? rootNode.getDescendantsAndSelfStream().count() : 0;
+    }
+
+    private static long countNodes(JmmSemanticsResult semanticsResult) {
+        return semanticsResult.getRootNode().getDescendantsAndSelfStream().count();
+    }
+
+    private static long countInstructions(Optional<ClassUnit> ollirClass) {
+        return ollirClass.stream()
+                .flatMap(classUnit -> classUnit.getMethods().stream())
+                .mapToLong(method -> method.getInstructions().size())
+                .sum();
+    }
+
+}
@@ -1,19 +1,11 @@
 package pt.up.fe.comp2024;
 
 import pt.up.fe.comp.TestUtils;
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.jasmin.JasminResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
-import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
-import pt.up.fe.comp2024.backend.JasminBackendImpl;
-import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
-import pt.up.fe.comp2024.parser.JmmParserImpl;
-import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
-import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.profiling.ProfileReport;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.IOException;
 import java.util.Map;
 
 public class Launcher {
@@ -23,44 +15,89 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        if (CompilerConfig.isDaemon(config)) {
+            runDaemon(config);
+            return;
+        }
+
+        if (CompilerConfig.isBatch(config)) {
+            runBatch(config);
+            return;
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
         String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
+        // The same pipeline as the batch and daemon modes, so that every option behaves the same
+        var result = new JmmCompiler().compile(inputFile.getPath(), code, config);
+        TestUtils.noErrors(result.getReports());
+
+        // Code generation stage
+        if (result.getClassFileResult().isPresent()) {
+            var outputDir = CompilerConfig.getOutputDir(config).orElse(inputFile.getAbsoluteFile().getParentFile());
+            System.out.println("Wrote " + result.getClassFileResult().get().write(outputDir));
+        } else {
+            // Print Jasmin code
+            System.out.println(result.getJasminResult().orElseThrow().getJasminCode());
+        }
+
+        if (CompilerConfig.isProfiling(config)) {
+            var report = new ProfileReport();
+            report.add(result.getName(), result.getMeasurements());
+            writeProfile(report, config);
+        }
+    }
 
+    private static void runDaemon(Map<String, String> config) {
+        try {
+            new CompileDaemon(config).run(CompilerConfig.getDaemonPort(config));
+        } catch (IOException e) {
+            throw new RuntimeException("Compile daemon stopped", e);
+        }
+    }
 
-        JmmSymbolTable symbolTable = JmmSymbolTableBuilder.build(parserResult.getRootNode());
+    private static void runBatch(Map<String, String> config) {
+        var inputFiles = CompilerConfig.getBatchInputs(config);
+        var results = new BatchCompiler(config).compile(inputFiles);
 
-        // Print AST
-        //System.out.println(parserResult.getRootNode().toTree());
+        // Reports are only printed after every file is done, in the order the files were given
+        int failed = 0;
+        for (var result : results) {
+            for (var report : result.getReports()) {
+                System.out.println(result.getName() + ": " + report);
+            }
 
-        // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
+            if (!result.isSuccess()) {
+                failed++;
+            }
+        }
 
+        System.out.println("Compiled " + (results.size() - failed) + " of " + results.size() + " files");
 
-        // Optimization stage
-        JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+        if (CompilerConfig.isProfiling(config)) {
+            var report = new ProfileReport();
+            for (var result : results) {
+                report.add(result.getName(), result.getMeasurements());
+            }
+            writeProfile(report, config);
+        }
 
-        // Print OLLIR code
-        //System.out.println(ollirResult.getOllirCode());
+        if (failed > 0) {
+            throw new RuntimeException("Batch compilation failed for " + failed + " file(s)");
+        }
+    }
 
-        // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
-        TestUtils.noErrors(jasminResult.getReports());
+    private static void writeProfile(ProfileReport report, Map<String, String> config) {
+        var profileOutput = CompilerConfig.getProfileOutput(config);
 
-        // Print Jasmin code
-        System.out.println(jasminResult.getJasminCode());
+        if (profileOutput.isPresent()) {
+            report.write(profileOutput.get());
+        } else {
+            System.out.println(report.toJson());
+        }
     }
 
 }
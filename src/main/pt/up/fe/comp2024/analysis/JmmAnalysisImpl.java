@@ -7,20 +7,39 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.passes.*;
+import pt.up.fe.comp2024.profiling.StageProfiler;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
 
-    private final List<AnalysisPass> analysisPasses;
+    private final StageProfiler profiler;
 
     public JmmAnalysisImpl() {
+        this(StageProfiler.disabled());
+    }
+
+    /**
+     * @param profiler measures the symbol table build and each analysis pass
+     */
+    public JmmAnalysisImpl(StageProfiler profiler) {
+
+        this.profiler = profiler;
+    }
+
+    private static List<AnalysisPass> getAnalysisPasses(Map<String, String> config) {
+        if (CompilerConfig.getFusedAnalysis(config)) {
+            return List.of(new TypeCheck(true));
+        }
 
-        this.analysisPasses = List.of(new UndeclaredVariable(), new TypeCheck());
+        return List.of(new UndeclaredVariable(), new TypeCheck());
     }
 
     @Override
@@ -28,14 +47,16 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
+        JmmSymbolTable table = profiler.measure("symbolTable", () -> JmmSymbolTableBuilder.build(rootNode),
+                JmmAnalysisImpl::countSymbols);
 
         List<Report> reports = new ArrayList<>();
 
         // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
+        for (var analysisPass : getAnalysisPasses(parserResult.getConfig())) {
             try {
-                var passReports = analysisPass.analyze(rootNode, table);
+                var passReports = profiler.measure("analysis:" + analysisPass.getClass().getSimpleName(),
+                        () -> analysisPass.analyze(rootNode, table), List::size);
                 reports.addAll(passReports);
             } catch (Exception e) {
                 reports.add(Report.newError(Stage.SEMANTIC,
@@ -50,4 +71,14 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         return new JmmSemanticsResult(parserResult, table, reports);
     }
+
+    private static long countSymbols(SymbolTable table) {
+        long symbols = table.getFields().size() + table.getMethods().size();
+
+        for (var method : table.getMethods()) {
+            symbols += table.getParameters(method).size() + table.getLocalVariables(method).size();
+        }
+
+        return symbols;
+    }
 }
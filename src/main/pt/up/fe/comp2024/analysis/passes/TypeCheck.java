@@ -1,6 +1,5 @@
 package pt.up.fe.comp2024.analysis.passes;
 
-import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
@@ -8,13 +7,23 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import java.util.ArrayList;
 import java.util.List;
 
 
+/**
+ * Checks declarations, statements and the types of expressions.
+ * <p>
+ * In fused mode it also does the work of {@link UndeclaredVariable}, so that semantic analysis is a single traversal:
+ * the tree is walked down to statements, and each expression is typed once by a {@link TypeGetter}, which also reports
+ * undeclared variables.
+ */
 public class TypeCheck extends AnalysisVisitor {
 
+    private final boolean fused;
+
     private String method;
     private List<String> variables = new ArrayList<>();
     private List<String> imports = new ArrayList<>();
@@ -22,6 +31,35 @@ public class TypeCheck extends AnalysisVisitor {
     private List<String> params = new ArrayList<>();
     boolean isStatic;
 
+    public TypeCheck() {
+        this(false);
+    }
+
+    public TypeCheck(boolean fused) {
+        this.fused = fused;
+    }
+
+    @Override
+    public Void visit(JmmNode jmmNode, JmmSymbolTable table) {
+        if (!fused) {
+            return super.visit(jmmNode, table);
+        }
+
+        getVisit(jmmNode).apply(jmmNode, table);
+
+        // Expressions were already visited by the TypeGetter of their statement
+        for (var child : jmmNode.getChildren()) {
+            if (!Kind.isExpr(child)) {
+                visit(child, table);
+            }
+        }
+
+        return null;
+    }
+
+    private TypeGetter newTypeGetter() {
+        return new TypeGetter(method, isStatic, fused);
+    }
 
     @Override
     public void buildVisitor(){
@@ -38,7 +76,7 @@ public class TypeCheck extends AnalysisVisitor {
         addVisit("Param", this::visitParam);
     }
 
-    private Void visitParam(JmmNode jmmNode, SymbolTable table) {
+    private Void visitParam(JmmNode jmmNode, JmmSymbolTable table) {
         String paramName = jmmNode.get("name");
 
         if(!params.contains(paramName)) {
@@ -55,7 +93,7 @@ public class TypeCheck extends AnalysisVisitor {
         return null;
     }
 
-    private Void visitClassDecl(JmmNode jmmNode, SymbolTable table) {
+    private Void visitClassDecl(JmmNode jmmNode, JmmSymbolTable table) {
         String className = jmmNode.get("className");
 
         if(imports.contains(className)){
@@ -71,7 +109,7 @@ public class TypeCheck extends AnalysisVisitor {
         return null;
     }
 
-    private Void visitImportDecl(JmmNode jmmNode, SymbolTable table) {
+    private Void visitImportDecl(JmmNode jmmNode, JmmSymbolTable table) {
         String[] importNames = jmmNode.get("value").substring(1, jmmNode.get("value").length() - 1).split(",");
         String importName = importNames[importNames.length - 1];
 
@@ -89,7 +127,7 @@ public class TypeCheck extends AnalysisVisitor {
         return null;
     }
 
-    private Void visitVarDecl(JmmNode jmmNode, SymbolTable table) {
+    private Void visitVarDecl(JmmNode jmmNode, JmmSymbolTable table) {
         String varName = jmmNode.get("name");
 
         if(!variables.contains(varName)) {
@@ -106,8 +144,8 @@ public class TypeCheck extends AnalysisVisitor {
         return null;
     }
 
-    private Void visitStmt(JmmNode jmmNode, SymbolTable table){
-        TypeGetter typeCheck = new TypeGetter(method, isStatic);
+    private Void visitStmt(JmmNode jmmNode, JmmSymbolTable table){
+        TypeGetter typeCheck = newTypeGetter();
 
         typeCheck.visit(jmmNode.getJmmChild(0),table);
 
@@ -117,8 +155,8 @@ public class TypeCheck extends AnalysisVisitor {
     }
 
 
-    private Void visitReturnStmt(JmmNode jmmNode, SymbolTable table) {
-        TypeGetter typeCheck = new TypeGetter(method, isStatic);
+    private Void visitReturnStmt(JmmNode jmmNode, JmmSymbolTable table) {
+        TypeGetter typeCheck = newTypeGetter();
 
         Type a = typeCheck.visit(jmmNode.getJmmChild(0),table);
 
@@ -137,29 +175,24 @@ public class TypeCheck extends AnalysisVisitor {
         return null;
     }
 
-    private Void visitArrayAssign(JmmNode jmmNode, SymbolTable table) {
-        TypeGetter typeCheck = new TypeGetter(method, isStatic);
-
-        var variable = table.getLocalVariables(method).stream().filter((v) -> v.getName().equals(jmmNode.get("var"))).findFirst();
-
+    private Void visitArrayAssign(JmmNode jmmNode, JmmSymbolTable table) {
+        TypeGetter typeCheck = newTypeGetter();
 
+        // Index and value are not typed, only checked for undeclared variables
+        typeCheck.checkDeclarations(jmmNode.getChildren(), table);
+        typeCheck.reports.forEach(this::addReport);
 
-        if (!variable.isPresent()){
-            variable = table.getParameters(method).stream().filter((v) -> v.getName().equals(jmmNode.get("var"))).findFirst();
-            if (!variable.isPresent()){
-                variable  = table.getFields().stream().filter((v) -> v.getName().equals(jmmNode.get("var"))).findFirst();
-                if (!variable.isPresent()){
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(jmmNode),
-                            NodeUtils.getColumn(jmmNode),
-                            "Variable " + jmmNode.get("var") + " not found",
-                            null)
-                    );
-                    return null;
-                }
-            }
+        var variable = table.resolve(method, jmmNode.get("var"));
 
+        if (variable.isEmpty()) {
+            addReport(Report.newError(
+                    Stage.SEMANTIC,
+                    NodeUtils.getLine(jmmNode),
+                    NodeUtils.getColumn(jmmNode),
+                    "Variable " + jmmNode.get("var") + " not found",
+                    null)
+            );
+            return null;
         }
 
         if (!variable.get().getType().isArray()) {
@@ -176,7 +209,7 @@ public class TypeCheck extends AnalysisVisitor {
     }
 
 
-    private Void visitMethodDecl(JmmNode method, SymbolTable table) {
+    private Void visitMethodDecl(JmmNode method, JmmSymbolTable table) {
         this.method = method.get("name");
         this.variables = new ArrayList<>();
         this.params = new ArrayList<>();
@@ -255,8 +288,8 @@ public class TypeCheck extends AnalysisVisitor {
 
 
 
-    private Void visitWhileStmt(JmmNode whileNode, SymbolTable table) {
-        TypeGetter typeCheck = new TypeGetter(method, isStatic);
+    private Void visitWhileStmt(JmmNode whileNode, JmmSymbolTable table) {
+        TypeGetter typeCheck = newTypeGetter();
 
         Type a = typeCheck.visit(whileNode.getJmmChild(0), table);
 
@@ -276,28 +309,25 @@ public class TypeCheck extends AnalysisVisitor {
         return null;
     }
 
-    private Void visitAssignStmt(JmmNode assignStmt, SymbolTable table) {
-
-        TypeGetter typeCheck = new TypeGetter(method, isStatic);
-
-        var variable = table.getLocalVariables(method).stream().filter((v) -> v.getName().equals(assignStmt.get("var"))).findFirst();
-
-        if (variable.isEmpty()){
-            variable = table.getParameters(method).stream().filter((v) -> v.getName().equals(assignStmt.get("var"))).findFirst();
-            if (variable.isEmpty()){
-                variable  = table.getFields().stream().filter((v) -> v.getName().equals(assignStmt.get("var"))).findFirst();
-                if (isStatic || variable.isEmpty()){
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(assignStmt),
-                            NodeUtils.getColumn(assignStmt),
-                            "Variable " + assignStmt.get("var") + " not found",
-                            null)
-                    );
-                    return null;
-                }
-            }
+    private Void visitAssignStmt(JmmNode assignStmt, JmmSymbolTable table) {
+
+        TypeGetter typeCheck = newTypeGetter();
+
+        var variable = table.resolve(method, assignStmt.get("var"));
+
+        // Fields cannot be assigned in a static method
+        if (variable.isEmpty() || (variable.get().isField() && isStatic)) {
+            addReport(Report.newError(
+                    Stage.SEMANTIC,
+                    NodeUtils.getLine(assignStmt),
+                    NodeUtils.getColumn(assignStmt),
+                    "Variable " + assignStmt.get("var") + " not found",
+                    null)
+            );
 
+            typeCheck.checkDeclarations(assignStmt.getChildren(), table);
+            typeCheck.reports.forEach(this::addReport);
+            return null;
         }
 
         Type expr = typeCheck.visit(assignStmt.getJmmChild(0),table);
@@ -351,8 +381,8 @@ public class TypeCheck extends AnalysisVisitor {
     }
 
 
-    private Void visitIfElseStmt(JmmNode ifElseStmt, SymbolTable table) {
-        TypeGetter typeCheck = new TypeGetter(method, isStatic);
+    private Void visitIfElseStmt(JmmNode ifElseStmt, JmmSymbolTable table) {
+        TypeGetter typeCheck = newTypeGetter();
 
         Type a = typeCheck.visit(ifElseStmt.getJmmChild(0), table);
 
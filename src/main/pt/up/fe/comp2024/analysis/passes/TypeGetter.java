@@ -1,18 +1,18 @@
 package pt.up.fe.comp2024.analysis.passes;
 
-import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
-public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
+public class TypeGetter extends AJmmVisitor<JmmSymbolTable, Type> {
 
     public List<Report> reports = new ArrayList<>();
     public final static Type INT = new Type("int",false);
@@ -20,13 +20,61 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
     public final static Type ANY = new Type("any", false);
     private final String methodName;
     boolean isStatic;
+    private final boolean checkDeclarations;
 
 
     public TypeGetter(String methodName, boolean isStatic) {
+        this(methodName, isStatic, false);
+    }
+
+    /**
+     * @param checkDeclarations if true, also reports the undeclared variables found by {@link UndeclaredVariable},
+     *                          including those in subexpressions that are not typed
+     */
+    public TypeGetter(String methodName, boolean isStatic, boolean checkDeclarations) {
         this.isStatic = isStatic;
         this.methodName = methodName;
+        this.checkDeclarations = checkDeclarations;
     }
 
+    /**
+     * Reports undeclared variables in expressions that are skipped instead of typed, when checking declarations.
+     *
+     * @param nodes
+     * @param table
+     */
+    public void checkDeclarations(List<JmmNode> nodes, JmmSymbolTable table) {
+        if (!checkDeclarations) {
+            return;
+        }
+
+        for (var node : nodes) {
+            node.getDescendantsAndSelfStream()
+                    .filter(descendant -> descendant.getKind().equals("VarRefExpr"))
+                    .filter(varRef -> !isDeclared(varRef.get("name"), table))
+                    .forEach(varRef -> reports.add(UndeclaredVariable.newReport(varRef)));
+        }
+    }
+
+    private boolean isDeclared(String name, JmmSymbolTable symbols) {
+        return symbols.isImported(name) || symbols.resolve(methodName, name).isPresent();
+    }
+
+
+    /**
+     * Visits an expression and stores its type in the node, so that the later stages do not compute it again. Unknown
+     * types are not stored.
+     */
+    @Override
+    public Type visit(JmmNode jmmNode, JmmSymbolTable table) {
+        var type = super.visit(jmmNode, table);
+
+        if (!type.equals(ANY)) {
+            TypeUtils.setExprType(jmmNode, type);
+        }
+
+        return type;
+    }
 
     protected void buildVisitor() {
         addVisit("Paren", (n,s) -> visit(n.getJmmChild(0)));
@@ -47,7 +95,7 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
 
 
 
-    private Type visitArrayAccess(JmmNode jmmNode, SymbolTable table) {
+    private Type visitArrayAccess(JmmNode jmmNode, JmmSymbolTable table) {
         var arrayVar  = visit(jmmNode.getJmmChild(0),table);
         var index = visit(jmmNode.getJmmChild(1),table);
 
@@ -76,11 +124,11 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
         return new Type(arrayVar.getName(),false);
     }
 
-    private Type visitArrayInit(JmmNode jmmNode, SymbolTable table) {
+    private Type visitArrayInit(JmmNode jmmNode, JmmSymbolTable table) {
         var firstType = visit(jmmNode.getJmmChild(0),table);
 
-        for (JmmNode node: jmmNode.getChildren()){
-            var type = visit(node,table);
+        for (int i = 1; i < jmmNode.getNumChildren(); i++){
+            var type = visit(jmmNode.getJmmChild(i),table);
             if (!type.equals(firstType)){
                 var message = "Array elements must be of the same type";
                 reports.add(Report.newError(
@@ -90,13 +138,14 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
                         message,
                         null
                 ));
+                checkDeclarations(jmmNode.getChildren().subList(i + 1, jmmNode.getNumChildren()), table);
                 return type;
             }
         }
         return new Type(firstType.getName(),true);
     }
 
-    private Type visitNewArray(JmmNode jmmNode, SymbolTable table) {
+    private Type visitNewArray(JmmNode jmmNode, JmmSymbolTable table) {
         Type type = visit(jmmNode.getJmmChild(0),table);
 
         if (!type.equals(INT)){
@@ -112,7 +161,7 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
         return new Type("int",true);
     }
 
-    private Type visitNegation(JmmNode jmmNode, SymbolTable table) {
+    private Type visitNegation(JmmNode jmmNode, JmmSymbolTable table) {
         if(!visit(jmmNode.getJmmChild(0),table).equals(BOOL)){
             var message = "Negation must be applied to a boolean";
             reports.add(Report.newError(
@@ -126,7 +175,7 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
         return new Type("bool",false);
     }
 
-    private Type visitObject(JmmNode jmmNode, SymbolTable table) {
+    private Type visitObject(JmmNode jmmNode, JmmSymbolTable table) {
         if(isStatic){
             var message = "Cannot access non-static variable in static context";
             reports.add(Report.newError(
@@ -141,34 +190,21 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
         return new Type(table.getClassName(),false);
     }
 
-    private Type visitVarRefExpr(JmmNode jmmNode, SymbolTable table) {
+    private Type visitVarRefExpr(JmmNode jmmNode, JmmSymbolTable table) {
         var varName = jmmNode.get("name");
-        var a = table.getLocalVariables(methodName).stream().filter((x) -> x.getName().equals(varName)).findFirst();
-
-        if (a.isPresent()){
-            return a.get().getType();
-        }
+        var symbol = table.resolve(methodName, varName);
 
-        a = table.getFields().stream().filter((x) -> x.getName().equals(varName)).findFirst();
-
-
-        if (a.isPresent() && !isStatic){
-            return a.get().getType();
+        // Fields cannot be used in a static method
+        if (symbol.isPresent() && !(symbol.get().isField() && isStatic)) {
+            return symbol.get().getType();
         }
 
-        a = table.getParameters(methodName).stream().filter((x) -> x.getName().equals(varName)).findFirst();
-
-        if (a.isPresent()){
-            return a.get().getType();
+        if (table.isImported(varName)) {
+            return new Type(varName, false);
         }
 
-        Optional<String> b = table.getImports().stream()
-                .map((x) -> x.substring(1,x.length() - 1))
-                .filter((x) -> x.equals(varName)).findFirst();
-
-
-        if (b.isPresent()){
-            return new Type(b.get(),false);
+        if (checkDeclarations && symbol.isEmpty()) {
+            reports.add(UndeclaredVariable.newReport(jmmNode));
         }
 
         String message = "Variable " + varName + " not found";
@@ -182,15 +218,15 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
         return ANY;
     }
 
-    private Type visitBooleanLiteral(JmmNode jmmNode, SymbolTable table) {
+    private Type visitBooleanLiteral(JmmNode jmmNode, JmmSymbolTable table) {
         return BOOL;
     }
 
-    private Type visitIntegerLiteral(JmmNode jmmNode, SymbolTable table) {
+    private Type visitIntegerLiteral(JmmNode jmmNode, JmmSymbolTable table) {
         return INT;
     }
 
-    private Type visitBinaryOp(JmmNode jmmNode, SymbolTable table) {
+    private Type visitBinaryOp(JmmNode jmmNode, JmmSymbolTable table) {
         var left = visit(jmmNode.getJmmChild(0),table);
         var right = visit(jmmNode.getJmmChild(1),table);
         var op = jmmNode.get("op");
@@ -218,15 +254,13 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
         return ANY;
     }
 
-    private Type visitNewClass(JmmNode jmmNode, SymbolTable table) {
+    private Type visitNewClass(JmmNode jmmNode, JmmSymbolTable table) {
         return new Type(jmmNode.get("name"), false);
     }
 
-    private Type visitFunctionCall(JmmNode jmmNode, SymbolTable table) {
+    private Type visitFunctionCall(JmmNode jmmNode, JmmSymbolTable table) {
         var func = visit(jmmNode.getJmmChild(0), table);
 
-        //System.out.println(func.getName()+ "aaaaaaaaaaaaaaaa");
-
         if (func.getName().equals(table.getClassName()) && table.getSuper() == null) {
             if (!table.getMethods().contains(jmmNode.get("name"))){
                 var message = "Method " + methodName + " not found";
@@ -238,6 +272,7 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
                         message,
                         null
                 ));
+                checkDeclarations(getArguments(jmmNode, 1), table);
                 return ANY;
             }
 
@@ -265,6 +300,7 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
                                     message,
                                     null
                             ));
+                            checkDeclarations(getArguments(jmmNode, i + 1), table);
                             return table.getReturnType(jmmNode.get("name"));
                         }
                     }
@@ -281,6 +317,7 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
                                 message,
                                 null
                         ));
+                        checkDeclarations(getArguments(jmmNode, i + 1), table);
                         return table.getReturnType(jmmNode.get("name"));
                     }
                 }
@@ -289,10 +326,20 @@ public class TypeGetter extends AJmmVisitor<SymbolTable, Type> {
             return table.getReturnType(jmmNode.get("name"));
 
         }
+
+        // Methods of other classes are not checked
+        checkDeclarations(getArguments(jmmNode, 1), table);
         return ANY;
     }
 
-    private Type visitLength(JmmNode jmmNode, SymbolTable table) {
+    /**
+     * @return the arguments of a call, starting at the child with the given index
+     */
+    private static List<JmmNode> getArguments(JmmNode functionCall, int fromChild) {
+        return functionCall.getChildren().subList(fromChild, functionCall.getNumChildren());
+    }
+
+    private Type visitLength(JmmNode jmmNode, JmmSymbolTable table) {
         var b = visit(jmmNode.getJmmChild(0),table);
 
         if (!b.isArray()){
@@ -1,17 +1,14 @@
 package pt.up.fe.comp2024.analysis.passes;
 
-import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.specs.util.SpecsCheck;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Checks if the type of the expression in a return statement is compatible with the method return type.
  *
@@ -27,65 +24,40 @@ public class UndeclaredVariable extends AnalysisVisitor {
         addVisit(Kind.VAR_REF_EXPR, this::visitVarRefExpr);
     }
 
-    private Void visitMethodDecl(JmmNode method, SymbolTable table) {
+    private Void visitMethodDecl(JmmNode method, JmmSymbolTable table) {
         currentMethod = method.get("name");
         return null;
     }
 
-    private Void visitVarRefExpr(JmmNode varRefExpr, SymbolTable table) {
+    private Void visitVarRefExpr(JmmNode varRefExpr, JmmSymbolTable table) {
         SpecsCheck.checkNotNull(currentMethod, () -> "Expected current method to be set");
 
         // Check if exists a parameter or variable declaration with the same name as the variable reference
         var varRefName = varRefExpr.get("name");
 
-        List<String> imports = table.getImports();
-        List<String> modifiedImports = new ArrayList<>();
-
-        for (String importString : imports) {
-            String[] elements = importString.substring(1, importString.length() - 1).split(",");
-            for (String element : elements) {
-                modifiedImports.add(element.trim());
-            }
-        }
-//        System.out.println(" fields:"+table.getFields());
-//        System.out.println(" imports:"+table.getImports());
-
-        if (modifiedImports.contains(varRefName)) {
-            return null;
-        }
-
-        // Var is a field, return
-        if (table.getFields().stream()
-                .anyMatch(param -> param.getName().equals(varRefName))) {
-            return null;
-        }
-
-        // Var is a parameter, return
-        if (table.getParameters(currentMethod).stream()
-                .anyMatch(param -> param.getName().equals(varRefName))) {
+        // Var is an imported class, a field, a parameter or a declared variable, return
+        if (table.isImported(varRefName) || table.resolve(currentMethod, varRefName).isPresent()) {
             return null;
         }
 
-        // Var is a declared variable, return
-        if (table.getLocalVariables(currentMethod).stream()
-                .anyMatch(varDecl -> varDecl.getName().equals(varRefName))) {
-            return null;
-        }
+        // Create error report
+        addReport(newReport(varRefExpr));
 
+        return null;
+    }
 
+    /**
+     * @param varRefExpr a reference to a variable that was not declared
+     * @return the error reported by this pass for that reference
+     */
+    static Report newReport(JmmNode varRefExpr) {
+        var message = String.format("Variable '%s' does not exist.", varRefExpr.get("name"));
 
-        // Create error report
-        var message = String.format("Variable '%s' does not exist.", varRefName);
-        addReport(Report.newError(
+        return Report.newError(
                 Stage.SEMANTIC,
                 NodeUtils.getLine(varRefExpr),
                 NodeUtils.getColumn(varRefExpr),
                 message,
-                null)
-        );
-
-        return null;
+                null);
     }
-
-
 }
@@ -30,11 +30,14 @@ public enum Kind {
     NEW_ARRAY,
     ARRAY_ACCESS,
     ARRAY_INIT,
-    LENGTH;
+    LENGTH,
+    PAREN,
+    OBJECT,
+    MEMBER_CALL;
 
 
     private static final Set<Kind> STATEMENTS = Set.of(ASSIGN_STMT, RETURN_STMT);
-    private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_OP, INTEGER_LITERAL, BOOLEAN_LITERAL, VAR_REF_EXPR, NEW_CLASS, FUNCTION_CALL, NEGATION, NEW_ARRAY, ARRAY_ACCESS, ARRAY_INIT, LENGTH);
+    private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_OP, INTEGER_LITERAL, BOOLEAN_LITERAL, VAR_REF_EXPR, NEW_CLASS, FUNCTION_CALL, NEGATION, NEW_ARRAY, ARRAY_ACCESS, ARRAY_INIT, LENGTH, PAREN, OBJECT, MEMBER_CALL);
 
     private final String name;
 
@@ -79,6 +82,20 @@ public enum Kind {
         return EXPRESSIONS.contains(this);
     }
 
+    /**
+     * @param node
+     * @return true if the given node is an expression, false otherwise
+     */
+    public static boolean isExpr(JmmNode node) {
+        for (Kind kind : EXPRESSIONS) {
+            if (kind.check(node)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Tests if the given JmmNode has the same kind as this type.
      *
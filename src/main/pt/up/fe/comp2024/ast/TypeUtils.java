@@ -4,6 +4,7 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.optimization.OptUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import static pt.up.fe.comp2024.ast.Kind.METHOD_DECL;
 import static pt.up.fe.comp2024.ast.Kind.NEW_CLASS;
@@ -12,22 +13,43 @@ public class TypeUtils {
 
     private static final String INT_TYPE_NAME = "int";
 
+    // Attribute where the type of an expression is kept once computed
+    private static final String TYPE_ATTRIBUTE = "exprType";
+
     public static String getIntTypeName() {
         return INT_TYPE_NAME;
     }
 
 
     /**
-     * Gets the {@link Type} of an arbitrary expression.
+     * Gets the {@link Type} of an arbitrary expression. Returns the type stored by {@link #setExprType} during the
+     * semantic analysis if there is one, otherwise computes it.
      *
      * @param expr
      * @param table
      * @return
      */
     public static Type getExprType(JmmNode expr, SymbolTable table) {
-        //System.out.print(" VisitVarRef2:" + expr  + "\n");
+        var annotatedType = expr.getOptionalObject(TYPE_ATTRIBUTE);
+        if (annotatedType.isPresent()) {
+            return (Type) annotatedType.get();
+        }
+
+        return computeExprType(expr, table);
+    }
+
+    /**
+     * Stores the {@link Type} of an expression in the node, to be returned by {@link #getExprType}.
+     *
+     * @param expr
+     * @param type
+     */
+    public static void setExprType(JmmNode expr, Type type) {
+        expr.putObject(TYPE_ATTRIBUTE, type);
+    }
+
+    private static Type computeExprType(JmmNode expr, SymbolTable table) {
         var kind = Kind.fromString(expr.getKind());
-        //System.out.print(" VisitVarRef3:" + kind  + "\n");
         Type type = switch (kind) {
             case BINARY_OP -> getBinExprType(expr);
             case VAR_REF_EXPR -> getVarExprType(expr, table);
@@ -42,12 +64,10 @@ public class TypeUtils {
             case LENGTH -> new Type("int", false);
             default -> throw new UnsupportedOperationException("Can't compute type for expression kind '" + kind + "'");
         };
-        //System.out.print(" VisitVarRef4:" + type  + "\n");
         return type;
     }
 
     private static Type getBinExprType(JmmNode binaryExpr) {
-        //System.out.print(" Binary expr:"+binaryExpr+"\n");
         String operator = binaryExpr.get("op");
 
         return switch (operator) {
@@ -61,10 +81,7 @@ public class TypeUtils {
 
     private static Type getVarExprType(JmmNode varRefExpr, SymbolTable table) {
 //        String methodName = varRefExpr.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
-////        System.out.println(table.getParameters(methodName).contains(varRefExpr.get("name")));
 //        Type retType = table.getReturnType(methodName);
-//        System.out.println(" ola?:"+retType);
-          System.out.print(" E agora este?:" + varRefExpr + "\n");
 //        if(retType.getName().equals("boolean")) {
 //            return new Type("boolean", false);
 //        }
@@ -75,37 +92,14 @@ public class TypeUtils {
         String methodName = varRefExpr.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
         Type retType = table.getReturnType(methodName);
 
-        //System.out.println(" l:"+varRefExpr.getKind().equals("Negation"));
         if(varRefExpr.getKind().equals("Negation")) {
             return new Type("boolean", false);
         }
 
-        boolean Local = false;
-        for(int i = 0; i<table.getLocalVariables(methodName).size(); i++) {
-            if(table.getLocalVariables(methodName).get(i).getName().equals(varRefExpr.get("name"))) {
-//                System.out.println(" parametro:"+table.getLocalVariables(methodName).get(i).getType());
-                retType = table.getLocalVariables(methodName).get(i).getType();
-                Local = true;
-            }
-        }
-
-        boolean Param = false;
-        if(!Local) {
-            for (int i = 0; i < table.getParameters(methodName).size(); i++) {
-                if (table.getParameters(methodName).get(i).getName().equals(varRefExpr.get("name"))) {
-                    //System.out.println(" parametro:"+table.getParameters(methodName).get(i).getType().getName());
-                    retType = table.getParameters(methodName).get(i).getType();
-                    Param = true;
-                }
-            }
-        }
-
-        if(!Local && !Param) {
-            for (int i = 0; i < table.getFields().size(); i++) {
-                if (table.getFields().get(i).getName().equals(varRefExpr.get("name"))) {
-                    retType = table.getFields().get(i).getType();
-                }
-            }
+        // Locals, then parameters, then fields
+        var symbol = JmmSymbolTable.of(table).resolve(methodName, varRefExpr.get("name"));
+        if (symbol.isPresent()) {
+            retType = symbol.get().getType();
         }
 
         return new Type(retType.getName(), retType.isArray());
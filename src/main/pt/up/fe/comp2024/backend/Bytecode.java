@@ -0,0 +1,182 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The code of a method in a class file, with branches to labels and the depth of the operand stack.
+ * <p>
+ * Each instruction is added with how much it changes the stack, so the maximum depth is known at the end. Branches
+ * are written with a placeholder, and patched with the offset of their label by {@link #toByteArray()}.
+ */
+public class Bytecode {
+
+    private static final int GOTO = 0xA7;
+    private static final int INVOKEINTERFACE = 0xB9;
+
+    private final ByteArrayOutputStream code;
+
+    private final Map<String, Integer> labels;
+
+    // Stack depth at each label, as left by the branches to it
+    private final Map<String, Integer> labelStacks;
+
+    private final List<Branch> branches;
+
+    private int stack;
+
+    private int maxStack;
+
+    // False after a goto or a return, until the next label
+    private boolean reachable;
+
+    public Bytecode() {
+        this.code = new ByteArrayOutputStream();
+        this.labels = new HashMap<>();
+        this.labelStacks = new HashMap<>();
+        this.branches = new ArrayList<>();
+        this.stack = 0;
+        this.maxStack = 0;
+        this.reachable = true;
+    }
+
+    /**
+     * @param opcode
+     * @param stackChange how many values the instruction pushes, minus how many it pops
+     */
+    public void add(int opcode, int stackChange) {
+        code.write(opcode);
+        changeStack(stackChange);
+    }
+
+    /**
+     * Adds an instruction with an operand of one byte.
+     */
+    public void addU1(int opcode, int operand, int stackChange) {
+        code.write(opcode);
+        code.write(operand);
+        changeStack(stackChange);
+    }
+
+    /**
+     * Adds an instruction with an operand of two bytes, such as the index of a constant.
+     */
+    public void addU2(int opcode, int operand, int stackChange) {
+        code.write(opcode);
+        writeU2(operand);
+        changeStack(stackChange);
+    }
+
+    /**
+     * Adds an invokeinterface, which also has the number of words of its arguments, and a zero.
+     */
+    public void addInvokeInterface(int methodRef, int argumentWords, int stackChange) {
+        code.write(INVOKEINTERFACE);
+        writeU2(methodRef);
+        code.write(argumentWords);
+        code.write(0);
+        changeStack(stackChange);
+    }
+
+    /**
+     * Adds an instruction that does not continue to the next one, such as a return.
+     */
+    public void addEnd(int opcode, int stackChange) {
+        add(opcode, stackChange);
+        reachable = false;
+    }
+
+    /**
+     * Adds a branch to a label, which can be placed before or after it.
+     *
+     * @param opcode      a conditional branch, or goto
+     * @param label
+     * @param stackChange
+     */
+    public void addBranch(int opcode, String label, int stackChange) {
+        branches.add(new Branch(code.size(), label));
+        code.write(opcode);
+        writeU2(0);
+        changeStack(stackChange);
+
+        labelStacks.putIfAbsent(label, stack);
+        if (opcode == GOTO) {
+            reachable = false;
+        }
+    }
+
+    public void addLabel(String label) {
+        if (labels.containsKey(label)) {
+            throw new RuntimeException("Label '" + label + "' is defined more than once");
+        }
+
+        labels.put(label, code.size());
+
+        // Only reached by branches, which give the depth of the stack
+        if (!reachable) {
+            stack = labelStacks.getOrDefault(label, 0);
+            reachable = true;
+        }
+    }
+
+    public int getStack() {
+        return stack;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * @return the code, with the offsets of every branch
+     */
+    public byte[] toByteArray() {
+        var bytes = code.toByteArray();
+
+        for (var branch : branches) {
+            var target = labels.get(branch.label);
+            if (target == null) {
+                throw new RuntimeException("Branch to undefined label '" + branch.label + "'");
+            }
+
+            int offset = target - branch.position;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Branch to label '" + branch.label + "' is too far");
+            }
+
+            bytes[branch.position + 1] = (byte) (offset >> 8);
+            bytes[branch.position + 2] = (byte) offset;
+        }
+
+        if (bytes.length > 0xFFFF) {
+            throw new RuntimeException("Method is too long for a class file");
+        }
+
+        return bytes;
+    }
+
+    private void changeStack(int stackChange) {
+        stack += stackChange;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void writeU2(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    private static class Branch {
+
+        private final int position;
+
+        private final String label;
+
+        private Branch(int position, String label) {
+            this.position = position;
+            this.label = label;
+        }
+    }
+}
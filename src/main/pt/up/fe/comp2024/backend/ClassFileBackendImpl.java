@@ -0,0 +1,38 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsCollections;
+
+/**
+ * Backend that writes class files directly, selected with {@link pt.up.fe.comp2024.CompilerConfig#getBackend}.
+ */
+public class ClassFileBackendImpl {
+
+    public ClassFileResult toClassFile(OllirResult ollirResult) {
+
+        var classFileGenerator = new ClassFileGenerator(ollirResult.getOllirClass());
+        var classFile = classFileGenerator.build();
+
+        return new ClassFileResult(ollirResult.getOllirClass().getClassName(), classFile,
+                SpecsCollections.concat(ollirResult.getReports(), classFileGenerator.getReports()),
+                ollirResult.getConfig());
+    }
+
+    /**
+     * Generates the class file of an OLLIR class that was built without OLLIR code, and so has no OllirResult.
+     *
+     * @param ollirClass
+     * @param semanticsResult the result the class was built from
+     * @return the class file, with only the reports of its generation, since the caller has the earlier ones
+     */
+    public ClassFileResult toClassFile(ClassUnit ollirClass, JmmSemanticsResult semanticsResult) {
+
+        var classFileGenerator = new ClassFileGenerator(ollirClass);
+        var classFile = classFileGenerator.build();
+
+        return new ClassFileResult(ollirClass.getClassName(), classFile, classFileGenerator.getReports(),
+                semanticsResult.getConfig());
+    }
+}
@@ -0,0 +1,716 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.classmap.FunctionClassMap;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a JVM class file from an OLLIR class, without going through Jasmin code and the Jasmin assembler.
+ * <p>
+ * The class has the same members as the one {@link JasminGenerator} produces, and handles the same OLLIR
+ * instructions. Class files are written in version 45.3, like the ones Jasmin assembles, so they are checked by the
+ * type-inferring verifier and need no stack map frames.
+ * <p>
+ * One ClassFileGenerator instance per class.
+ */
+public class ClassFileGenerator {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MINOR_VERSION = 3;
+    private static final int MAJOR_VERSION = 45;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD = 0x19;
+    private static final int ILOAD_0 = 0x1A;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int IALOAD = 0x2E;
+    private static final int AALOAD = 0x32;
+    private static final int BALOAD = 0x33;
+    private static final int ISTORE = 0x36;
+    private static final int ASTORE = 0x3A;
+    private static final int ISTORE_0 = 0x3B;
+    private static final int ASTORE_0 = 0x4B;
+    private static final int IASTORE = 0x4F;
+    private static final int AASTORE = 0x53;
+    private static final int BASTORE = 0x54;
+    private static final int POP = 0x57;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IDIV = 0x6C;
+    private static final int ISHL = 0x78;
+    private static final int ISHR = 0x7A;
+    private static final int IUSHR = 0x7C;
+    private static final int IAND = 0x7E;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int IFNE = 0x9A;
+    private static final int IF_ICMPEQ = 0x9F;
+    private static final int IF_ICMPNE = 0xA0;
+    private static final int IF_ICMPLT = 0xA1;
+    private static final int IF_ICMPGE = 0xA2;
+    private static final int IF_ICMPGT = 0xA3;
+    private static final int IF_ICMPLE = 0xA4;
+    private static final int GOTO = 0xA7;
+    private static final int IRETURN = 0xAC;
+    private static final int ARETURN = 0xB0;
+    private static final int RETURN = 0xB1;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEINTERFACE = 0xB9;
+    private static final int NEW = 0xBB;
+    private static final int NEWARRAY = 0xBC;
+    private static final int ANEWARRAY = 0xBD;
+    private static final int ARRAYLENGTH = 0xBE;
+    private static final int WIDE = 0xC4;
+
+    private static final int T_BOOLEAN = 4;
+    private static final int T_INT = 10;
+
+    private final ClassUnit ollirClass;
+
+    private final List<Report> reports;
+
+    private final ConstantPool constants;
+
+    private final FunctionClassMap<TreeNode, Void> generators;
+
+    private byte[] classFile;
+
+    // Method being generated, and its code
+    private Method currentMethod;
+    private Bytecode code;
+
+    // Numbers the labels of the comparisons that produce a boolean, which OLLIR labels cannot clash with
+    private int comparisonNumber;
+
+    public ClassFileGenerator(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+        this.reports = new ArrayList<>();
+        this.constants = new ConstantPool();
+        this.classFile = null;
+
+        this.generators = new FunctionClassMap<>();
+        generators.put(GetFieldInstruction.class, this::generateGetField);
+        generators.put(PutFieldInstruction.class, this::generatePutField);
+        generators.put(CallInstruction.class, this::generateCall);
+        generators.put(AssignInstruction.class, this::generateAssign);
+        generators.put(SingleOpInstruction.class, this::generateSingleOp);
+        generators.put(LiteralElement.class, this::generateLiteral);
+        generators.put(Operand.class, this::generateOperand);
+        generators.put(ArrayOperand.class, this::generateArrayOperand);
+        generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
+        generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
+        generators.put(ReturnInstruction.class, this::generateReturn);
+        generators.put(OpCondInstruction.class, this::generateOpCond);
+        generators.put(SingleOpCondInstruction.class, this::generateSingleOpCond);
+        generators.put(GotoInstruction.class, this::generateGoTo);
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public byte[] build() {
+
+        // This way, build is idempotent
+        if (classFile == null) {
+            classFile = generateClassFile();
+        }
+
+        return classFile;
+    }
+
+    private byte[] generateClassFile() {
+        int thisClass = constants.classRef(ollirClass.getClassName());
+        int superClass = constants.classRef(getSuperName());
+
+        // Members are generated first, since they add to the constant pool
+        var members = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(members)) {
+            out.writeShort(ollirClass.getNumFields());
+            for (var field : ollirClass.getFields()) {
+                generateField(field, out);
+            }
+
+            var methods = new ArrayList<Method>();
+            for (var method : ollirClass.getMethods()) {
+                // There is always a constructor without arguments, added below, as in JasminGenerator
+                if (!method.isConstructMethod()) {
+                    methods.add(method);
+                }
+            }
+
+            out.writeShort(methods.size() + 1);
+            generateConstructor(out);
+            for (var method : methods) {
+                generateMethod(method, out);
+            }
+
+            // No class attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(MINOR_VERSION);
+            out.writeShort(MAJOR_VERSION);
+            constants.write(out);
+
+            int access = ACC_PUBLIC | ACC_SUPER;
+            if (ollirClass.isFinalClass()) {
+                access |= ACC_FINAL;
+            }
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+
+            // No interfaces
+            out.writeShort(0);
+            members.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private String getSuperName() {
+        var superName = ollirClass.getSuperClass();
+
+        return superName == null ? "java/lang/Object" : getClassName(superName);
+    }
+
+    private void generateField(Field field, DataOutputStream out) throws IOException {
+        // Same access as the fields JasminGenerator declares
+        int access = ACC_PUBLIC;
+        if (field.isFinalField()) {
+            access = ACC_FINAL;
+        } else if (field.isStaticField()) {
+            access = ACC_STATIC;
+        }
+
+        out.writeShort(access);
+        out.writeShort(constants.utf8(field.getFieldName()));
+        out.writeShort(constants.utf8(getDescriptor(field.getFieldType())));
+
+        // No field attributes
+        out.writeShort(0);
+    }
+
+    private void generateConstructor(DataOutputStream out) throws IOException {
+        code = new Bytecode();
+        code.add(ALOAD_0, 1);
+        code.addU2(INVOKESPECIAL, constants.methodRef(getSuperName(), "<init>", "()V"), -1);
+        code.addEnd(RETURN, 0);
+
+        generateMethodInfo(ACC_PUBLIC, "<init>", "()V", 1, out);
+    }
+
+    private void generateMethod(Method method, DataOutputStream out) throws IOException {
+
+        // set method
+        currentMethod = method;
+        code = new Bytecode();
+        comparisonNumber = 0;
+
+        for (var inst : method.getInstructions()) {
+            for (var label : method.getLabels(inst)) {
+                code.addLabel(label);
+            }
+
+            generators.apply(inst);
+
+            // Values that are computed but not used, such as the result of a call, are discarded
+            while (code.getStack() > 0) {
+                code.add(POP, -1);
+            }
+        }
+
+        int access = switch (method.getMethodAccessModifier()) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+        if (method.isStaticMethod()) {
+            access |= ACC_STATIC;
+        }
+        if (method.isFinalMethod()) {
+            access |= ACC_FINAL;
+        }
+
+        var descriptor = new StringBuilder("(");
+        for (var param : method.getParams()) {
+            descriptor.append(getDescriptor(param.getType()));
+        }
+        descriptor.append(")").append(getDescriptor(method.getReturnType()));
+
+        generateMethodInfo(access, method.getMethodName(), descriptor.toString(), calculateLocals(method), out);
+
+        // unset method
+        currentMethod = null;
+    }
+
+    private void generateMethodInfo(int access, String name, String descriptor, int maxLocals, DataOutputStream out)
+            throws IOException {
+        var bytecode = code.toByteArray();
+
+        out.writeShort(access);
+        out.writeShort(constants.utf8(name));
+        out.writeShort(constants.utf8(descriptor));
+
+        // Only the Code attribute
+        out.writeShort(1);
+        out.writeShort(constants.utf8("Code"));
+        out.writeInt(12 + bytecode.length);
+        out.writeShort(code.getMaxStack());
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+
+        // No exception handlers, nor attributes of the code
+        out.writeShort(0);
+        out.writeShort(0);
+
+        code = null;
+    }
+
+    private int calculateLocals(Method method) {
+        int maxLocals = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+
+        for (var variable : method.getVarTable().values()) {
+            maxLocals = Math.max(maxLocals, variable.getVirtualReg() + 1);
+        }
+
+        return maxLocals;
+    }
+
+    private Void generateGetField(GetFieldInstruction getField) {
+        generators.apply(getField.getObject());
+
+        var field = getField.getField();
+        code.addU2(GETFIELD, constants.fieldRef(getOwnerName(getField.getObject()), field.getName(),
+                getDescriptor(field.getType())), 0);
+
+        return null;
+    }
+
+    private Void generatePutField(PutFieldInstruction putField) {
+        generators.apply(putField.getObject());
+        generators.apply(putField.getValue());
+
+        var field = putField.getField();
+        code.addU2(PUTFIELD, constants.fieldRef(getOwnerName(putField.getObject()), field.getName(),
+                getDescriptor(field.getType())), -2);
+
+        return null;
+    }
+
+    private Void generateCall(CallInstruction call) {
+        switch (call.getInvocationType()) {
+            case NEW:
+                generateNew(call);
+                return null;
+            case arraylength:
+                generators.apply(call.getCaller());
+                code.add(ARRAYLENGTH, 0);
+                return null;
+            case invokestatic:
+                generateInvoke(call, INVOKESTATIC, getStaticOwnerName(call.getCaller()));
+                return null;
+            case invokevirtual:
+            case invokeinterface:
+                generators.apply(call.getCaller());
+                generateInvoke(call, call.getInvocationType() == CallType.invokevirtual ? INVOKEVIRTUAL : INVOKEINTERFACE,
+                        getOwnerName(call.getCaller()));
+                return null;
+            case invokespecial:
+                generators.apply(call.getCaller());
+
+                // On 'this', <init> is the constructor of the super class
+                var owner = call.getCaller().getType().getTypeOfElement() == ElementType.THIS ?
+                        getSuperName() :
+                        getOwnerName(call.getCaller());
+                generateInvoke(call, INVOKESPECIAL, owner);
+                return null;
+            default:
+                throw new NotImplementedException(call.getInvocationType());
+        }
+    }
+
+    private void generateNew(CallInstruction call) {
+        var type = call.getReturnType();
+
+        if (!(type instanceof ArrayType arrayType)) {
+            code.addU2(NEW, constants.classRef(getClassName(((ClassType) type).getName())), 1);
+            return;
+        }
+
+        // The size of the array
+        generators.apply(call.getArguments().get(0));
+
+        var elementType = arrayType.getElementType();
+        switch (elementType.getTypeOfElement()) {
+            case INT32:
+                code.addU1(NEWARRAY, T_INT, 0);
+                break;
+            case BOOLEAN:
+                code.addU1(NEWARRAY, T_BOOLEAN, 0);
+                break;
+            default:
+                var descriptor = getDescriptor(elementType);
+                // Array classes are named by their descriptor, other classes by their internal name
+                var className = descriptor.startsWith("L") ? descriptor.substring(1, descriptor.length() - 1) :
+                        descriptor;
+                code.addU2(ANEWARRAY, constants.classRef(className), 0);
+        }
+    }
+
+    private void generateInvoke(CallInstruction call, int opcode, String owner) {
+        var descriptor = new StringBuilder("(");
+        for (var argument : call.getArguments()) {
+            generators.apply(argument);
+            descriptor.append(getDescriptor(argument.getType()));
+        }
+        descriptor.append(")").append(getDescriptor(call.getReturnType()));
+
+        var literal = ((LiteralElement) call.getMethodName()).getLiteral();
+        var name = literal.substring(1, literal.length() - 1);
+
+        // Arguments, and the object the method is called on, are popped, and the result pushed
+        int stackChange = -call.getArguments().size() - (opcode == INVOKESTATIC ? 0 : 1)
+                + (call.getReturnType().getTypeOfElement() == ElementType.VOID ? 0 : 1);
+
+        if (opcode == INVOKEINTERFACE) {
+            code.addInvokeInterface(constants.interfaceMethodRef(owner, name, descriptor.toString()),
+                    call.getArguments().size() + 1, stackChange);
+            return;
+        }
+
+        var methodRef = constants.methodRef(owner, name, descriptor.toString());
+        code.addU2(opcode, methodRef, stackChange);
+    }
+
+    private Void generateAssign(AssignInstruction assign) {
+        var lhs = assign.getDest();
+
+        if (lhs instanceof ArrayOperand arrayOperand) {
+            generateLocal(ALOAD, ALOAD_0, getRegister(arrayOperand), 1);
+            generateIndex(arrayOperand);
+            generators.apply(assign.getRhs());
+            code.add(getArrayOpcode(arrayOperand.getType(), IASTORE, BASTORE, AASTORE), -3);
+
+            return null;
+        }
+
+        if (!(lhs instanceof Operand operand)) {
+            throw new NotImplementedException(lhs.getClass());
+        }
+
+        generators.apply(assign.getRhs());
+
+        if (isInteger(operand.getType())) {
+            generateLocal(ISTORE, ISTORE_0, getRegister(operand), -1);
+        } else {
+            generateLocal(ASTORE, ASTORE_0, getRegister(operand), -1);
+        }
+
+        return null;
+    }
+
+    private Void generateSingleOp(SingleOpInstruction singleOp) {
+        return generators.apply(singleOp.getSingleOperand());
+    }
+
+    private Void generateLiteral(LiteralElement literal) {
+        int value;
+        try {
+            value = Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            throw new NotImplementedException("Literal '" + literal.getLiteral() + "'");
+        }
+
+        if (value >= -1 && value <= 5) {
+            code.add(ICONST_0 + value, 1);
+        } else if (value >= -128 && value <= 127) {
+            code.addU1(BIPUSH, value, 1);
+        } else if (value >= -32768 && value <= 32767) {
+            code.addU2(SIPUSH, value, 1);
+        } else {
+            int constant = constants.integer(value);
+            if (constant <= 0xFF) {
+                code.addU1(LDC, constant, 1);
+            } else {
+                code.addU2(LDC_W, constant, 1);
+            }
+        }
+
+        return null;
+    }
+
+    private Void generateOperand(Operand operand) {
+        if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            code.add(ALOAD_0, 1);
+        } else if (isInteger(operand.getType())) {
+            generateLocal(ILOAD, ILOAD_0, getRegister(operand), 1);
+        } else {
+            generateLocal(ALOAD, ALOAD_0, getRegister(operand), 1);
+        }
+
+        return null;
+    }
+
+    private Void generateArrayOperand(ArrayOperand arrayOperand) {
+        generateLocal(ALOAD, ALOAD_0, getRegister(arrayOperand), 1);
+        generateIndex(arrayOperand);
+        code.add(getArrayOpcode(arrayOperand.getType(), IALOAD, BALOAD, AALOAD), -1);
+
+        return null;
+    }
+
+    private void generateIndex(ArrayOperand arrayOperand) {
+        if (arrayOperand.getIndexOperands().size() != 1) {
+            throw new NotImplementedException("Arrays with " + arrayOperand.getIndexOperands().size() + " indexes");
+        }
+
+        generators.apply(arrayOperand.getIndexOperands().get(0));
+    }
+
+    /**
+     * Loads or stores a local, with the short form of the instruction for the first registers.
+     */
+    private void generateLocal(int opcode, int shortOpcode, int register, int stackChange) {
+        if (register <= 3) {
+            code.add(shortOpcode + register, stackChange);
+        } else if (register <= 0xFF) {
+            code.addU1(opcode, register, stackChange);
+        } else {
+            code.add(WIDE, 0);
+            code.addU2(opcode, register, stackChange);
+        }
+    }
+
+    private Void generateBinaryOp(BinaryOpInstruction binaryOp) {
+        var opType = binaryOp.getOperation().getOpType();
+        var comparison = getComparisonOpcode(opType);
+
+        // load values on the left and on the right
+        generators.apply(binaryOp.getLeftOperand());
+        generators.apply(binaryOp.getRightOperand());
+
+        // Comparisons branch to push either true or false
+        if (comparison != -1) {
+            var trueLabel = "$cmp" + comparisonNumber + "_true";
+            var endLabel = "$cmp" + comparisonNumber + "_end";
+            comparisonNumber++;
+
+            code.addBranch(comparison, trueLabel, -2);
+            code.add(ICONST_0, 1);
+            code.addBranch(GOTO, endLabel, 0);
+            code.addLabel(trueLabel);
+            code.add(ICONST_0 + 1, 1);
+            code.addLabel(endLabel);
+
+            return null;
+        }
+
+        var op = switch (opType) {
+            case ADD -> IADD;
+            case SUB -> ISUB;
+            case MUL -> IMUL;
+            case DIV -> IDIV;
+            case SHL -> ISHL;
+            case SHR -> ISHR;
+            case SHRR -> IUSHR;
+            case AND, ANDB -> IAND;
+            case OR, ORB -> IOR;
+            case XOR -> IXOR;
+            default -> throw new NotImplementedException(opType);
+        };
+
+        code.add(op, -1);
+
+        return null;
+    }
+
+    private Void generateUnaryOp(UnaryOpInstruction unaryOp) {
+        var opType = unaryOp.getOperation().getOpType();
+
+        if (opType != OperationType.NOTB && opType != OperationType.NOT) {
+            throw new NotImplementedException(opType);
+        }
+
+        generators.apply(unaryOp.getOperand());
+        code.add(ICONST_0 + 1, 1);
+        code.add(IXOR, -1);
+
+        return null;
+    }
+
+    private Void generateReturn(ReturnInstruction returnInst) {
+        var returnType = returnInst.getReturnType();
+
+        if (returnType.getTypeOfElement() == ElementType.VOID) {
+            code.addEnd(RETURN, 0);
+        } else if (isInteger(returnType)) {
+            generators.apply(returnInst.getOperand());
+            code.addEnd(IRETURN, -1);
+        } else {
+            generators.apply(returnInst.getOperand());
+            code.addEnd(ARETURN, -1);
+        }
+
+        return null;
+    }
+
+    private Void generateOpCond(OpCondInstruction opCond) {
+        var condition = opCond.getCondition();
+
+        // A comparison branches directly, anything else is computed and compared to false
+        if (condition instanceof BinaryOpInstruction binaryOp) {
+            var comparison = getComparisonOpcode(binaryOp.getOperation().getOpType());
+
+            if (comparison != -1) {
+                generators.apply(binaryOp.getLeftOperand());
+                generators.apply(binaryOp.getRightOperand());
+                code.addBranch(comparison, opCond.getLabel(), -2);
+
+                return null;
+            }
+        }
+
+        generators.apply(condition);
+        code.addBranch(IFNE, opCond.getLabel(), -1);
+
+        return null;
+    }
+
+    private Void generateSingleOpCond(SingleOpCondInstruction singleOpCond) {
+        generators.apply(singleOpCond.getCondition());
+        code.addBranch(IFNE, singleOpCond.getLabel(), -1);
+
+        return null;
+    }
+
+    private Void generateGoTo(GotoInstruction gotoInstruction) {
+        code.addBranch(GOTO, gotoInstruction.getLabel(), 0);
+
+        return null;
+    }
+
+    private int getComparisonOpcode(OperationType opType) {
+        return switch (opType) {
+            case LTH -> IF_ICMPLT;
+            case GTH -> IF_ICMPGT;
+            case LTE -> IF_ICMPLE;
+            case GTE -> IF_ICMPGE;
+            case EQ -> IF_ICMPEQ;
+            case NEQ -> IF_ICMPNE;
+            default -> -1;
+        };
+    }
+
+    private int getRegister(Operand operand) {
+        var variable = currentMethod.getVarTable().get(operand.getName());
+
+        if (variable == null) {
+            throw new RuntimeException("Variable '" + operand.getName() + "' is not in the variable table of method '"
+                    + currentMethod.getMethodName() + "'");
+        }
+
+        return variable.getVirtualReg();
+    }
+
+    private int getArrayOpcode(Type elementType, int intOpcode, int booleanOpcode, int referenceOpcode) {
+        return switch (elementType.getTypeOfElement()) {
+            case INT32 -> intOpcode;
+            case BOOLEAN -> booleanOpcode;
+            default -> referenceOpcode;
+        };
+    }
+
+    private boolean isInteger(Type type) {
+        return type.getTypeOfElement() == ElementType.INT32 || type.getTypeOfElement() == ElementType.BOOLEAN;
+    }
+
+    /**
+     * @param object an object a method is called on, or whose field is accessed
+     * @return the internal name of the class of the object
+     */
+    private String getOwnerName(Element object) {
+        var type = object.getType();
+
+        if (type.getTypeOfElement() == ElementType.THIS || !(type instanceof ClassType classType)) {
+            return ollirClass.getClassName();
+        }
+
+        return getClassName(classType.getName());
+    }
+
+    /**
+     * @param caller the class of a static call, by its name
+     * @return the internal name of the class
+     */
+    private String getStaticOwnerName(Element caller) {
+        if (caller.getType().getTypeOfElement() == ElementType.THIS) {
+            return ollirClass.getClassName();
+        }
+
+        return getClassName(((Operand) caller).getName());
+    }
+
+    /**
+     * @param name the name of a class as used in OLLIR
+     * @return the internal name of the class, with the package of its import, if any
+     */
+    private String getClassName(String name) {
+        for (var imported : ollirClass.getImports()) {
+            if (imported.equals(name) || imported.endsWith("." + name)) {
+                return imported.replace('.', '/');
+            }
+        }
+
+        return name;
+    }
+
+    private String getDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case VOID -> "V";
+            case STRING -> "Ljava/lang/String;";
+            case THIS -> "L" + ollirClass.getClassName() + ";";
+            case OBJECTREF, CLASS -> "L" + getClassName(((ClassType) type).getName()) + ";";
+            case ARRAYREF -> "[".repeat(Math.max(((ArrayType) type).getNumDimensions(), 1))
+                    + getDescriptor(((ArrayType) type).getElementType());
+        };
+    }
+}
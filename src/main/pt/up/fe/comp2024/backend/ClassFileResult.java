@@ -0,0 +1,64 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class file generated by {@link ClassFileGenerator}, as the result of the code generation stage instead of a
+ * JasminResult.
+ */
+public class ClassFileResult {
+
+    private final String className;
+    private final byte[] classFile;
+    private final List<Report> reports;
+    private final Map<String, String> config;
+
+    public ClassFileResult(String className, byte[] classFile, List<Report> reports, Map<String, String> config) {
+        this.className = className;
+        this.classFile = classFile;
+        this.reports = reports;
+        this.config = config;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getClassFile() {
+        return classFile;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public Map<String, String> getConfig() {
+        return config;
+    }
+
+    /**
+     * Writes the class file, named after the class.
+     *
+     * @param outputDir the folder where the class file will be written
+     * @return the class file
+     */
+    public File write(File outputDir) {
+        var file = new File(outputDir, className + ".class");
+
+        try {
+            Files.createDirectories(outputDir.toPath());
+            Files.write(file.toPath(), classFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write class file '" + file + "'", e);
+        }
+
+        return file;
+    }
+}
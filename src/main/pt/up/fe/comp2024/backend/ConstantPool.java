@@ -0,0 +1,129 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The constant pool of a class file. Each constant is added the first time it is asked for, and then referred to by
+ * its index.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes;
+
+    private final DataOutputStream entries;
+
+    // Index of each constant, by its tag and contents
+    private final Map<String, Integer> indexes;
+
+    private int count;
+
+    public ConstantPool() {
+        this.bytes = new ByteArrayOutputStream();
+        this.entries = new DataOutputStream(bytes);
+        this.indexes = new HashMap<>();
+        this.count = 1;
+    }
+
+    public int utf8(String value) {
+        return add(UTF8, value, () -> entries.writeUTF(value));
+    }
+
+    public int integer(int value) {
+        return add(INTEGER, String.valueOf(value), () -> entries.writeInt(value));
+    }
+
+    /**
+     * @param className the internal name of the class, e.g. "java/lang/Object"
+     * @return
+     */
+    public int classRef(String className) {
+        int name = utf8(className);
+        return add(CLASS, className, () -> entries.writeShort(name));
+    }
+
+    public int string(String value) {
+        int utf8 = utf8(value);
+        return add(STRING, value, () -> entries.writeShort(utf8));
+    }
+
+    public int fieldRef(String className, String name, String descriptor) {
+        return memberRef(FIELD_REF, className, name, descriptor);
+    }
+
+    public int methodRef(String className, String name, String descriptor) {
+        return memberRef(METHOD_REF, className, name, descriptor);
+    }
+
+    public int interfaceMethodRef(String className, String name, String descriptor) {
+        return memberRef(INTERFACE_METHOD_REF, className, name, descriptor);
+    }
+
+    private int memberRef(int tag, String className, String name, String descriptor) {
+        int classRef = classRef(className);
+        int nameAndType = nameAndType(name, descriptor);
+        return add(tag, className + "." + name + ":" + descriptor, () -> {
+            entries.writeShort(classRef);
+            entries.writeShort(nameAndType);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return add(NAME_AND_TYPE, name + ":" + descriptor, () -> {
+            entries.writeShort(nameIndex);
+            entries.writeShort(descriptorIndex);
+        });
+    }
+
+    private int add(int tag, String contents, Entry entry) {
+        var key = tag + ":" + contents;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        if (count >= 0xFFFF) {
+            throw new RuntimeException("Too many constants for a class file");
+        }
+
+        try {
+            entries.writeByte(tag);
+            entry.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        indexes.put(key, count);
+        return count++;
+    }
+
+    /**
+     * Writes the count and the entries of the pool, as they appear in a class file.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+
+    private interface Entry {
+        void write() throws IOException;
+    }
+}
@@ -1,18 +1,44 @@
 package pt.up.fe.comp2024.backend;
 
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.MethodPools;
 
 public class JasminBackendImpl implements JasminBackend {
 
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
 
-        var jasminGenerator = new JasminGenerator(ollirResult);
-        var jasminCode = jasminGenerator.build();
+        return MethodPools.run(CompilerConfig.getMethodParallelism(ollirResult.getConfig()), methodPool -> {
+            var jasminGenerator = new JasminGenerator(ollirResult.getOllirClass(), methodPool,
+                    CompilerConfig.getOptimize(ollirResult.getConfig()));
+            var jasminCode = jasminGenerator.build();
 
-        return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
+            return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
+        });
+    }
+
+    /**
+     * Generates Jasmin for an OLLIR class that was built without OLLIR code, and so has no OllirResult.
+     *
+     * @param ollirClass
+     * @param semanticsResult the result the class was built from
+     * @return the Jasmin code, with only the reports of its generation, since the caller has the earlier ones
+     */
+    public JasminResult toJasmin(ClassUnit ollirClass, JmmSemanticsResult semanticsResult) {
+
+        return MethodPools.run(CompilerConfig.getMethodParallelism(semanticsResult.getConfig()), methodPool -> {
+            var jasminGenerator = new JasminGenerator(ollirClass, methodPool,
+                    CompilerConfig.getOptimize(semanticsResult.getConfig()));
+            var jasminCode = jasminGenerator.build();
+
+            return new JasminResult(ollirClass.getClassName(), jasminCode, jasminGenerator.getReports(),
+                    semanticsResult.getConfig());
+        });
     }
 
 }
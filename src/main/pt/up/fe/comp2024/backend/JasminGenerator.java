@@ -4,45 +4,75 @@ import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.specs.util.classmap.FunctionClassMap;
+import pt.up.fe.specs.util.classmap.BiFunctionClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 import pt.up.fe.specs.util.utilities.StringLines;
 
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
- * Generates Jasmin code from an OllirResult.
+ * Generates Jasmin code from an OLLIR class, either parsed into an OllirResult or built directly from the AST.
  * <p>
- * One JasminGenerator instance per OllirResult.
+ * One JasminGenerator instance per class. The state of the method being generated is kept in a {@link MethodContext},
+ * so given a pool, each method is generated on the pool, and the methods are joined in the order of the class.
  */
 public class JasminGenerator {
 
     private static final String NL = "\n";
     private static final String TAB = "   ";
 
-    private final OllirResult ollirResult;
+    private final ClassUnit ollirClass;
+
+    private final ForkJoinPool methodPool;
+
+    private final boolean optimize;
 
     List<Report> reports;
 
     String code;
-    Method currentMethod;
-
-    private final FunctionClassMap<TreeNode, String> generators;
 
     public JasminGenerator(OllirResult ollirResult) {
-        this.ollirResult = ollirResult;
+        this(ollirResult.getOllirClass());
+    }
+
+    public JasminGenerator(ClassUnit ollirClass) {
+        this(ollirClass, null);
+    }
+
+    /**
+     * @param ollirClass
+     * @param methodPool where to generate each method, or null to generate them sequentially
+     */
+    public JasminGenerator(ClassUnit ollirClass, ForkJoinPool methodPool) {
+        this(ollirClass, methodPool, false);
+    }
+
+    /**
+     * @param ollirClass
+     * @param methodPool where to generate each method, or null to generate them sequentially
+     * @param optimize if the peephole can also remove stores of values that are not read afterwards
+     */
+    public JasminGenerator(ClassUnit ollirClass, ForkJoinPool methodPool, boolean optimize) {
+        this.ollirClass = ollirClass;
+        this.methodPool = methodPool;
+        this.optimize = optimize;
 
         reports = new ArrayList<>();
         code = null;
-        currentMethod = null;
-
-        this.generators = new FunctionClassMap<>();
-        generators.put(ClassUnit.class, this::generateClassUnit);
+    }
 
-        generators.put(Method.class, this::generateMethod);
+    /**
+     * A map is created for each method, since the lookups of a map are not thread-safe.
+     *
+     * @return the generator of each kind of instruction and element
+     */
+    private BiFunctionClassMap<TreeNode, MethodContext, String> newGenerators() {
+        var generators = new BiFunctionClassMap<TreeNode, MethodContext, String>();
         generators.put(GetFieldInstruction.class, this::getFieldInstruction);
         generators.put(PutFieldInstruction.class, this::putFieldInstruction);
         generators.put(CallInstruction.class, this::callInstruction);
@@ -56,11 +86,13 @@ public class JasminGenerator {
         generators.put(GotoInstruction.class, this::generateGoTo);
         generators.put(SingleOpCondInstruction.class, this::generateSingleOpCond);
         generators.put(UnaryOpInstruction.class, this::generateUnaryOpInstruction);
+
+        return generators;
     }
 
-    private String generateUnaryOpInstruction (UnaryOpInstruction unaryOpInstruction){
+    private String generateUnaryOpInstruction (UnaryOpInstruction unaryOpInstruction, MethodContext context){
         var code = new StringBuilder();
-        code.append(generators.apply(unaryOpInstruction.getOperand()));
+        code.append(context.generate(unaryOpInstruction.getOperand()));
         switch (unaryOpInstruction.getOperation().getOpType()){
             case NOTB:
                 code.append("iconst_1").append(NL);
@@ -80,64 +112,65 @@ public class JasminGenerator {
 
         return code.toString();
     }
-    private String generateSingleOpCond (SingleOpCondInstruction singleOpCondInstruction){
+    private String generateSingleOpCond (SingleOpCondInstruction singleOpCondInstruction, MethodContext context){
         var code = new StringBuilder();
-        code.append(singleOpCondInstruction.getLabel()).append(":").append(NL);
+        code.append(context.generate(singleOpCondInstruction.getCondition()));
+        code.append("ifne ").append(singleOpCondInstruction.getLabel()).append(NL);
         return code.toString();
     }
 
-    private String generateGoTo(GotoInstruction gotoInstruction){
+    private String generateGoTo(GotoInstruction gotoInstruction, MethodContext context){
         var code = new StringBuilder();
         code.append("goto ").append(gotoInstruction.getLabel()).append(NL);
         return code.toString();
     }
 
-    private String generateOpCond(OpCondInstruction opCondInstruction) {
+    private String generateOpCond(OpCondInstruction opCondInstruction, MethodContext context) {
         var code = new StringBuilder();
-        code.append(generators.apply(opCondInstruction.getCondition().getOperands().get(0)));
-        code.append(generators.apply(opCondInstruction.getCondition().getOperands().get(1)));
-        switch (opCondInstruction.getCondition().getOperation().getOpType().toString()) {
-            case "LTH":
-                code.append("isub ").append(NL);
-                code.append("if_icmplt_").append(opCondInstruction.getLabel()).append(":").append(NL);
-                break;
-            case "GTH":
-                code.append("iadd ").append(NL);
-                code.append("if_icmpgt_").append(opCondInstruction.getLabel()).append(":").append(NL);
-                break;
-            case "EQ":
-                code.append("ieq ").append(NL);
-                code.append("if_icmpeq_").append(opCondInstruction.getLabel()).append(":").append(NL);
-                break;
-            case "NEQ":
-                code.append("ine ").append(NL);
-                code.append("if_icmpne_").append(opCondInstruction.getLabel()).append(":").append(NL);
-                break;
-            case "LTE":
-                code.append("isub ").append(NL);
-                code.append("if_icmple_").append(opCondInstruction.getLabel()).append(":").append(NL);
-                break;
-            case "GTE":
-                code.append("iadd ").append(NL);
-                code.append("if_icmpge_").append(opCondInstruction.getLabel()).append(":").append(NL);
-                break;
-            default:
-                code.append("TYPE NOT YET IMPLEMENTED OPCI").append(NL);
-            case "ANDB":
-                code.append("iand ").append(NL);
-                break;
+        var condition = opCondInstruction.getCondition();
+
+        // A comparison branches directly, anything else is computed and compared to false
+        if (condition instanceof BinaryOpInstruction binaryOp) {
+            var comparison = switch (binaryOp.getOperation().getOpType()) {
+                case LTH -> "if_icmplt";
+                case GTH -> "if_icmpgt";
+                case LTE -> "if_icmple";
+                case GTE -> "if_icmpge";
+                case EQ -> "if_icmpeq";
+                case NEQ -> "if_icmpne";
+                default -> null;
+            };
+
+            if (comparison != null) {
+                code.append(context.generate(binaryOp.getLeftOperand()));
+                code.append(context.generate(binaryOp.getRightOperand()));
+                code.append(comparison).append(" ").append(opCondInstruction.getLabel()).append(NL);
+                return code.toString();
+            }
         }
+
+        code.append(context.generate(condition));
+        code.append("ifne ").append(opCondInstruction.getLabel()).append(NL);
         return code.toString();
     }
 
-    private String callInstruction(CallInstruction callInstruction) {
+    private String callInstruction(CallInstruction callInstruction, MethodContext context) {
         var code = new StringBuilder();
         String returnType= this.getType(callInstruction.getReturnType());
         var arguments = new StringBuilder();
+
+        // The object the method is called on goes below the arguments
+        switch (callInstruction.getInvocationType()) {
+            case invokevirtual, invokeinterface, arraylength ->
+                    code.append(context.generate(callInstruction.getCaller()));
+            default -> {
+            }
+        }
+
         if(!(callInstruction.getArguments().isEmpty())) {
             for (int i = 0; i < callInstruction.getArguments().size(); i++) {
                 arguments.append(this.getType(callInstruction.getArguments().get(i).getType()));
-                code.append(generators.apply(callInstruction.getArguments().get(i)));
+                code.append(context.generate(callInstruction.getArguments().get(i)));
             }
         }
         switch(callInstruction.getInvocationType().toString()){
@@ -194,7 +227,6 @@ public class JasminGenerator {
                 code.append("/").append((((LiteralElement)callInstruction.getMethodName()).getLiteral()).substring(1, (((LiteralElement)callInstruction.getMethodName()).getLiteral()).length()-1)).append("(").append(arguments).append(")").append(returnType).append(NL);
                 return code.toString();
             case "arraylength":
-                //code.append(generators.apply(callInstruction.getCaller()));
                 code.append("arraylength").append(NL);
                 return code.toString();
             default:
@@ -203,56 +235,46 @@ public class JasminGenerator {
         }
     }
 
-    private String getType(Type type){
-        String a= "";
-        switch (type.toString()){
-            case "INT32[]":
-                a= "[I";
-                break;
-            case "BOOLEAN[]":
-                a= "[Z";
-                break;
-            case "INT32":
-                a= "I";
-                break;
-            case "VOID":
-                a= "V";
-                break;
-            case "BOOLEAN":
-                a= "Z";
-                break;
-            case "STRING":
-                a= "Ljava/lang/String;";
-                break;
-            case "THIS":
-                a= "T";
-                break;
-            case "OBJECTREF":
-                a="OBJ";
-                break;
-            case "CLASS":
-                a= "C";
-                break;
-            default:
-                a= "V";
-                break;
+    /**
+     * @param name a class name as written in OLLIR
+     * @return the internal name of the class, with the package of its import if it was imported
+     */
+    private String getClassName(String name) {
+        for (var imported : ollirClass.getImports()) {
+            if (imported.equals(name) || imported.endsWith("." + name)) {
+                return imported.replace('.', '/');
+            }
         }
-        return a;
+
+        return name;
+    }
+
+    private String getType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case VOID -> "V";
+            case STRING -> "Ljava/lang/String;";
+            case THIS -> "L" + ollirClass.getClassName() + ";";
+            case OBJECTREF, CLASS -> "L" + getClassName(((ClassType) type).getName()) + ";";
+            case ARRAYREF -> "[".repeat(Math.max(((ArrayType) type).getNumDimensions(), 1))
+                    + getType(((ArrayType) type).getElementType());
+        };
     }
 
-    private String putFieldInstruction(PutFieldInstruction putFieldInstruction) {
+    private String putFieldInstruction(PutFieldInstruction putFieldInstruction, MethodContext context) {
         var code = new StringBuilder();
         String type = "";
         type = this.getType(putFieldInstruction.getField().getType());
-        code.append("aload 0").append(NL).append(generators.apply(putFieldInstruction.getValue())).append("putfield ").append(ollirResult.getOllirClass().getClassName()).append("/").append(putFieldInstruction.getField().getName()).append(" ").append(type).append(NL);
+        code.append("aload 0").append(NL).append(context.generate(putFieldInstruction.getValue())).append("putfield ").append(ollirClass.getClassName()).append("/").append(putFieldInstruction.getField().getName()).append(" ").append(type).append(NL);
         return code.toString();
     }
 
-    private String getFieldInstruction(GetFieldInstruction getFieldInstruction) {
+    private String getFieldInstruction(GetFieldInstruction getFieldInstruction, MethodContext context) {
         var code = new StringBuilder();
         String type = "";
         type = this.getType(getFieldInstruction.getField().getType());
-        code.append("aload 0").append(NL).append("getfield ").append(ollirResult.getOllirClass().getClassName()).append("/").append(getFieldInstruction.getField().getName()).append(" ").append(type).append(NL);
+        code.append("aload 0").append(NL).append("getfield ").append(ollirClass.getClassName()).append("/").append(getFieldInstruction.getField().getName()).append(" ").append(type).append(NL);
         return code.toString();
     }
 
@@ -264,7 +286,7 @@ public class JasminGenerator {
 
         // This way, build is idempotent
         if (code == null) {
-            code = generators.apply(ollirResult.getOllirClass());
+            code = generateClassUnit(ollirClass);
         }
 
         return code;
@@ -276,20 +298,20 @@ public class JasminGenerator {
         var code = new StringBuilder();
 
         // generate class name
-        var className = ollirResult.getOllirClass().getClassName();
+        var className = ollirClass.getClassName();
         String isFinal = "";
         String isStatic = "";
 
-        if(ollirResult.getOllirClass().isFinalClass()){
+        if(ollirClass.isFinalClass()){
             isFinal = "final ";
         }
-        if(ollirResult.getOllirClass().isStaticClass()){
+        if(ollirClass.isStaticClass()){
             isStatic = "static ";
         }
         code.append(".class ").append("public ").append(isStatic).append(isFinal).append(className).append(NL).append(NL);
 
         // TODO: Hardcoded to Object, needs to be expanded
-        var superName = ollirResult.getOllirClass().getSuperClass();
+        var superName = ollirClass.getSuperClass();
         if (!(superName== null)) {
 
             code.append(".super ").append(superName).append(NL).append(NL);
@@ -298,7 +320,7 @@ public class JasminGenerator {
             code.append(".super java/lang/Object").append(NL).append(NL);
         }
 
-        for(var field : ollirResult.getOllirClass().getFields()){
+        for(var field : ollirClass.getFields()){
             if(field.isFinalField()){
                 String type = "";
                 type = this.getType(field.getFieldType());
@@ -335,7 +357,15 @@ public class JasminGenerator {
             code.append(defaultConstructor);
         }
         // generate code for all other methods
-        for (var method : ollirResult.getOllirClass().getMethods()) {
+        if (methodPool != null) {
+            for (var methodCode : generateMethods()) {
+                code.append(methodCode.join());
+            }
+
+            return code.toString();
+        }
+
+        for (var method : ollirClass.getMethods()) {
 
             // Ignore constructor, since there is always one constructor
             // that receives no arguments, and has been already added
@@ -344,16 +374,34 @@ public class JasminGenerator {
                 continue;
             }
 
-            code.append(generators.apply(method));
+            code.append(generateMethod(method));
         }
         return code.toString();
     }
 
+    /**
+     * Starts generating each method of the class, except the constructor, on the method pool.
+     *
+     * @return the code of each method, in the order of the class
+     */
+    private List<ForkJoinTask<String>> generateMethods() {
+        var methodCodes = new ArrayList<ForkJoinTask<String>>();
+
+        for (var method : ollirClass.getMethods()) {
+            if (method.isConstructMethod()) {
+                continue;
+            }
+
+            methodCodes.add(methodPool.submit(() -> generateMethod(method)));
+        }
+
+        return methodCodes;
+    }
+
 
     private String generateMethod(Method method) {
 
-        // set method
-        currentMethod = method;
+        var context = new MethodContext(method, newGenerators());
 
         var code = new StringBuilder();
         var mod = new StringBuilder();
@@ -373,7 +421,20 @@ public class JasminGenerator {
 
         code.append("\n.method ").append(modifier).append(mod).append(methodName).append("(").append(generateParam(method)).append(")").append(returnType).append(NL);
 
-        int maxStack = calculateMaxStackDepth(method);
+        for (var inst : method.getInstructions()) {
+            for (var label : method.getLabels(inst)) {
+                context.lines.add(label + ":");
+            }
+
+            context.lines.addAll(StringLines.getLines(context.generate(inst)));
+        }
+
+        // Instructions are generated in their generic forms, the peephole picks the shorter ones
+        var body = JasminPeephole.optimize(context.lines, optimize).stream()
+                .collect(Collectors.joining(NL + TAB, TAB, NL));
+
+        // The stack is known once the instructions are
+        int maxStack = JasminStackCalculator.maxStack(body);
         int maxLocals = calculateLocalVariables(method);
 
         // Add limits
@@ -381,26 +442,18 @@ public class JasminGenerator {
         code.append(TAB).append(".limit stack ").append(maxStack).append(NL);
         code.append(TAB).append(".limit locals ").append(maxLocals).append(NL);
 
-
-        for (var inst : method.getInstructions()) {
-            var instCode = StringLines.getLines(generators.apply(inst)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
-
-            code.append(instCode);
-        }
+        code.append(body);
 
         code.append(".end method\n");
 
-        // unset method
-        currentMethod = null;
         return code.toString();
     }
 
-    private String generateAssign(AssignInstruction assign) {
+    private String generateAssign(AssignInstruction assign, MethodContext context) {
         var code = new StringBuilder();
 
         // generate code for loading what's on the right
-        code.append(generators.apply(assign.getRhs()));
+        code.append(context.generate(assign.getRhs()));
 
         // store value in the stack in destination
         var lhs = assign.getDest();
@@ -411,27 +464,22 @@ public class JasminGenerator {
 
         var operand = (Operand) lhs;
         // get register
-        var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
+        var reg = context.getRegister(operand);
         var storeInstruction = new StringBuilder();
         ElementType elementType = assign.getTypeOfAssign().getTypeOfElement();
         switch (elementType) {
             case INT32:
                 storeInstruction.append("istore ").append(reg).append(NL);
-                storeInstruction.append("iload ").append(reg).append(NL);
                 break;
             case BOOLEAN:
                 storeInstruction.append("istore ").append(reg).append(NL);
-                storeInstruction.append("iload ").append(reg).append(NL);
-
                 break;
 
             case OBJECTREF:
                 storeInstruction.append("astore ").append(reg).append(NL);
-                storeInstruction.append("aload ").append(reg).append(NL);
                 break;
             case STRING:
                 storeInstruction.append("astore ").append(reg).append(NL);
-                storeInstruction.append("aload ").append(reg).append(NL);
                 break;
 
             case THIS:
@@ -439,33 +487,23 @@ public class JasminGenerator {
                 break;
             case ARRAYREF:
                 storeInstruction.append("astore ").append(reg).append(NL);
-                storeInstruction.append("aload ").append(reg).append(NL);
                 break;
             default:
                 storeInstruction.append("UNSUPPORTED TYPE ").append(elementType);
         }
 
-        code.append(storeInstruction).append(NL);
+        code.append(storeInstruction);
         return code.toString();
     }
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
-        return generators.apply(singleOp.getSingleOperand());
+    private String generateSingleOp(SingleOpInstruction singleOp, MethodContext context) {
+        return context.generate(singleOp.getSingleOperand());
     }
 
-    private String generateLiteral(LiteralElement literal) {
+    private String generateLiteral(LiteralElement literal, MethodContext context) {
         String value = literal.getLiteral();
         if (isInteger(value)) {
-            int intValue = Integer.parseInt(value);
-            if (intValue >= -1 && intValue <= 5) {
-                return "iconst_" + intValue + NL;
-            } else if (intValue >= -128 && intValue <= 127) {
-                return "bipush " + intValue + NL;
-            } else if (intValue >= -32768 && intValue <= 32767) {
-                return "sipush " + intValue + NL;
-            } else {
-                return "ldc " + intValue + NL;
-            }
+            return "ldc " + Integer.parseInt(value) + NL;
         } else if (isFloat(value)) {
             return "ldc " + value + NL;
         } else {
@@ -473,14 +511,14 @@ public class JasminGenerator {
         }
     }
 
-    private String generateOperand(Operand operand) {
+    private String generateOperand(Operand operand, MethodContext context) {
         // get register
-        var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
+        var reg = context.getRegister(operand);
         switch (operand.getType().getTypeOfElement().toString()){
             case "OBJECTREF":
                 return "aload " + reg + NL;
             case "THIS":
-                return "aload_0" + reg + NL;
+                return "aload " + reg + NL;
             case "BOOLEAN":
             case "INT32":
                 return "iload " + reg + NL;
@@ -510,12 +548,12 @@ public class JasminGenerator {
         }
     }
 
-    private String generateBinaryOp(BinaryOpInstruction binaryOp) {
+    private String generateBinaryOp(BinaryOpInstruction binaryOp, MethodContext context) {
         var code = new StringBuilder();
 
         // load values on the left and on the right
-        code.append(generators.apply(binaryOp.getLeftOperand()));
-        code.append(generators.apply(binaryOp.getRightOperand()));
+        code.append(context.generate(binaryOp.getLeftOperand()));
+        code.append(context.generate(binaryOp.getRightOperand()));
 
         // apply operation
         var op = switch (binaryOp.getOperation().getOpType()) {
@@ -523,6 +561,12 @@ public class JasminGenerator {
             case MUL -> "imul";
             case SUB -> "isub";
             case DIV -> "idiv";
+            case ANDB -> "iand";
+            case ORB -> "ior";
+            case XOR -> "ixor";
+            case SHL -> "ishl";
+            case SHR -> "ishr";
+            case SHRR -> "iushr";
             default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
         };
 
@@ -532,12 +576,12 @@ public class JasminGenerator {
         return code.toString();
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
+    private String generateReturn(ReturnInstruction returnInst, MethodContext context) {
         var code = new StringBuilder();
 
         // TODO: Hardcoded to int return type, needs to be expanded
         if(!(returnInst.getReturnType().toString().equals("VOID"))){
-            code.append(generators.apply(returnInst.getOperand()));
+            code.append(context.generate(returnInst.getOperand()));
         }
         switch (returnInst.getReturnType().getTypeOfElement().toString()){
             case "INT32":
@@ -569,70 +613,46 @@ public class JasminGenerator {
     public String generateParam(Method method){
         var code = new StringBuilder();
         for (var param : method.getParams()) {
-            switch (param.getType().toString()) {
-                case "INT32":
-                    code.append("I");
-                    break;
-                case "BOOLEAN":
-                    code.append("Z");
-                    break;
-                case "STRING[]":
-                    code.append("[Ljava/lang/String;");
-                    break;
-                case "CLASS":
-                    code.append("C");
-                    break;
-                case "THIS":
-                    code.append("T");
-                    break;
-                case "OBJECTREF":
-                    code.append("OBJ");
-                    break;
-                case "INT32[]":
-                    code.append("[I");
-                    break;
-                case "BOOLEAN[]":
-                    code.append("[Z");
-                    break;
-                default:
-                    // Handle other types if needed
-                    break;
-            }
+            code.append(getType(param.getType()));
         }
         return code.toString();
     }
-    private int calculateMaxStackDepth(Method method) {
-        int maxStack = 0;
-        int currentStack = 0;
-        for (var inst : method.getInstructions()) {
-            if (inst instanceof BinaryOpInstruction) {
-                currentStack -= 1;
-            } else{
-                currentStack += 1;
-            }
-            if (currentStack > maxStack) {
-                maxStack = currentStack;
-            }
-        }
-        return maxStack;
-    }
-
     private int calculateLocalVariables(Method method) {
-        int maxLocals = method.getParams().size() + 1;
+        int maxLocals = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
 
-        for (var inst : method.getInstructions()) {
-            if (inst instanceof AssignInstruction) {
-                var assign = (AssignInstruction) inst;
-                var lhs = (Operand) assign.getDest();
-                var reg = currentMethod.getVarTable().get(lhs.getName()).getVirtualReg();
-                if (reg + 1 > maxLocals) {
-                    maxLocals = reg + 1;
-                }
-            }
+        // Every variable has its register in the var table, after register allocation if there was one
+        for (var variable : method.getVarTable().values()) {
+            maxLocals = Math.max(maxLocals, variable.getVirtualReg() + 1);
         }
 
         return maxLocals;
     }
 
 
+    /**
+     * The state of generating a single method, passed to the generator of each of its instructions.
+     */
+    private static class MethodContext {
+
+        private final Method method;
+
+        private final BiFunctionClassMap<TreeNode, MethodContext, String> generators;
+
+        // Lines of the method body, before the peephole
+        private final List<String> lines;
+
+        private MethodContext(Method method, BiFunctionClassMap<TreeNode, MethodContext, String> generators) {
+            this.method = method;
+            this.generators = generators;
+            this.lines = new ArrayList<>();
+        }
+
+        private String generate(TreeNode node) {
+            return generators.apply(node, this);
+        }
+
+        private int getRegister(Operand operand) {
+            return method.getVarTable().get(operand.getName()).getVirtualReg();
+        }
+    }
 }
@@ -0,0 +1,361 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites the Jasmin instructions of a method into fewer or shorter ones that do the same.
+ * <p>
+ * The instructions are read in their generic forms, so "iload_1" is read as "iload 1" and "bipush 6" as "ldc 6".
+ * Each rule looks at the instructions starting at some position, and replaces them if it applies. Each rule is
+ * applied at every position in turn, and this is repeated until none applies, and the instructions are then written in
+ * their shortest forms, such as "iload_1", "iconst_m1", "bipush" or "sipush".
+ */
+public class JasminPeephole {
+
+    // In the order they are applied, since removing stores and loads first would hide increments
+    private static final List<Rule> SELECTION_RULES = List.of(
+            JasminPeephole::useIinc,
+            JasminPeephole::compareWithZero
+    );
+
+    // Also remove instructions of the program, so only when optimizing
+    private static final List<Rule> OPTIMIZATION_RULES = List.of(
+            JasminPeephole::useIinc,
+            JasminPeephole::compareWithZero,
+            JasminPeephole::removeStoreLoadOfDeadValue
+    );
+
+    private static final Set<String> LOADS = Set.of("iload", "aload");
+
+    private static final Set<String> STORES = Set.of("istore", "astore");
+
+    private static final Set<String> ENDS = Set.of("goto", "return", "ireturn", "areturn", "athrow");
+
+    private static final Map<String, String> SWAPPED_COMPARISONS = Map.of(
+            "eq", "eq", "ne", "ne", "lt", "gt", "gt", "lt", "le", "ge", "ge", "le");
+
+    private final List<Instruction> code;
+
+    private final List<Rule> rules;
+
+    // Registers that are read before being written again, after each instruction
+    private List<BitSet> liveOut;
+
+    private JasminPeephole(List<Instruction> code, List<Rule> rules) {
+        this.code = code;
+        this.rules = rules;
+    }
+
+    /**
+     * @param lines the body of a method, one instruction or label per line
+     * @param optimize if stores of values that are not read afterwards can also be removed, as with -o
+     * @return the lines of the optimized body
+     */
+    public static List<String> optimize(List<String> lines, boolean optimize) {
+        var code = new ArrayList<Instruction>();
+        for (var line : lines) {
+            line = line.strip();
+            if (!line.isEmpty()) {
+                code.add(Instruction.parse(line));
+            }
+        }
+
+        var peephole = new JasminPeephole(code, optimize ? OPTIMIZATION_RULES : SELECTION_RULES);
+        while (peephole.applyRules()) {
+            // Each pass can make more rules apply
+        }
+
+        return code.stream().map(Instruction::toString).toList();
+    }
+
+    private boolean applyRules() {
+        liveOut = computeLiveOut();
+
+        boolean changed = false;
+        for (var rule : rules) {
+            for (int i = 0; i < code.size(); i++) {
+                if (rule.apply(this, i)) {
+                    changed = true;
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * "istore N; iload N" leaves the value on the stack as it was, so if N is not read afterwards, both go.
+     */
+    private boolean removeStoreLoadOfDeadValue(int i) {
+        if (!matches(i, STORES, LOADS) || !code.get(i).operand.equals(code.get(i + 1).operand)
+                || code.get(i).opcode.charAt(0) != code.get(i + 1).opcode.charAt(0)) {
+            return false;
+        }
+
+        int register = Integer.parseInt(code.get(i).operand);
+        if (liveOut.get(i + 1).get(register)) {
+            return false;
+        }
+
+        replace(i, 2);
+        return true;
+    }
+
+    /**
+     * "iload N; ldc C; iadd; istore N", and the same with isub or with the operands swapped, increments N by C. The
+     * sum can also go through a temporary T, as in "istore T; iload T; istore N", if T is not read afterwards.
+     */
+    private boolean useIinc(int i) {
+        if (!matches(i, null, null, Set.of("iadd", "isub"), Set.of("istore"))) {
+            return false;
+        }
+
+        var first = code.get(i);
+        var second = code.get(i + 1);
+        var register = code.get(i + 3).operand;
+        int count = 4;
+
+        var temporary = register;
+        if (matches(i + 4, LOADS, Set.of("istore")) && code.get(i + 4).isLoadOf(temporary)
+                && !liveOut.get(i + 4).get(Integer.parseInt(temporary))) {
+            register = code.get(i + 5).operand;
+            count = 6;
+        }
+        boolean subtract = code.get(i + 2).opcode.equals("isub");
+
+        Integer increment;
+        if (first.isLoadOf(register) && second.isIntConstant()) {
+            increment = second.intValue();
+        } else if (!subtract && second.isLoadOf(register) && first.isIntConstant()) {
+            increment = first.intValue();
+        } else {
+            return false;
+        }
+
+        int value = subtract ? -increment : increment;
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+            return false;
+        }
+
+        replace(i, count, new Instruction("iinc", register + " " + value));
+        return true;
+    }
+
+    /**
+     * "ldc 0; if_icmpCC L" compares with zero, which "ifCC L" does on its own. With the zero pushed first, the
+     * comparison is the other way around.
+     */
+    private boolean compareWithZero(int i) {
+        if (i + 1 < code.size() && code.get(i).isZero() && code.get(i + 1).opcode.startsWith("if_icmp")) {
+            var branch = code.get(i + 1);
+            replace(i, 2, new Instruction("if" + branch.opcode.substring("if_icmp".length()), branch.operand));
+            return true;
+        }
+
+        if (i + 2 < code.size() && code.get(i).isZero() && code.get(i + 1).isSinglePush()
+                && code.get(i + 2).opcode.startsWith("if_icmp")) {
+            var branch = code.get(i + 2);
+            var comparison = SWAPPED_COMPARISONS.get(branch.opcode.substring("if_icmp".length()));
+            replace(i, 3, code.get(i + 1), new Instruction("if" + comparison, branch.operand));
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param opcodes the opcodes each instruction from the position can have, or null for any instruction
+     */
+    @SafeVarargs
+    private boolean matches(int i, Set<String>... opcodes) {
+        if (i + opcodes.length > code.size()) {
+            return false;
+        }
+
+        for (int j = 0; j < opcodes.length; j++) {
+            var inst = code.get(i + j);
+            if (inst.isLabel() || (opcodes[j] != null && !opcodes[j].contains(inst.opcode))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void replace(int i, int count, Instruction... replacements) {
+        for (int j = 0; j < count; j++) {
+            code.remove(i);
+        }
+        code.addAll(i, List.of(replacements));
+
+        // The rules applied next can look past the new instructions, into code that jumps elsewhere
+        liveOut = computeLiveOut();
+    }
+
+    private List<BitSet> computeLiveOut() {
+        var labels = new HashMap<String, Integer>();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i).isLabel()) {
+                labels.put(code.get(i).opcode, i);
+            }
+        }
+
+        var liveIn = new ArrayList<BitSet>();
+        var liveOut = new ArrayList<BitSet>();
+        for (int i = 0; i < code.size(); i++) {
+            liveIn.add(new BitSet());
+            liveOut.add(new BitSet());
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = code.size() - 1; i >= 0; i--) {
+                var inst = code.get(i);
+                var out = new BitSet();
+
+                if (inst.isBranch() && labels.containsKey(inst.operand)) {
+                    out.or(liveIn.get(labels.get(inst.operand)));
+                }
+                if (!ENDS.contains(inst.opcode) && i + 1 < code.size()) {
+                    out.or(liveIn.get(i + 1));
+                }
+
+                var in = (BitSet) out.clone();
+                inst.updateLive(in);
+
+                if (!in.equals(liveIn.get(i)) || !out.equals(liveOut.get(i))) {
+                    liveIn.set(i, in);
+                    liveOut.set(i, out);
+                    changed = true;
+                }
+            }
+        }
+
+        return liveOut;
+    }
+
+    private interface Rule {
+        boolean apply(JasminPeephole peephole, int position);
+    }
+
+    private static class Instruction {
+
+        // For a label, its name
+        private final String opcode;
+
+        private final String operand;
+
+        private Instruction(String opcode, String operand) {
+            this.opcode = opcode;
+            this.operand = operand;
+        }
+
+        private static Instruction parse(String line) {
+            if (line.endsWith(":")) {
+                return new Instruction(line.substring(0, line.length() - 1), null);
+            }
+
+            var parts = line.split("\\s+", 2);
+            var opcode = parts[0];
+            var operand = parts.length > 1 ? parts[1] : "";
+
+            // Short forms, such as iload_1 or iconst_m1
+            int underscore = opcode.lastIndexOf('_');
+            if (underscore > 0 && operand.isEmpty()) {
+                var base = opcode.substring(0, underscore);
+                var suffix = opcode.substring(underscore + 1).replace("m", "-");
+
+                if (LOADS.contains(base) || STORES.contains(base)) {
+                    return new Instruction(base, suffix);
+                }
+                if (base.equals("iconst")) {
+                    return new Instruction("ldc", suffix);
+                }
+            }
+
+            if (opcode.equals("bipush") || opcode.equals("sipush")) {
+                return new Instruction("ldc", operand);
+            }
+
+            return new Instruction(opcode, operand);
+        }
+
+        private boolean isLabel() {
+            return operand == null;
+        }
+
+        private boolean isBranch() {
+            return !isLabel() && (opcode.startsWith("if") || opcode.equals("goto"));
+        }
+
+        private boolean isIntConstant() {
+            return opcode.equals("ldc") && operand.matches("-?\\d+");
+        }
+
+        private int intValue() {
+            return Integer.parseInt(operand);
+        }
+
+        private boolean isZero() {
+            return isIntConstant() && intValue() == 0;
+        }
+
+        private boolean isLoadOf(String register) {
+            return opcode.equals("iload") && operand.equals(register);
+        }
+
+        /**
+         * @return true if the instruction only pushes an int, without popping anything
+         */
+        private boolean isSinglePush() {
+            return isIntConstant() || opcode.equals("iload");
+        }
+
+        private void updateLive(BitSet live) {
+            if (isLabel()) {
+                return;
+            }
+
+            if (STORES.contains(opcode)) {
+                live.clear(Integer.parseInt(operand));
+            } else if (LOADS.contains(opcode)) {
+                live.set(Integer.parseInt(operand));
+            } else if (opcode.equals("iinc")) {
+                live.set(Integer.parseInt(operand.split("\\s+")[0]));
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (isLabel()) {
+                return opcode + ":";
+            }
+
+            if (isIntConstant()) {
+                int value = intValue();
+                if (value >= -1 && value <= 5) {
+                    return "iconst_" + (value == -1 ? "m1" : value);
+                }
+                if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                    return "bipush " + value;
+                }
+                if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                    return "sipush " + value;
+                }
+            }
+
+            if ((LOADS.contains(opcode) || STORES.contains(opcode)) && Integer.parseInt(operand) <= 3) {
+                return opcode + "_" + operand;
+            }
+
+            return operand.isEmpty() ? opcode : opcode + " " + operand;
+        }
+    }
+}
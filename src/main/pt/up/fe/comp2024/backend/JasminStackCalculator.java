@@ -0,0 +1,223 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the maximum depth of the operand stack of a method, from the Jasmin instructions of its body.
+ * <p>
+ * Each instruction changes the depth by a fixed amount, or by the descriptor of the method or field it refers to. The
+ * depth is followed along every path, falling through or branching to a label, so each instruction is reached with
+ * the depth that the verifier sees there.
+ */
+public class JasminStackCalculator {
+
+    private static final Map<String, Integer> STACK_CHANGES = new HashMap<>();
+
+    private static final int UNREACHED = Integer.MIN_VALUE;
+
+    private static final Set<String> ENDS = Set.of("goto", "goto_w", "return", "ireturn", "freturn", "areturn",
+            "lreturn", "dreturn", "athrow");
+
+    static {
+        change(0, "nop", "iinc", "swap", "ineg", "fneg", "lneg", "dneg", "i2f", "f2i", "l2d", "d2l", "i2b", "i2c",
+                "i2s", "newarray", "anewarray", "arraylength", "checkcast", "instanceof", "goto", "goto_w", "return");
+        change(1, "aconst_null", "iconst", "fconst", "bipush", "sipush", "ldc", "ldc_w", "iload", "fload", "aload",
+                "dup", "dup_x1", "dup_x2", "new", "i2l", "i2d", "f2l", "f2d");
+        change(2, "lconst", "dconst", "ldc2_w", "lload", "dload", "dup2", "dup2_x1", "dup2_x2");
+        change(-1, "istore", "fstore", "astore", "pop", "iaload", "faload", "aaload", "baload", "caload", "saload",
+                "iadd", "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "ishl", "ishr", "iushr",
+                "fadd", "fsub", "fmul", "fdiv", "frem", "lshl", "lshr", "lushr", "fcmpl", "fcmpg", "l2i", "l2f",
+                "d2i", "d2f", "ifeq", "ifne", "iflt", "ifge", "ifgt", "ifle", "ifnull", "ifnonnull",
+                "ireturn", "freturn", "areturn", "athrow", "monitorenter", "monitorexit");
+        change(-2, "lstore", "dstore", "pop2", "ladd", "lsub", "lmul", "ldiv", "lrem", "land", "lor", "lxor",
+                "dadd", "dsub", "dmul", "ddiv", "drem", "if_icmpeq", "if_icmpne", "if_icmplt", "if_icmpge",
+                "if_icmpgt", "if_icmple", "if_acmpeq", "if_acmpne", "lreturn", "dreturn");
+        change(-3, "iastore", "fastore", "aastore", "bastore", "castore", "sastore", "lcmp", "dcmpl", "dcmpg");
+        change(-4, "lastore", "dastore");
+        change(0, "laload", "daload");
+    }
+
+    private static void change(int stackChange, String... opcodes) {
+        for (var opcode : opcodes) {
+            STACK_CHANGES.put(opcode, stackChange);
+        }
+    }
+
+    /**
+     * @param instructions the body of a method, one instruction or label per line, without its directives
+     * @return the deepest the operand stack gets while running the method
+     */
+    public static int maxStack(String instructions) {
+        var opcodes = new ArrayList<String>();
+        var operands = new ArrayList<String>();
+        var labels = new HashMap<String, Integer>();
+
+        for (var line : instructions.split("\n")) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith(";") || line.startsWith(".")) {
+                continue;
+            }
+
+            if (line.endsWith(":")) {
+                labels.put(line.substring(0, line.length() - 1), opcodes.size());
+                continue;
+            }
+
+            var parts = line.split("\\s+", 2);
+            opcodes.add(parts[0]);
+            operands.add(parts.length > 1 ? parts[1] : "");
+        }
+
+        return maxStack(opcodes, operands, labels);
+    }
+
+    private static int maxStack(List<String> opcodes, List<String> operands, Map<String, Integer> labels) {
+        if (opcodes.isEmpty()) {
+            return 0;
+        }
+
+        // Depth before each instruction, or UNREACHED if it was not reached yet
+        var depths = new int[opcodes.size()];
+        Arrays.fill(depths, UNREACHED);
+        depths[0] = 0;
+
+        var toVisit = new ArrayDeque<Integer>();
+        toVisit.push(0);
+
+        int maxStack = 0;
+        while (!toVisit.isEmpty()) {
+            int index = toVisit.pop();
+            var opcode = opcodes.get(index);
+            var operand = operands.get(index);
+
+            int depth = depths[index] + stackChange(opcode, operand);
+            maxStack = Math.max(maxStack, depth);
+
+            if (isBranch(opcode)) {
+                var target = labels.get(operand.strip());
+                if (target != null) {
+                    reach(target, depth, depths, toVisit);
+                }
+            }
+
+            if (!ENDS.contains(opcode)) {
+                reach(index + 1, depth, depths, toVisit);
+            }
+        }
+
+        return maxStack;
+    }
+
+    private static void reach(int index, int depth, int[] depths, ArrayDeque<Integer> toVisit) {
+        // Every path to an instruction must leave the same depth for the code to verify, so the first one is kept
+        if (index < depths.length && depths[index] == UNREACHED) {
+            depths[index] = depth;
+            toVisit.push(index);
+        }
+    }
+
+    private static boolean isBranch(String opcode) {
+        return opcode.startsWith("if") || opcode.equals("goto") || opcode.equals("goto_w");
+    }
+
+    private static int stackChange(String opcode, String operand) {
+        switch (opcode) {
+            case "getstatic":
+                return words(fieldDescriptor(operand));
+            case "putstatic":
+                return -words(fieldDescriptor(operand));
+            case "getfield":
+                return words(fieldDescriptor(operand)) - 1;
+            case "putfield":
+                return -words(fieldDescriptor(operand)) - 1;
+            case "invokestatic":
+                return invokeChange(operand);
+            case "invokevirtual":
+            case "invokespecial":
+            case "invokeinterface":
+                return invokeChange(operand) - 1;
+            case "multianewarray":
+                return 1 - Integer.parseInt(operand.strip().split("\\s+")[1]);
+            default:
+                break;
+        }
+
+        var stackChange = STACK_CHANGES.get(opcode);
+        if (stackChange != null) {
+            return stackChange;
+        }
+
+        // Short forms, such as iload_1, iconst_m1 or astore_3
+        int underscore = opcode.lastIndexOf('_');
+        if (underscore > 0) {
+            return STACK_CHANGES.getOrDefault(opcode.substring(0, underscore), 0);
+        }
+
+        return 0;
+    }
+
+    private static String fieldDescriptor(String operand) {
+        var parts = operand.strip().split("\\s+");
+        return parts[parts.length - 1];
+    }
+
+    /**
+     * @param operand e.g. "java/io/PrintStream/println(I)V", followed by the number of arguments for invokeinterface
+     * @return the words of the value returned, minus the words of the arguments
+     */
+    private static int invokeChange(String operand) {
+        int open = operand.indexOf('(');
+        int close = operand.indexOf(')', open + 1);
+        if (open < 0 || close < 0) {
+            return 0;
+        }
+
+        var returnType = operand.substring(close + 1).strip().split("\\s+")[0];
+        return words(returnType) - words(operand.substring(open + 1, close));
+    }
+
+    /**
+     * @param descriptors one or more type descriptors, one after the other
+     * @return how many words of the stack the values of those types take
+     */
+    private static int words(String descriptors) {
+        int words = 0;
+        int i = 0;
+        while (i < descriptors.length()) {
+            char c = descriptors.charAt(i);
+
+            if (c == '[') {
+                while (i < descriptors.length() && descriptors.charAt(i) == '[') {
+                    i++;
+                }
+                i = skipType(descriptors, i);
+                words += 1;
+                continue;
+            }
+
+            i = skipType(descriptors, i);
+            if (c == 'J' || c == 'D') {
+                words += 2;
+            } else if (c != 'V') {
+                words += 1;
+            }
+        }
+
+        return words;
+    }
+
+    private static int skipType(String descriptors, int i) {
+        if (i < descriptors.length() && descriptors.charAt(i) == 'L') {
+            int end = descriptors.indexOf(';', i);
+            return end < 0 ? descriptors.length() : end + 1;
+        }
+
+        return i + 1;
+    }
+}
@@ -0,0 +1,355 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces computations of values that are already in a variable by a copy of that variable.
+ * <p>
+ * Inside each basic block, the values of the variables and expressions are numbered, so an expression whose operands
+ * have the same values as in an earlier one has the value of the earlier one. Array elements are read again after any
+ * array is assigned or a method is called, and fields after they are assigned or a method is called.
+ * <p>
+ * Across blocks, an expression can be reused anywhere its computation dominates, when the variable it was assigned to
+ * and the variables it reads are assigned only once in the method. These keep their value from their assignment on,
+ * so the expression has the same value wherever it is computed again. The dominator tree is walked from the start of
+ * the method, and the expressions computed by the dominators of an instruction are the ones it can reuse.
+ */
+public class CommonSubexpressionElimination {
+
+    private static final Set<OperationType> COMMUTATIVE = Set.of(OperationType.ADD, OperationType.MUL,
+            OperationType.AND, OperationType.OR, OperationType.XOR, OperationType.ANDB, OperationType.ORB,
+            OperationType.EQ, OperationType.NEQ);
+
+    private static final String ARRAY_READ = "aload";
+
+    private static final String FIELD_READ = "getfield";
+
+    /**
+     * @param classUnit
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        boolean changed = false;
+
+        for (var method : classUnit.getMethods()) {
+            if (!method.getInstructions().isEmpty()) {
+                changed |= numberBlocks(method) | reuseDominating(method);
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean numberBlocks(Method method) {
+        var instructions = method.getInstructions();
+        var leaders = ControlFlow.leaders(method);
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+
+        BlockNumbering numbering = null;
+        for (int i = 0; i < instructions.size(); i++) {
+            if (leaders[i]) {
+                numbering = new BlockNumbering();
+            }
+
+            var replacement = numbering.number(instructions.get(i));
+            if (replacement != null) {
+                replacements.put(instructions.get(i), replacement);
+            }
+        }
+
+        ControlFlow.replaceInstructions(method, replacements);
+
+        return !replacements.isEmpty();
+    }
+
+    private boolean reuseDominating(Method method) {
+        var instructions = method.getInstructions();
+        var dominators = new Dominators(method);
+
+        var dominated = new ArrayList<List<Integer>>(instructions.size());
+        for (int i = 0; i < instructions.size(); i++) {
+            dominated.add(new ArrayList<>());
+        }
+        for (int i = 1; i < instructions.size(); i++) {
+            if (dominators.isReachable(i)) {
+                dominated.get(dominators.getImmediateDominator(i)).add(i);
+            }
+        }
+
+        var assignments = new Assignments(method);
+        var available = new HashMap<String, Operand>();
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+
+        // Each entry is an instruction and the expression it made available, removed once its subtree is done
+        var stack = new ArrayDeque<Object[]>();
+        stack.push(new Object[]{0, null, false});
+
+        while (!stack.isEmpty()) {
+            var entry = stack.pop();
+            int position = (int) entry[0];
+
+            if ((boolean) entry[2]) {
+                if (entry[1] != null) {
+                    available.remove((String) entry[1]);
+                }
+                continue;
+            }
+
+            String added = null;
+            if (instructions.get(position) instanceof AssignInstruction assign) {
+                var key = assignments.keyOf(assign.getRhs(), position, dominators);
+                var holder = key != null ? available.get(key) : null;
+
+                if (holder != null && !holder.getName().equals(nameOf(assign.getDest()))) {
+                    replacements.put(assign, copyOf(assign, holder));
+                } else if (key != null && holder == null && assignments.isAssignedOnce(nameOf(assign.getDest()))) {
+                    available.put(key, (Operand) assign.getDest());
+                    added = key;
+                }
+            }
+
+            stack.push(new Object[]{position, added, true});
+            for (int child : dominated.get(position)) {
+                stack.push(new Object[]{child, null, false});
+            }
+        }
+
+        ControlFlow.replaceInstructions(method, replacements);
+
+        return !replacements.isEmpty();
+    }
+
+    /**
+     * @return the name of the variable, or null if the element is not one
+     */
+    private static String nameOf(Element element) {
+        return element instanceof Operand operand && !(element instanceof ArrayOperand) ? operand.getName() : null;
+    }
+
+    private static AssignInstruction copyOf(AssignInstruction assign, Operand holder) {
+        var value = new Operand(holder.getName(), holder.getType());
+        return new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), new SingleOpInstruction(value));
+    }
+
+    private static String key(OperationType opType, String... operands) {
+        if (operands.length == 2 && COMMUTATIVE.contains(opType) && operands[0].compareTo(operands[1]) > 0) {
+            operands = new String[]{operands[1], operands[0]};
+        }
+
+        return opType + "(" + String.join(",", operands) + ")";
+    }
+
+    /**
+     * The value numbers of one basic block.
+     */
+    private static class BlockNumbering {
+
+        private final Map<String, Integer> variables = new HashMap<>();
+
+        private final Map<String, Integer> expressions = new HashMap<>();
+
+        // A variable that had each value when it was assigned, which still has it if its number did not change
+        private final Map<Integer, Operand> holders = new HashMap<>();
+
+        private int nextNumber = 0;
+
+        /**
+         * @return the instruction that replaces the given one, or null if it stays
+         */
+        private Instruction number(Instruction inst) {
+            if (inst instanceof AssignInstruction assign) {
+                return numberAssign(assign);
+            }
+
+            if (inst instanceof CallInstruction call && call.getInvocationType() != CallType.arraylength) {
+                forgetMemory(true);
+            } else if (inst instanceof PutFieldInstruction putField) {
+                expressions.remove(FIELD_READ + "(" + putField.getField().getName() + ")");
+            }
+
+            return null;
+        }
+
+        private Instruction numberAssign(AssignInstruction assign) {
+            var rhs = assign.getRhs();
+            var key = keyOf(rhs);
+            Instruction replacement = null;
+
+            int number;
+            if (key != null && expressions.containsKey(key)) {
+                number = expressions.get(key);
+
+                var holder = holderOf(number);
+                if (holder != null && !holder.getName().equals(nameOf(assign.getDest()))) {
+                    replacement = copyOf(assign, holder);
+                }
+            } else if (key != null) {
+                number = nextNumber++;
+                expressions.put(key, number);
+            } else if (rhs instanceof SingleOpInstruction singleOp
+                    && !(singleOp.getSingleOperand() instanceof ArrayOperand)) {
+                number = numberOf(singleOp.getSingleOperand());
+            } else {
+                number = nextNumber++;
+            }
+
+            if (rhs instanceof CallInstruction call && call.getInvocationType() != CallType.arraylength) {
+                forgetMemory(true);
+            }
+
+            var dest = assign.getDest();
+            if (dest instanceof ArrayOperand) {
+                forgetMemory(false);
+            } else if (dest instanceof Operand operand) {
+                variables.put(operand.getName(), number);
+                if (holderOf(number) == null) {
+                    holders.put(number, operand);
+                }
+            }
+
+            return replacement;
+        }
+
+        private Operand holderOf(int number) {
+            var holder = holders.get(number);
+            return holder != null && variables.get(holder.getName()) == number ? holder : null;
+        }
+
+        /**
+         * @param fields true if fields can also have changed, and not only arrays
+         */
+        private void forgetMemory(boolean fields) {
+            expressions.keySet().removeIf(key -> key.startsWith(ARRAY_READ + "(")
+                    || (fields && key.startsWith(FIELD_READ + "(")));
+        }
+
+        private int numberOf(Element element) {
+            if (element instanceof LiteralElement literal) {
+                return expressions.computeIfAbsent("#" + literal.getLiteral(), key -> nextNumber++);
+            }
+
+            return variables.computeIfAbsent(((Operand) element).getName(), name -> nextNumber++);
+        }
+
+        /**
+         * @return the expression by the numbers of its operands, or null if it is not one that can be reused
+         */
+        private String keyOf(Instruction rhs) {
+            if (rhs instanceof SingleOpInstruction singleOp && singleOp.getSingleOperand() instanceof ArrayOperand array
+                    && array.getIndexOperands().size() == 1 && !(array.getIndexOperands().get(0) instanceof ArrayOperand)) {
+                int arrayNumber = variables.computeIfAbsent(array.getName(), name -> nextNumber++);
+                return ARRAY_READ + "(" + arrayNumber + "," + numberOf(array.getIndexOperands().get(0)) + ")";
+            }
+
+            if (rhs instanceof GetFieldInstruction getField) {
+                return FIELD_READ + "(" + getField.getField().getName() + ")";
+            }
+
+            if (rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength
+                    && isValue(call.getCaller())) {
+                return CallType.arraylength + "(" + numberOf(call.getCaller()) + ")";
+            }
+
+            if (rhs instanceof UnaryOpInstruction unaryOp && isValue(unaryOp.getOperand())) {
+                return key(unaryOp.getOperation().getOpType(), String.valueOf(numberOf(unaryOp.getOperand())));
+            }
+
+            if (rhs instanceof BinaryOpInstruction binaryOp && isValue(binaryOp.getLeftOperand())
+                    && isValue(binaryOp.getRightOperand())) {
+                return key(binaryOp.getOperation().getOpType(), String.valueOf(numberOf(binaryOp.getLeftOperand())),
+                        String.valueOf(numberOf(binaryOp.getRightOperand())));
+            }
+
+            return null;
+        }
+
+        private static boolean isValue(Element element) {
+            return element instanceof LiteralElement
+                    || (element instanceof Operand && !(element instanceof ArrayOperand));
+        }
+    }
+
+    /**
+     * Where each variable of a method is assigned.
+     */
+    private static class Assignments {
+
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        // Position of the only assignment of each variable assigned once
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        private Assignments(Method method) {
+            var instructions = method.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                if (instructions.get(i) instanceof AssignInstruction assign && nameOf(assign.getDest()) != null) {
+                    counts.merge(nameOf(assign.getDest()), 1, Integer::sum);
+                    positions.put(nameOf(assign.getDest()), i);
+                }
+            }
+        }
+
+        private boolean isAssignedOnce(String name) {
+            return name != null && counts.getOrDefault(name, 0) == 1;
+        }
+
+        /**
+         * @return true if the variable has the same value wherever the instruction at the position runs, since it is
+         * never assigned, or only once by an instruction that dominates it
+         */
+        private boolean isFixed(String name, int position, Dominators dominators) {
+            int count = counts.getOrDefault(name, 0);
+            if (count == 0) {
+                return true;
+            }
+
+            int assignment = positions.get(name);
+            return count == 1 && assignment != position && dominators.dominates(assignment, position);
+        }
+
+        /**
+         * @return the expression by the names of its operands, or null if they are not all fixed, or if it reads
+         * arrays or fields, which can change
+         */
+        private String keyOf(Instruction rhs, int position, Dominators dominators) {
+            if (rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength
+                    && isFixed(call.getCaller(), position, dominators)) {
+                return CallType.arraylength + "(" + nameOf(call.getCaller()) + ")";
+            }
+
+            if (rhs instanceof UnaryOpInstruction unaryOp && isFixed(unaryOp.getOperand(), position, dominators)) {
+                return key(unaryOp.getOperation().getOpType(), operandKey(unaryOp.getOperand()));
+            }
+
+            if (rhs instanceof BinaryOpInstruction binaryOp
+                    && isFixed(binaryOp.getLeftOperand(), position, dominators)
+                    && isFixed(binaryOp.getRightOperand(), position, dominators)) {
+                return key(binaryOp.getOperation().getOpType(), operandKey(binaryOp.getLeftOperand()),
+                        operandKey(binaryOp.getRightOperand()));
+            }
+
+            return null;
+        }
+
+        private boolean isFixed(Element element, int position, Dominators dominators) {
+            if (element instanceof LiteralElement) {
+                return true;
+            }
+
+            var name = nameOf(element);
+            return name != null && isFixed(name, position, dominators);
+        }
+
+        private static String operandKey(Element element) {
+            return element instanceof LiteralElement literal ? "#" + literal.getLiteral() : nameOf(element);
+        }
+    }
+}
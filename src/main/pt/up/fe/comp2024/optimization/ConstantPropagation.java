@@ -0,0 +1,437 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse conditional constant propagation over the instructions of each method.
+ * <p>
+ * Each int or boolean variable is either not yet known (not assigned on any path found so far), a constant, or
+ * not constant, before each instruction. Only the successors a branch can take with the values known so far are
+ * followed, so code after a condition that is always false is never reached, and does not make the variables it
+ * assigns lose their constant.
+ * <p>
+ * Once the values are stable, the uses of constants are replaced by literals, assignments of constant expressions
+ * become assignments of their value, branches on constant conditions become gotos or are removed, and the
+ * instructions that are never reached are removed.
+ */
+public class ConstantPropagation {
+
+    // Not assigned on any path found so far
+    private static final long UNKNOWN = Long.MAX_VALUE;
+
+    private static final long NOT_CONSTANT = Long.MIN_VALUE;
+
+    private Map<String, Integer> indexes;
+
+    // Value of each variable before each instruction, or null if the instruction was not reached
+    private long[][] states;
+
+    /**
+     * @param classUnit
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        boolean changed = false;
+
+        for (var method : classUnit.getMethods()) {
+            changed |= optimize(method);
+        }
+
+        return changed;
+    }
+
+    private boolean optimize(Method method) {
+        if (method.getInstructions().isEmpty()) {
+            return false;
+        }
+
+        propagate(method);
+        return rewrite(method);
+    }
+
+    private void propagate(Method method) {
+        indexes = new HashMap<>();
+        var entry = new ArrayList<Long>();
+
+        for (var variable : method.getVarTable().entrySet()) {
+            var descriptor = variable.getValue();
+            if (variable.getKey().equals("this") || !canBeConstant(descriptor.getVarType())) {
+                continue;
+            }
+
+            if (descriptor.getScope() == VarScope.PARAMETER) {
+                indexes.put(variable.getKey(), entry.size());
+                entry.add(NOT_CONSTANT);
+            } else if (descriptor.getScope() == VarScope.LOCAL) {
+                indexes.put(variable.getKey(), entry.size());
+                entry.add(UNKNOWN);
+            }
+        }
+
+        var instructions = method.getInstructions();
+        var successors = ControlFlow.successors(method);
+        states = new long[instructions.size()][];
+        states[0] = entry.stream().mapToLong(Long::longValue).toArray();
+
+        var toVisit = new ArrayDeque<Integer>();
+        toVisit.push(0);
+
+        while (!toVisit.isEmpty()) {
+            int index = toVisit.pop();
+            var inst = instructions.get(index);
+            var state = states[index];
+
+            var after = transfer(inst, state);
+            for (int successor : reachableSuccessors(inst, index, state, successors.get(index))) {
+                if (states[successor] == null) {
+                    states[successor] = after.clone();
+                    toVisit.push(successor);
+                } else if (join(states[successor], after)) {
+                    toVisit.push(successor);
+                }
+            }
+        }
+    }
+
+    private static boolean canBeConstant(Type type) {
+        if (type == null) {
+            return false;
+        }
+
+        var elementType = type.getTypeOfElement();
+        return elementType == ElementType.INT32 || elementType == ElementType.BOOLEAN;
+    }
+
+    private long[] transfer(Instruction inst, long[] state) {
+        if (!(inst instanceof AssignInstruction assign) || assign.getDest() instanceof ArrayOperand) {
+            return state;
+        }
+
+        var dest = (Operand) assign.getDest();
+        var index = indexes.get(dest.getName());
+        if (index == null) {
+            return state;
+        }
+
+        var after = state.clone();
+        after[index] = evaluate(assign.getRhs(), state);
+        return after;
+    }
+
+    /**
+     * @return the successors that can be taken with the values known before the instruction
+     */
+    private List<Integer> reachableSuccessors(Instruction inst, int index, long[] state, List<Integer> successors) {
+        if (!(inst instanceof CondBranchInstruction branch)) {
+            return successors;
+        }
+
+        long condition = evaluate(branch.getCondition(), state);
+        if (condition == NOT_CONSTANT) {
+            return successors;
+        }
+
+        if (condition == UNKNOWN) {
+            return List.of();
+        }
+
+        // The label is the first successor, and the next instruction the second
+        if (condition != 0) {
+            return successors.subList(0, 1);
+        }
+
+        return successors.size() > 1 && successors.get(1) == index + 1 ? successors.subList(1, 2) : List.of();
+    }
+
+    /**
+     * @return true if the values before the instruction changed
+     */
+    private static boolean join(long[] state, long[] incoming) {
+        boolean changed = false;
+
+        for (int i = 0; i < state.length; i++) {
+            long joined = join(state[i], incoming[i]);
+            if (joined != state[i]) {
+                state[i] = joined;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private static long join(long value, long incoming) {
+        if (value == UNKNOWN) {
+            return incoming;
+        }
+
+        if (incoming == UNKNOWN || incoming == value) {
+            return value;
+        }
+
+        return NOT_CONSTANT;
+    }
+
+    private long evaluate(Instruction inst, long[] state) {
+        if (inst instanceof SingleOpInstruction singleOp) {
+            return evaluate(singleOp.getSingleOperand(), state);
+        }
+
+        if (inst instanceof BinaryOpInstruction binaryOp) {
+            return fold(binaryOp.getOperation().getOpType(), evaluate(binaryOp.getLeftOperand(), state),
+                    evaluate(binaryOp.getRightOperand(), state));
+        }
+
+        if (inst instanceof UnaryOpInstruction unaryOp) {
+            var opType = unaryOp.getOperation().getOpType();
+            if (opType != OperationType.NOTB && opType != OperationType.NOT) {
+                return NOT_CONSTANT;
+            }
+
+            long operand = evaluate(unaryOp.getOperand(), state);
+            return isConstant(operand) ? (operand == 0 ? 1 : 0) : operand;
+        }
+
+        // Calls, fields and array accesses
+        return NOT_CONSTANT;
+    }
+
+    private long evaluate(Element element, long[] state) {
+        if (element instanceof LiteralElement literal) {
+            try {
+                return Integer.parseInt(literal.getLiteral());
+            } catch (NumberFormatException e) {
+                return NOT_CONSTANT;
+            }
+        }
+
+        if (element instanceof ArrayOperand || !(element instanceof Operand operand)) {
+            return NOT_CONSTANT;
+        }
+
+        var index = indexes.get(operand.getName());
+        return index != null ? state[index] : NOT_CONSTANT;
+    }
+
+    private static long fold(OperationType opType, long left, long right) {
+        // One operand is enough to know the result
+        if ((opType == OperationType.ANDB || opType == OperationType.AND) && (left == 0 || right == 0)) {
+            return 0;
+        }
+        if (opType == OperationType.ORB && (isConstantTrue(left) || isConstantTrue(right))) {
+            return 1;
+        }
+
+        if (left == NOT_CONSTANT || right == NOT_CONSTANT) {
+            return NOT_CONSTANT;
+        }
+        if (left == UNKNOWN || right == UNKNOWN) {
+            return UNKNOWN;
+        }
+
+        int a = (int) left;
+        int b = (int) right;
+
+        return switch (opType) {
+            case ADD -> a + b;
+            case SUB -> a - b;
+            case MUL -> a * b;
+            // Division by zero must still throw when the program runs
+            case DIV -> b != 0 ? a / b : NOT_CONSTANT;
+            case SHL -> a << b;
+            case SHR -> a >> b;
+            case SHRR -> a >>> b;
+            case XOR -> a ^ b;
+            case AND -> a & b;
+            case OR -> a | b;
+            case ANDB -> a != 0 && b != 0 ? 1 : 0;
+            case ORB -> a != 0 || b != 0 ? 1 : 0;
+            case LTH -> a < b ? 1 : 0;
+            case GTH -> a > b ? 1 : 0;
+            case LTE -> a <= b ? 1 : 0;
+            case GTE -> a >= b ? 1 : 0;
+            case EQ -> a == b ? 1 : 0;
+            case NEQ -> a != b ? 1 : 0;
+            default -> NOT_CONSTANT;
+        };
+    }
+
+    private static boolean isConstantTrue(long value) {
+        return isConstant(value) && value != 0;
+    }
+
+    private static boolean isConstant(long value) {
+        return value != UNKNOWN && value != NOT_CONSTANT;
+    }
+
+    /**
+     * @return true if the method changed
+     */
+    private boolean rewrite(Method method) {
+        var instructions = method.getInstructions();
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+        var unreachable = Collections.newSetFromMap(new IdentityHashMap<Instruction, Boolean>());
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+
+            if (states[i] == null) {
+                unreachable.add(inst);
+                replacements.put(inst, null);
+                continue;
+            }
+
+            var replacement = rewrite(inst, states[i]);
+            if (replacement != inst) {
+                replacements.put(inst, replacement);
+            }
+        }
+
+        // Nothing that is kept jumps to code that is never reached
+        ControlFlow.removeLabels(method, unreachable);
+        ControlFlow.replaceInstructions(method, replacements);
+
+        return !replacements.isEmpty();
+    }
+
+    /**
+     * @return the instruction with the constants known before it, the same instruction if it did not change, or null
+     * if it can be removed
+     */
+    private Instruction rewrite(Instruction inst, long[] state) {
+        if (inst instanceof CondBranchInstruction branch) {
+            long value = evaluate(branch.getCondition(), state);
+            if (isConstant(value)) {
+                return value != 0 ? new GotoInstruction(branch.getLabel()) : null;
+            }
+
+            var condition = replaceUses(branch.getCondition(), state);
+            if (condition == branch.getCondition()) {
+                return inst;
+            }
+
+            CondBranchInstruction replacement = condition instanceof SingleOpInstruction singleOp
+                    ? new SingleOpCondInstruction(singleOp)
+                    : new OpCondInstruction((OpInstruction) condition);
+            replacement.setLabel(branch.getLabel());
+            return replacement;
+        }
+
+        if (inst instanceof AssignInstruction assign) {
+            var dest = assign.getDest();
+            if (dest instanceof ArrayOperand arrayDest) {
+                dest = replaceUses(arrayDest, state);
+            }
+
+            Instruction rhs;
+            long value = evaluate(assign.getRhs(), state);
+            if (isConstant(value) && !isLiteral(assign.getRhs())) {
+                rhs = new SingleOpInstruction(new LiteralElement(String.valueOf(value), assign.getTypeOfAssign()));
+            } else {
+                rhs = replaceUses(assign.getRhs(), state);
+            }
+
+            return dest == assign.getDest() && rhs == assign.getRhs() ? inst
+                    : new AssignInstruction(dest, assign.getTypeOfAssign(), rhs);
+        }
+
+        if (inst instanceof ReturnInstruction ret && ret.hasReturnValue()) {
+            var operand = replaceUse(ret.getOperand(), state);
+            if (operand == ret.getOperand()) {
+                return inst;
+            }
+
+            var replacement = new ReturnInstruction(operand);
+            replacement.setReturnType(ret.getReturnType());
+            return replacement;
+        }
+
+        if (inst instanceof PutFieldInstruction putField) {
+            var value = replaceUse(putField.getValue(), state);
+            return value == putField.getValue() ? inst
+                    : new PutFieldInstruction(putField.getObject(), putField.getField(), value,
+                    putField.getFieldType());
+        }
+
+        return replaceUses(inst, state);
+    }
+
+    private static boolean isLiteral(Instruction inst) {
+        return inst instanceof SingleOpInstruction singleOp && singleOp.getSingleOperand().isLiteral();
+    }
+
+    /**
+     * @return the instruction with the constant operands replaced by literals, or the same instruction if none was
+     * constant
+     */
+    private Instruction replaceUses(Instruction inst, long[] state) {
+        if (inst instanceof SingleOpInstruction singleOp) {
+            var operand = replaceUse(singleOp.getSingleOperand(), state);
+            return operand == singleOp.getSingleOperand() ? inst : new SingleOpInstruction(operand);
+        }
+
+        if (inst instanceof BinaryOpInstruction binaryOp) {
+            var left = replaceUse(binaryOp.getLeftOperand(), state);
+            var right = replaceUse(binaryOp.getRightOperand(), state);
+            return left == binaryOp.getLeftOperand() && right == binaryOp.getRightOperand() ? inst
+                    : new BinaryOpInstruction(left, binaryOp.getOperation(), right);
+        }
+
+        if (inst instanceof UnaryOpInstruction unaryOp) {
+            var operand = replaceUse(unaryOp.getOperand(), state);
+            return operand == unaryOp.getOperand() ? inst : new UnaryOpInstruction(unaryOp.getOperation(), operand);
+        }
+
+        if (inst instanceof CallInstruction call) {
+            var arguments = call.getArguments().stream().map(argument -> replaceUse(argument, state)).toList();
+            if (sameElements(arguments, call.getArguments())) {
+                return inst;
+            }
+
+            return new CallInstruction(call.getInvocationType(), call.getCaller(), call.getMethodNameTry().orElse(null),
+                    new ArrayList<>(arguments), call.getReturnType(), call.isIsolated());
+        }
+
+        return inst;
+    }
+
+    private Element replaceUse(Element element, long[] state) {
+        if (element instanceof ArrayOperand arrayOperand) {
+            return replaceUses(arrayOperand, state);
+        }
+
+        long value = evaluate(element, state);
+        if (element.isLiteral() || !isConstant(value)) {
+            return element;
+        }
+
+        return new LiteralElement(String.valueOf(value), element.getType());
+    }
+
+    private ArrayOperand replaceUses(ArrayOperand arrayOperand, long[] state) {
+        var indexes = arrayOperand.getIndexOperands().stream().map(index -> replaceUse(index, state)).toList();
+        if (sameElements(indexes, arrayOperand.getIndexOperands())) {
+            return arrayOperand;
+        }
+
+        return new ArrayOperand(arrayOperand.getName(), arrayOperand.getType(), indexes);
+    }
+
+    private static boolean sameElements(List<Element> first, List<Element> second) {
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i) != second.get(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
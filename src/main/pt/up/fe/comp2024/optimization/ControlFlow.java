@@ -0,0 +1,156 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The control flow between the instructions of a method, by their position in the method.
+ * <p>
+ * Unlike {@link Method#buildCFG()}, this does not change the method, so it can be computed again after the
+ * instructions of the method change.
+ */
+public class ControlFlow {
+
+    private ControlFlow() {
+    }
+
+    /**
+     * @param method
+     * @return the positions of the instructions that can run right after each instruction
+     */
+    public static List<List<Integer>> successors(Method method) {
+        var instructions = method.getInstructions();
+        var positions = positions(method);
+
+        var successors = new ArrayList<List<Integer>>(instructions.size());
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+            var instSuccessors = new ArrayList<Integer>(2);
+
+            switch (inst.getInstType()) {
+                case GOTO:
+                    instSuccessors.add(positions.get(method.getLabels().get(((GotoInstruction) inst).getLabel())));
+                    break;
+                case BRANCH:
+                    var label = ((CondBranchInstruction) inst).getLabel();
+                    instSuccessors.add(positions.get(method.getLabels().get(label)));
+                    addNext(i, instructions.size(), instSuccessors);
+                    break;
+                case RETURN:
+                    break;
+                default:
+                    addNext(i, instructions.size(), instSuccessors);
+                    break;
+            }
+
+            successors.add(instSuccessors);
+        }
+
+        return successors;
+    }
+
+    /**
+     * @param method
+     * @return the position of each instruction of the method
+     */
+    public static Map<Instruction, Integer> positions(Method method) {
+        var instructions = method.getInstructions();
+
+        var positions = new IdentityHashMap<Instruction, Integer>();
+        for (int i = 0; i < instructions.size(); i++) {
+            positions.put(instructions.get(i), i);
+        }
+
+        return positions;
+    }
+
+    /**
+     * @param method
+     * @return for each instruction, true if a basic block starts there
+     */
+    public static boolean[] leaders(Method method) {
+        var instructions = method.getInstructions();
+        var positions = positions(method);
+
+        var leaders = new boolean[instructions.size()];
+        leaders[0] = true;
+
+        for (var labeled : method.getLabels().values()) {
+            var position = positions.get(labeled);
+            if (position != null) {
+                leaders[position] = true;
+            }
+        }
+
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            switch (instructions.get(i).getInstType()) {
+                case GOTO, BRANCH, RETURN -> leaders[i + 1] = true;
+                default -> {
+                }
+            }
+        }
+
+        return leaders;
+    }
+
+    /**
+     * Replaces or removes instructions of a method. The labels of a replaced instruction label what replaced it, and
+     * the labels of a removed instruction go to the next instruction that is kept, which runs in its place.
+     *
+     * @param method
+     * @param replacements what each instruction becomes, or null to remove it; the instructions not in it are kept
+     */
+    public static void replaceInstructions(Method method, Map<Instruction, Instruction> replacements) {
+        var instructions = method.getInstructions();
+        var positions = positions(method);
+
+        for (var label : new ArrayList<>(method.getLabels().entrySet())) {
+            Instruction target = null;
+            for (int i = positions.get(label.getValue()); i < instructions.size() && target == null; i++) {
+                target = replacementOf(instructions.get(i), replacements);
+            }
+
+            if (target != null) {
+                method.getLabels().put(label.getKey(), target);
+            } else {
+                method.getLabels().remove(label.getKey());
+            }
+        }
+
+        var kept = new ArrayList<Instruction>(instructions.size());
+        for (var inst : instructions) {
+            var replacement = replacementOf(inst, replacements);
+            if (replacement != null) {
+                kept.add(replacement);
+            }
+        }
+
+        instructions.clear();
+        instructions.addAll(kept);
+    }
+
+    /**
+     * Removes the labels of the given instructions, which nothing should jump to anymore.
+     */
+    public static void removeLabels(Method method, Set<Instruction> instructions) {
+        method.getLabels().values().removeIf(instructions::contains);
+    }
+
+    private static Instruction replacementOf(Instruction inst, Map<Instruction, Instruction> replacements) {
+        return replacements.containsKey(inst) ? replacements.get(inst) : inst;
+    }
+
+    private static void addNext(int instruction, int size, List<Integer> instSuccessors) {
+        if (instruction + 1 < size) {
+            instSuccessors.add(instruction + 1);
+        }
+    }
+}
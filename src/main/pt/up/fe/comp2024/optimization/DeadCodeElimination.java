@@ -0,0 +1,185 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+
+/**
+ * Removes the instructions of each method that have no effect on what the method does.
+ * <p>
+ * These are the instructions that are never reached, gotos to the next instruction, and assignments to variables
+ * that are not live after them, when computing the value has no side effects. A temporary assigned and then copied
+ * to a variable right away is assigned to that variable instead. This is repeated until nothing changes, since each
+ * removal can make more assignments dead.
+ */
+public class DeadCodeElimination {
+
+    /**
+     * @param classUnit
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        boolean changed = false;
+
+        for (var method : classUnit.getMethods()) {
+            while (removeUnreachable(method) | removeJumpsToNext(method) | removeDeadStores(method)) {
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Removes the instructions that no path from the start of the method reaches, such as those right after a goto
+     * or a return without a label.
+     */
+    private boolean removeUnreachable(Method method) {
+        var instructions = method.getInstructions();
+        if (instructions.isEmpty()) {
+            return false;
+        }
+
+        var successors = ControlFlow.successors(method);
+        var reached = new boolean[instructions.size()];
+        reached[0] = true;
+
+        var toVisit = new ArrayDeque<Integer>();
+        toVisit.push(0);
+        while (!toVisit.isEmpty()) {
+            for (int successor : successors.get(toVisit.pop())) {
+                if (!reached[successor]) {
+                    reached[successor] = true;
+                    toVisit.push(successor);
+                }
+            }
+        }
+
+        var unreachable = Collections.newSetFromMap(new IdentityHashMap<Instruction, Boolean>());
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!reached[i]) {
+                unreachable.add(instructions.get(i));
+                replacements.put(instructions.get(i), null);
+            }
+        }
+
+        ControlFlow.removeLabels(method, unreachable);
+        ControlFlow.replaceInstructions(method, replacements);
+
+        return !replacements.isEmpty();
+    }
+
+    private boolean removeJumpsToNext(Method method) {
+        var instructions = method.getInstructions();
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            if (instructions.get(i) instanceof GotoInstruction gotoInst
+                    && method.getLabels().get(gotoInst.getLabel()) == instructions.get(i + 1)) {
+                replacements.put(gotoInst, null);
+            }
+        }
+
+        ControlFlow.replaceInstructions(method, replacements);
+
+        return !replacements.isEmpty();
+    }
+
+    private boolean removeDeadStores(Method method) {
+        var instructions = method.getInstructions();
+        var liveness = new Liveness(method);
+        var labeled = Collections.newSetFromMap(new IdentityHashMap<Instruction, Boolean>());
+        labeled.addAll(method.getLabels().values());
+
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)) {
+                continue;
+            }
+
+            int dest = destOf(assign, liveness);
+            if (dest < 0) {
+                continue;
+            }
+
+            if (!liveness.getLiveOut(i).get(dest) && hasNoSideEffects(assign.getRhs())) {
+                replacements.put(assign, null);
+                continue;
+            }
+
+            // tmp := expr; x := tmp; becomes x := expr;
+            if (i + 1 < instructions.size() && instructions.get(i + 1) instanceof AssignInstruction copy
+                    && !labeled.contains(copy) && destOf(copy, liveness) >= 0 && isCopyOf(copy, liveness, dest)
+                    && !liveness.getLiveOut(i + 1).get(dest)) {
+                replacements.put(assign, new AssignInstruction(copy.getDest(), copy.getTypeOfAssign(),
+                        assign.getRhs()));
+                replacements.put(copy, null);
+                i++;
+            }
+        }
+
+        ControlFlow.replaceInstructions(method, replacements);
+
+        return !replacements.isEmpty();
+    }
+
+    /**
+     * @return the index of the variable the instruction assigns, or -1 if it assigns an array element or a variable
+     * that is not tracked by the liveness
+     */
+    private static int destOf(AssignInstruction assign, Liveness liveness) {
+        if (assign.getDest() instanceof ArrayOperand || !(assign.getDest() instanceof Operand dest)) {
+            return -1;
+        }
+
+        return liveness.indexOf(dest.getName());
+    }
+
+    private static boolean isCopyOf(AssignInstruction assign, Liveness liveness, int variable) {
+        return assign.getRhs() instanceof SingleOpInstruction singleOp
+                && !(singleOp.getSingleOperand() instanceof ArrayOperand)
+                && singleOp.getSingleOperand() instanceof Operand operand
+                && liveness.indexOf(operand.getName()) == variable
+                && operand.getType().getTypeOfElement() == assign.getTypeOfAssign().getTypeOfElement();
+    }
+
+    /**
+     * Calls can do anything, array accesses can throw, and so can divisions unless by a constant other than zero.
+     */
+    private static boolean hasNoSideEffects(Instruction inst) {
+        if (inst instanceof SingleOpInstruction singleOp) {
+            return !(singleOp.getSingleOperand() instanceof ArrayOperand);
+        }
+
+        if (inst instanceof UnaryOpInstruction unaryOp) {
+            return !(unaryOp.getOperand() instanceof ArrayOperand);
+        }
+
+        if (inst instanceof BinaryOpInstruction binaryOp) {
+            if (binaryOp.getLeftOperand() instanceof ArrayOperand
+                    || binaryOp.getRightOperand() instanceof ArrayOperand) {
+                return false;
+            }
+
+            return binaryOp.getOperation().getOpType() != OperationType.DIV
+                    || isNonZeroLiteral(binaryOp.getRightOperand());
+        }
+
+        return inst instanceof GetFieldInstruction;
+    }
+
+    private static boolean isNonZeroLiteral(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return false;
+        }
+
+        try {
+            return Integer.parseInt(literal.getLiteral()) != 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
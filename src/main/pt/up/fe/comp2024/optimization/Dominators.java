@@ -0,0 +1,172 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Method;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The dominators of the instructions of a method, by their position in the method.
+ * <p>
+ * An instruction dominates another if every path from the start of the method to the other goes through it. The
+ * immediate dominator of each instruction is computed over the reverse postorder of the control flow, until none
+ * changes, as in "A Simple, Fast Dominance Algorithm" by Cooper, Harvey and Kennedy.
+ */
+public class Dominators {
+
+    private final List<List<Integer>> successors;
+
+    private final List<List<Integer>> predecessors;
+
+    // Immediate dominator of each instruction, the first instruction for itself, or -1 if it is never reached
+    private final int[] immediateDominators;
+
+    // Position of each instruction in the postorder of the control flow, or -1 if it is never reached
+    private final int[] postorder;
+
+    public Dominators(Method method) {
+        this(ControlFlow.successors(method));
+    }
+
+    /**
+     * @param successors the positions of the instructions that can run right after each instruction, as given by
+     *                   {@link ControlFlow#successors(Method)}
+     */
+    public Dominators(List<List<Integer>> successors) {
+        this.successors = successors;
+        this.predecessors = new ArrayList<>(successors.size());
+        this.immediateDominators = new int[successors.size()];
+        this.postorder = new int[successors.size()];
+
+        for (int i = 0; i < successors.size(); i++) {
+            predecessors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < successors.size(); i++) {
+            for (int successor : successors.get(i)) {
+                predecessors.get(successor).add(i);
+            }
+        }
+
+        Arrays.fill(immediateDominators, -1);
+        Arrays.fill(postorder, -1);
+
+        if (!successors.isEmpty()) {
+            solve(reversePostorder());
+        }
+    }
+
+    public List<Integer> getSuccessors(int instruction) {
+        return successors.get(instruction);
+    }
+
+    public List<Integer> getPredecessors(int instruction) {
+        return predecessors.get(instruction);
+    }
+
+    public boolean isReachable(int instruction) {
+        return immediateDominators[instruction] >= 0;
+    }
+
+    /**
+     * @param instruction
+     * @return the closest instruction that dominates it, or -1 for the first instruction and those never reached
+     */
+    public int getImmediateDominator(int instruction) {
+        return instruction == 0 ? -1 : immediateDominators[instruction];
+    }
+
+    /**
+     * @return true if every path from the start of the method to the second instruction goes through the first, which
+     * is the case when they are the same
+     */
+    public boolean dominates(int dominator, int instruction) {
+        if (!isReachable(instruction)) {
+            return false;
+        }
+
+        int current = instruction;
+        while (current != dominator && current != 0) {
+            current = immediateDominators[current];
+        }
+
+        return current == dominator;
+    }
+
+    private List<Integer> reversePostorder() {
+        var order = new ArrayList<Integer>(successors.size());
+        var visited = new boolean[successors.size()];
+
+        // Each entry is an instruction and how many of its successors were already pushed
+        var stack = new ArrayDeque<int[]>();
+        stack.push(new int[]{0, 0});
+        visited[0] = true;
+
+        while (!stack.isEmpty()) {
+            var top = stack.peek();
+            var instSuccessors = successors.get(top[0]);
+
+            if (top[1] < instSuccessors.size()) {
+                int successor = instSuccessors.get(top[1]++);
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack.push(new int[]{successor, 0});
+                }
+            } else {
+                postorder[top[0]] = order.size();
+                order.add(top[0]);
+                stack.pop();
+            }
+        }
+
+        Collections.reverse(order);
+        return order;
+    }
+
+    private void solve(List<Integer> reversePostorder) {
+        immediateDominators[0] = 0;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int instruction : reversePostorder) {
+                if (instruction == 0) {
+                    continue;
+                }
+
+                int dominator = -1;
+                for (int predecessor : predecessors.get(instruction)) {
+                    if (immediateDominators[predecessor] < 0) {
+                        continue;
+                    }
+
+                    dominator = dominator < 0 ? predecessor : intersect(predecessor, dominator);
+                }
+
+                if (dominator != immediateDominators[instruction]) {
+                    immediateDominators[instruction] = dominator;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the closest instruction that dominates both, going up from each towards the first instruction
+     */
+    private int intersect(int first, int second) {
+        while (first != second) {
+            while (postorder[first] < postorder[second]) {
+                first = immediateDominators[first];
+            }
+            while (postorder[second] < postorder[first]) {
+                second = immediateDominators[second];
+            }
+        }
+
+        return first;
+    }
+}
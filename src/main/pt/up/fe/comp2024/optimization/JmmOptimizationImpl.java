@@ -1,27 +1,86 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.ClassUnit;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.MethodPools;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        var ollirCode = MethodPools.run(CompilerConfig.getMethodParallelism(semanticsResult.getConfig()), methodPool -> {
+            var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable(), methodPool);
+            visitor.visit(semanticsResult.getRootNode());
+            return visitor.getCode();
+        });
 
         return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
     }
 
+    /**
+     * Builds the same OLLIR class as {@link #toOllir}, but straight from the AST, without generating OLLIR code and
+     * parsing it.
+     *
+     * @param semanticsResult
+     * @return the class, or empty if the builder does not support the program, in which case {@link #toOllir} should
+     * be used instead
+     */
+    public Optional<ClassUnit> toOllirClass(JmmSemanticsResult semanticsResult) {
+
+        try {
+            return Optional.of(MethodPools.run(CompilerConfig.getMethodParallelism(semanticsResult.getConfig()),
+                    methodPool -> new OllirClassBuilder(semanticsResult.getSymbolTable(), methodPool)
+                            .build(semanticsResult.getRootNode())));
+        } catch (UnsupportedOperationException e) {
+            // Whatever the builder could not handle, toOllir handles (or fails on) the same way as before
+            return Optional.empty();
+        }
+    }
+
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
-        //TODO: Do your OLLIR-based optimizations here
+        ollirResult.getReports().addAll(optimize(ollirResult.getOllirClass(), ollirResult.getConfig()));
 
         return ollirResult;
     }
+
+    /**
+     * Does the same optimizations as {@link #optimize(OllirResult)}, on a class built by {@link #toOllirClass}.
+     *
+     * @param ollirClass
+     * @param config
+     * @return the reports of the optimizations
+     */
+    public List<Report> optimize(ClassUnit ollirClass, Map<String, String> config) {
+        var reports = new ArrayList<Report>();
+
+        if (CompilerConfig.getOptimize(config)) {
+            // Inlined code is then optimized with the arguments it was given
+            new MethodInlining(CompilerConfig.getInlineBudget(config)).optimize(ollirClass);
+            new ConstantPropagation().optimize(ollirClass);
+            new CommonSubexpressionElimination().optimize(ollirClass);
+            new LoopInvariantCodeMotion().optimize(ollirClass);
+            new StrengthReduction().optimize(ollirClass);
+            new DeadCodeElimination().optimize(ollirClass);
+        }
+
+        int registerAllocation = CompilerConfig.getRegisterAllocation(config);
+        if (registerAllocation >= 0) {
+            reports.addAll(new RegisterAllocator(registerAllocation).allocate(ollirClass));
+        }
+
+        return reports;
+    }
 }
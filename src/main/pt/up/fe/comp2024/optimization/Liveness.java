@@ -0,0 +1,183 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which variables of a method are live before and after each of its instructions.
+ * <p>
+ * The variables are the parameters and locals of the var table, except 'this' and the names of classes, each with an
+ * index into the sets. The sets are computed backwards over the control flow, from the uses and definitions of each
+ * instruction, until they no longer change.
+ */
+public class Liveness {
+
+    private final Method method;
+
+    private final List<String> variables;
+
+    private final Map<String, Integer> indexes;
+
+    private final List<List<Integer>> successors;
+
+    private final List<BitSet> uses;
+
+    private final List<BitSet> defs;
+
+    private final List<BitSet> liveIn;
+
+    private final List<BitSet> liveOut;
+
+    public Liveness(Method method) {
+        this.method = method;
+        this.variables = new ArrayList<>();
+        this.indexes = new HashMap<>();
+        this.successors = new ArrayList<>();
+        this.uses = new ArrayList<>();
+        this.defs = new ArrayList<>();
+        this.liveIn = new ArrayList<>();
+        this.liveOut = new ArrayList<>();
+
+        for (var entry : method.getVarTable().entrySet()) {
+            var descriptor = entry.getValue();
+            if (isVariable(entry.getKey(), descriptor)) {
+                indexes.put(entry.getKey(), variables.size());
+                variables.add(entry.getKey());
+            }
+        }
+
+        for (var inst : method.getInstructions()) {
+            var instUses = new BitSet();
+            var instDefs = new BitSet();
+            addUsesAndDefs(inst, instUses, instDefs);
+
+            uses.add(instUses);
+            defs.add(instDefs);
+            liveIn.add(new BitSet());
+            liveOut.add(new BitSet());
+        }
+
+        successors.addAll(ControlFlow.successors(method));
+        solve();
+    }
+
+    private static boolean isVariable(String name, Descriptor descriptor) {
+        if (name.equals("this")) {
+            return false;
+        }
+
+        if (descriptor.getScope() != VarScope.LOCAL && descriptor.getScope() != VarScope.PARAMETER) {
+            return false;
+        }
+
+        var type = descriptor.getVarType();
+        return type == null || type.getTypeOfElement() != ElementType.CLASS;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the name of each variable, by its index
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @param name
+     * @return the index of the variable, or -1 if it is not one (such as 'this', or a field)
+     */
+    public int indexOf(String name) {
+        return indexes.getOrDefault(name, -1);
+    }
+
+    public List<Integer> getSuccessors(int instruction) {
+        return successors.get(instruction);
+    }
+
+    public BitSet getUses(int instruction) {
+        return uses.get(instruction);
+    }
+
+    public BitSet getDefs(int instruction) {
+        return defs.get(instruction);
+    }
+
+    public BitSet getLiveIn(int instruction) {
+        return liveIn.get(instruction);
+    }
+
+    public BitSet getLiveOut(int instruction) {
+        return liveOut.get(instruction);
+    }
+
+    private void addUsesAndDefs(Instruction inst, BitSet instUses, BitSet instDefs) {
+        if (inst instanceof AssignInstruction assign) {
+            var dest = assign.getDest();
+
+            // Storing into an array element reads the array and the index, and defines no variable
+            if (dest instanceof ArrayOperand) {
+                addUses(dest, instUses);
+            } else if (dest instanceof Operand operand && indexOf(operand.getName()) >= 0) {
+                instDefs.set(indexOf(operand.getName()));
+            }
+
+            addUses(assign.getRhs(), instUses);
+            return;
+        }
+
+        addUses(inst, instUses);
+    }
+
+    private void addUses(TreeNode node, BitSet instUses) {
+        if (node instanceof Operand operand) {
+            var type = operand.getType();
+
+            // The caller of a static call, or of a new, is a class
+            if (type == null || type.getTypeOfElement() != ElementType.CLASS) {
+                int index = indexOf(operand.getName());
+                if (index >= 0) {
+                    instUses.set(index);
+                }
+            }
+        }
+
+        for (var child : node.getChildren()) {
+            addUses(child, instUses);
+        }
+    }
+
+    private void solve() {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            // Backwards, so most of the sets are final after the first pass
+            for (int i = liveIn.size() - 1; i >= 0; i--) {
+                var out = new BitSet();
+                for (int successor : successors.get(i)) {
+                    out.or(liveIn.get(successor));
+                }
+
+                var in = (BitSet) out.clone();
+                in.andNot(defs.get(i));
+                in.or(uses.get(i));
+
+                if (!in.equals(liveIn.get(i)) || !out.equals(liveOut.get(i))) {
+                    liveIn.set(i, in);
+                    liveOut.set(i, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A natural loop of a method, by the positions of its instructions.
+ * <p>
+ * Loops are found from the dominators: an edge to an instruction that dominates its source closes a loop, whose
+ * header is that instruction, and whose body is every instruction that reaches the edge without going through the
+ * header. The loops closed by several edges to the same header are one loop.
+ */
+public class Loop {
+
+    private final int header;
+
+    private final BitSet body;
+
+    private Loop(int header, BitSet body) {
+        this.header = header;
+        this.body = body;
+    }
+
+    /**
+     * @param dominators
+     * @param size       how many instructions the method has
+     * @return the loops of the method, innermost first
+     */
+    public static List<Loop> find(Dominators dominators, int size) {
+        var bodies = new HashMap<Integer, BitSet>();
+
+        for (int source = 0; source < size; source++) {
+            for (int header : dominators.getSuccessors(source)) {
+                if (!dominators.dominates(header, source)) {
+                    continue;
+                }
+
+                var body = bodies.computeIfAbsent(header, key -> new BitSet());
+                body.set(header);
+
+                // Back from the source of the edge until the header
+                var toVisit = new ArrayList<Integer>();
+                toVisit.add(source);
+                while (!toVisit.isEmpty()) {
+                    int inst = toVisit.remove(toVisit.size() - 1);
+                    if (!body.get(inst)) {
+                        body.set(inst);
+                        toVisit.addAll(dominators.getPredecessors(inst));
+                    }
+                }
+            }
+        }
+
+        var loops = new ArrayList<Loop>();
+        bodies.forEach((header, body) -> loops.add(new Loop(header, body)));
+        loops.sort((first, second) -> Integer.compare(first.body.cardinality(), second.body.cardinality()));
+
+        return loops;
+    }
+
+    public int getHeader() {
+        return header;
+    }
+
+    public BitSet getBody() {
+        return body;
+    }
+
+    /**
+     * @return true if instructions can be put right before the header, since only code from outside the loop
+     * continues there
+     */
+    public boolean hasPreheader() {
+        return header == 0 || !body.get(header - 1);
+    }
+
+    /**
+     * @return the instructions of the loop, which are still known after the positions change
+     */
+    public Set<Instruction> instructions(Method method) {
+        var instructions = Collections.newSetFromMap(new IdentityHashMap<Instruction, Boolean>());
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            instructions.add(method.getInstructions().get(i));
+        }
+
+        return instructions;
+    }
+
+    /**
+     * Puts instructions right before the header, where they run each time the loop is entered from outside, but not
+     * when it goes back to the header.
+     *
+     * @param method
+     * @param inLoop   the instructions of the loop, from {@link #instructions(Method)}
+     * @param start    the instruction the loop starts at now, which can be another than the one at the header if that
+     *                 one was removed
+     * @param inserted the instructions to put before it
+     */
+    public static void insertBefore(Method method, Set<Instruction> inLoop, Instruction start,
+                                    List<Instruction> inserted) {
+        var instructions = method.getInstructions();
+
+        // Jumps from inside the loop to its header keep going there, past the inserted instructions
+        var jumpsInLoop = new HashSet<String>();
+        var jumpsOutside = new HashSet<String>();
+        for (var inst : instructions) {
+            var label = labelOf(inst);
+            if (label != null) {
+                (inLoop.contains(inst) ? jumpsInLoop : jumpsOutside).add(label);
+            }
+        }
+
+        instructions.addAll(positionOf(instructions, start), inserted);
+
+        for (var label : new ArrayList<>(method.getLabels().entrySet())) {
+            if (label.getValue() != start) {
+                continue;
+            }
+
+            if (!jumpsInLoop.contains(label.getKey())) {
+                // Only reached from outside the loop, so the inserted instructions run first
+                label.setValue(inserted.get(0));
+            } else if (jumpsOutside.contains(label.getKey())) {
+                // Reached from both, so the jumps from outside get a label of their own
+                var preheader = freeLabel(method);
+                method.getLabels().put(preheader, inserted.get(0));
+
+                for (var inst : instructions) {
+                    if (!inLoop.contains(inst) && label.getKey().equals(labelOf(inst))) {
+                        setLabel(inst, preheader);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int positionOf(List<Instruction> instructions, Instruction inst) {
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) == inst) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static String freeLabel(Method method) {
+        for (int number = 0; ; number++) {
+            var label = "preheader_" + number;
+            if (!method.getLabels().containsKey(label)) {
+                return label;
+            }
+        }
+    }
+
+    private static String labelOf(Instruction inst) {
+        if (inst instanceof GotoInstruction gotoInst) {
+            return gotoInst.getLabel();
+        }
+
+        if (inst instanceof CondBranchInstruction branch) {
+            return branch.getLabel();
+        }
+
+        return null;
+    }
+
+    private static void setLabel(Instruction inst, String label) {
+        if (inst instanceof GotoInstruction gotoInst) {
+            gotoInst.setLabel(label);
+        } else if (inst instanceof CondBranchInstruction branch) {
+            branch.setLabel(label);
+        }
+    }
+}
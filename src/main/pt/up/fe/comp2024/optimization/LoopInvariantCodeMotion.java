@@ -0,0 +1,345 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves the assignments of each loop whose value is the same in every iteration to right before the loop.
+ * <p>
+ * Loops are found as in {@link Loop}, and inner loops are done first, so what they hoist can then leave the outer
+ * loops too.
+ * <p>
+ * An assignment is invariant if its variable is assigned nowhere else in the loop and is not read in the loop before
+ * being assigned, and everything it reads is either not assigned in the loop or assigned by another invariant
+ * assignment before it. It is moved if computing it has no side effects, and if the variable is not read after the
+ * loop unless the assignment runs on every way out of it. Assignments that can throw, such as array lengths and
+ * accesses, are only moved if they would run before anything else with effects, on every way out of the loop.
+ */
+public class LoopInvariantCodeMotion {
+
+    private enum Effect {
+        NONE, THROWS, NOT_MOVABLE
+    }
+
+    /**
+     * @param classUnit
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        boolean changed = false;
+
+        for (var method : classUnit.getMethods()) {
+            // The positions of the instructions change with each move, so everything is computed again after it
+            while (hoistFromAnyLoop(method)) {
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean hoistFromAnyLoop(Method method) {
+        if (method.getInstructions().isEmpty()) {
+            return false;
+        }
+
+        var dominators = new Dominators(method);
+        for (var loop : Loop.find(dominators, method.getInstructions().size())) {
+            if (new Hoisting(method, dominators, loop).hoist()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Moving the invariant assignments out of one loop.
+     */
+    private static class Hoisting {
+
+        private final Method method;
+
+        private final List<Instruction> instructions;
+
+        private final Dominators dominators;
+
+        private final Loop loop;
+
+        private final Liveness liveness;
+
+        // How many times each variable is assigned in the loop
+        private final Map<String, Integer> assignments;
+
+        // Fields assigned in the loop
+        private final Set<String> fieldsAssigned;
+
+        private boolean hasCalls;
+
+        private boolean hasArrayStores;
+
+        // Instructions of the loop that jump out of it, and where to
+        private final List<int[]> exits;
+
+        // Position of the assignment of each invariant variable
+        private final Map<String, Integer> invariants;
+
+        private final List<Integer> hoisted;
+
+        private Hoisting(Method method, Dominators dominators, Loop loop) {
+            this.method = method;
+            this.instructions = method.getInstructions();
+            this.dominators = dominators;
+            this.loop = loop;
+            this.liveness = new Liveness(method);
+            this.assignments = new HashMap<>();
+            this.fieldsAssigned = new HashSet<>();
+            this.exits = new ArrayList<>();
+            this.invariants = new HashMap<>();
+            this.hoisted = new ArrayList<>();
+
+            var body = loop.getBody();
+            for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+                addEffects(instructions.get(i));
+
+                for (int successor : dominators.getSuccessors(i)) {
+                    if (!body.get(successor)) {
+                        exits.add(new int[]{i, successor});
+                    }
+                }
+            }
+        }
+
+        private void addEffects(Instruction inst) {
+            if (inst instanceof AssignInstruction assign) {
+                if (assign.getDest() instanceof ArrayOperand) {
+                    hasArrayStores = true;
+                } else if (assign.getDest() instanceof Operand dest) {
+                    assignments.merge(dest.getName(), 1, Integer::sum);
+                }
+
+                addEffects(assign.getRhs());
+            } else if (inst instanceof CallInstruction call && call.getInvocationType() != CallType.arraylength) {
+                hasCalls = true;
+            } else if (inst instanceof PutFieldInstruction putField) {
+                fieldsAssigned.add(putField.getField().getName());
+            }
+        }
+
+        /**
+         * @return true if any assignment was moved out of the loop
+         */
+        private boolean hoist() {
+            if (!loop.hasPreheader()) {
+                return false;
+            }
+
+            boolean found = true;
+            while (found) {
+                found = false;
+
+                var body = loop.getBody();
+                for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+                    if (!hoisted.contains(i) && isHoistable(i)) {
+                        var dest = (Operand) ((AssignInstruction) instructions.get(i)).getDest();
+                        invariants.put(dest.getName(), i);
+                        hoisted.add(i);
+                        found = true;
+                    }
+                }
+            }
+
+            if (hoisted.isEmpty()) {
+                return false;
+            }
+
+            move();
+            return true;
+        }
+
+        private boolean isHoistable(int position) {
+            if (!(instructions.get(position) instanceof AssignInstruction assign)
+                    || assign.getDest() instanceof ArrayOperand || !(assign.getDest() instanceof Operand dest)) {
+                return false;
+            }
+
+            int variable = liveness.indexOf(dest.getName());
+            if (variable < 0 || assignments.get(dest.getName()) != 1
+                    || liveness.getLiveIn(loop.getHeader()).get(variable)) {
+                return false;
+            }
+
+            var effect = effectOf(assign.getRhs());
+            if (effect == Effect.NOT_MOVABLE || !readsInvariants(assign.getRhs(), position)) {
+                return false;
+            }
+
+            for (var exit : exits) {
+                boolean runsBeforeExit = dominators.dominates(position, exit[0]);
+                boolean readAfter = liveness.getLiveIn(exit[1]).get(variable);
+
+                if (!runsBeforeExit && (readAfter || effect == Effect.THROWS)) {
+                    return false;
+                }
+            }
+
+            // Throwing earlier must not skip anything the loop would have done first
+            if (effect == Effect.THROWS) {
+                var before = runsBefore(position);
+                for (int i = before.nextSetBit(0); i >= 0; i = before.nextSetBit(i + 1)) {
+                    if (!hoisted.contains(i) && !isQuiet(instructions.get(i))) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * @return the instructions of the loop that can run between the header and the one at the position, in the
+         * same iteration
+         */
+        private BitSet runsBefore(int position) {
+            var before = new BitSet();
+            var toVisit = new ArrayList<Integer>();
+            if (position != loop.getHeader()) {
+                toVisit.addAll(dominators.getPredecessors(position));
+            }
+
+            while (!toVisit.isEmpty()) {
+                int inst = toVisit.remove(toVisit.size() - 1);
+                if (loop.getBody().get(inst) && !before.get(inst)) {
+                    before.set(inst);
+                    if (inst != loop.getHeader()) {
+                        toVisit.addAll(dominators.getPredecessors(inst));
+                    }
+                }
+            }
+
+            return before;
+        }
+
+        private Effect effectOf(Instruction rhs) {
+            if (rhs instanceof SingleOpInstruction singleOp) {
+                return effectOf(singleOp.getSingleOperand());
+            }
+
+            if (rhs instanceof UnaryOpInstruction unaryOp) {
+                return effectOf(unaryOp.getOperand());
+            }
+
+            if (rhs instanceof BinaryOpInstruction binaryOp) {
+                var effect = max(effectOf(binaryOp.getLeftOperand()), effectOf(binaryOp.getRightOperand()));
+
+                boolean divides = binaryOp.getOperation().getOpType() == OperationType.DIV;
+                return divides && !isNonZeroLiteral(binaryOp.getRightOperand()) ? max(effect, Effect.THROWS) : effect;
+            }
+
+            // Fields of 'this' can only change through putfield, or in calls
+            if (rhs instanceof GetFieldInstruction getField) {
+                return hasCalls || fieldsAssigned.contains(getField.getField().getName()) ? Effect.NOT_MOVABLE
+                        : Effect.NONE;
+            }
+
+            if (rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+                return Effect.THROWS;
+            }
+
+            return Effect.NOT_MOVABLE;
+        }
+
+        private Effect effectOf(Element element) {
+            if (!(element instanceof ArrayOperand)) {
+                return Effect.NONE;
+            }
+
+            return hasCalls || hasArrayStores ? Effect.NOT_MOVABLE : Effect.THROWS;
+        }
+
+        private static Effect max(Effect first, Effect second) {
+            return first.compareTo(second) >= 0 ? first : second;
+        }
+
+        private static boolean isNonZeroLiteral(Element element) {
+            if (!(element instanceof LiteralElement literal)) {
+                return false;
+            }
+
+            try {
+                return Integer.parseInt(literal.getLiteral()) != 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        /**
+         * @return true if the instruction has no effect other than assigning a variable, and cannot throw
+         */
+        private boolean isQuiet(Instruction inst) {
+            if (inst instanceof GotoInstruction || inst instanceof CondBranchInstruction) {
+                return true;
+            }
+
+            return inst instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)
+                    && effectOf(assign.getRhs()) == Effect.NONE;
+        }
+
+        /**
+         * @return true if every variable the node reads has the same value in every iteration when the instruction at
+         * the position runs
+         */
+        private boolean readsInvariants(TreeNode node, int position) {
+            if (node instanceof Operand operand && !isInvariant(operand.getName(), position)) {
+                return false;
+            }
+
+            for (var child : node.getChildren()) {
+                if (!readsInvariants(child, position)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private boolean isInvariant(String name, int position) {
+            if (!assignments.containsKey(name)) {
+                return true;
+            }
+
+            var assignment = invariants.get(name);
+            return assignment != null && dominators.dominates(assignment, position);
+        }
+
+        private void move() {
+            var moved = new ArrayList<Instruction>(hoisted.size());
+            var removed = new IdentityHashMap<Instruction, Instruction>();
+            for (int position : hoisted) {
+                moved.add(instructions.get(position));
+                removed.put(instructions.get(position), null);
+            }
+
+            var inLoop = loop.instructions(method);
+
+            // The header can be hoisted itself, and its labels then go to the next instruction that stays
+            int first = loop.getHeader();
+            while (removed.containsKey(instructions.get(first))) {
+                first++;
+            }
+            var start = instructions.get(first);
+
+            ControlFlow.replaceInstructions(method, removed);
+            Loop.insertBefore(method, inLoop, start, moved);
+        }
+    }
+}
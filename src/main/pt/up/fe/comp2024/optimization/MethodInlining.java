@@ -0,0 +1,432 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces calls to small methods of the same class by the instructions of the called method.
+ * <p>
+ * Only calls that always run the method of this class are inlined: calls to its static methods, and calls on 'this'
+ * to its final or private methods, which no subclass can override. The variables and labels of the callee are
+ * renamed so they do not clash with those of the caller. Parameters the callee never assigns are replaced by the
+ * arguments, and the others are assigned from them. Each return assigns the result and jumps to the instruction after
+ * the call.
+ * <p>
+ * Methods that can call themselves, directly or through other methods, are never inlined, so inlining the calls that
+ * inlined code brings along always ends.
+ */
+public class MethodInlining {
+
+    private final int maxInstructions;
+
+    private ClassUnit classUnit;
+
+    private Map<String, Method> methods;
+
+    private Set<String> recursive;
+
+    /**
+     * @param maxInstructions how many instructions a method can have at most to be inlined, or 0 to inline nothing
+     */
+    public MethodInlining(int maxInstructions) {
+        this.maxInstructions = maxInstructions;
+    }
+
+    /**
+     * @param classUnit
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        this.classUnit = classUnit;
+        this.methods = new HashMap<>();
+
+        for (var method : classUnit.getMethods()) {
+            if (!method.isConstructMethod()) {
+                methods.put(method.getMethodName(), method);
+            }
+        }
+
+        recursive = recursiveMethods();
+
+        boolean changed = false;
+        for (var method : classUnit.getMethods()) {
+            changed |= optimize(method);
+        }
+
+        return changed;
+    }
+
+    private boolean optimize(Method method) {
+        var instructions = method.getInstructions();
+        boolean changed = false;
+
+        // The last instruction is never a call, there is always a return after it
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            var inst = instructions.get(i);
+
+            AssignInstruction assign = null;
+            if (inst instanceof AssignInstruction assignInst && assignInst.getRhs() instanceof CallInstruction) {
+                assign = assignInst;
+            }
+
+            var call = assign != null ? (CallInstruction) assign.getRhs() : inst instanceof CallInstruction callInst
+                    ? callInst : null;
+            var callee = call != null ? callee(call) : null;
+            if (callee == null) {
+                continue;
+            }
+
+            var inlined = new Inlining(method, callee, call, assign, instructions.get(i + 1)).instructions();
+
+            // Labels of the call now label what replaced it
+            var target = inlined.isEmpty() ? instructions.get(i + 1) : inlined.get(0);
+            for (var label : method.getLabels().entrySet()) {
+                if (label.getValue() == inst) {
+                    label.setValue(target);
+                }
+            }
+
+            instructions.remove(i);
+            instructions.addAll(i, inlined);
+            changed = true;
+
+            // Calls in the inlined instructions are looked at next, so they are inlined too
+            i--;
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the method of this class the call always runs, if it can be inlined, or null otherwise
+     */
+    private Method callee(CallInstruction call) {
+        if (!(call.getMethodNameTry().orElse(null) instanceof LiteralElement methodName)
+                || !(call.getCaller() instanceof Operand caller)) {
+            return null;
+        }
+
+        var name = methodName.getLiteral().replace("\"", "");
+        var callee = methods.get(name);
+        if (callee == null || recursive.contains(name) || callee.getInstructions().isEmpty()
+                || callee.getInstructions().size() > maxInstructions
+                || callee.getParams().size() != call.getArguments().size()) {
+            return null;
+        }
+
+        return switch (call.getInvocationType()) {
+            case invokestatic -> callee.isStaticMethod() && caller.getName().equals(classUnit.getClassName())
+                    ? callee : null;
+            case invokevirtual -> !callee.isStaticMethod() && caller.getName().equals("this")
+                    && (callee.isFinalMethod() || callee.getMethodAccessModifier() == AccessModifier.PRIVATE)
+                    ? callee : null;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the names of the methods that can call themselves
+     */
+    private Set<String> recursiveMethods() {
+        var calls = new HashMap<String, Set<String>>();
+        for (var method : methods.values()) {
+            var callees = new HashSet<String>();
+            for (var inst : method.getInstructions()) {
+                var call = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+                if (call instanceof CallInstruction callInst
+                        && callInst.getMethodNameTry().orElse(null) instanceof LiteralElement methodName) {
+                    callees.add(methodName.getLiteral().replace("\"", ""));
+                }
+            }
+
+            calls.put(method.getMethodName(), callees);
+        }
+
+        var recursive = new HashSet<String>();
+        for (var method : calls.keySet()) {
+            var reached = new HashSet<String>();
+            var toVisit = new ArrayList<>(calls.get(method));
+
+            while (!toVisit.isEmpty()) {
+                var callee = toVisit.remove(toVisit.size() - 1);
+                if (reached.add(callee) && calls.containsKey(callee)) {
+                    toVisit.addAll(calls.get(callee));
+                }
+            }
+
+            if (reached.contains(method)) {
+                recursive.add(method);
+            }
+        }
+
+        return recursive;
+    }
+
+    /**
+     * The instructions that replace one call.
+     */
+    private static class Inlining {
+
+        private final Method caller;
+
+        private final Method callee;
+
+        private final AssignInstruction assign;
+
+        private final Instruction next;
+
+        private final String prefix;
+
+        // New names of the variables of the callee
+        private final Map<String, String> names;
+
+        // Parameters of the callee that are replaced by the arguments of the call
+        private final Map<String, Element> arguments;
+
+        private final List<Instruction> copies;
+
+        private String endLabel;
+
+        /**
+         * @param assign the assignment of the result of the call, or null if it is not assigned
+         * @param next   the instruction of the caller right after the call
+         */
+        private Inlining(Method caller, Method callee, CallInstruction call, AssignInstruction assign,
+                         Instruction next) {
+            this.caller = caller;
+            this.callee = callee;
+            this.assign = assign;
+            this.next = next;
+            this.prefix = freePrefix();
+            this.names = new HashMap<>();
+            this.arguments = new HashMap<>();
+            this.copies = new ArrayList<>();
+
+            var assigned = assignedVariables();
+            int nextRegister = caller.getVarTable().values().stream()
+                    .mapToInt(Descriptor::getVirtualReg)
+                    .max().orElse(0) + 1;
+
+            for (int i = 0; i < callee.getParams().size(); i++) {
+                var param = (Operand) callee.getParams().get(i);
+                var argument = call.getArguments().get(i);
+
+                boolean simple = argument.isLiteral()
+                        || (argument instanceof Operand && !(argument instanceof ArrayOperand));
+                if (simple && !assigned.contains(param.getName())) {
+                    arguments.put(param.getName(), argument);
+                }
+            }
+
+            for (var variable : callee.getVarTable().entrySet()) {
+                var name = variable.getKey();
+                var descriptor = variable.getValue();
+
+                if (isRenamed(name, descriptor) && !arguments.containsKey(name)) {
+                    names.put(name, prefix + name);
+                    caller.getVarTable().put(prefix + name,
+                            new Descriptor(VarScope.LOCAL, nextRegister++, descriptor.getVarType()));
+                } else if (!isRenamed(name, descriptor)) {
+                    // Names of classes and fields, and 'this', which is the same object in both
+                    caller.getVarTable().putIfAbsent(name, new Descriptor(descriptor.getScope(),
+                            descriptor.getVirtualReg(), descriptor.getVarType()));
+                }
+            }
+
+            // Parameters the callee assigns start with the value of their argument
+            for (int i = 0; i < callee.getParams().size(); i++) {
+                var param = (Operand) callee.getParams().get(i);
+                if (!arguments.containsKey(param.getName())) {
+                    var copy = new Operand(prefix + param.getName(), param.getType());
+                    copies.add(new AssignInstruction(copy, param.getType(),
+                            new SingleOpInstruction(call.getArguments().get(i))));
+                }
+            }
+        }
+
+        private static boolean isRenamed(String name, Descriptor descriptor) {
+            if (name.equals("this")) {
+                return false;
+            }
+
+            if (descriptor.getScope() != VarScope.LOCAL && descriptor.getScope() != VarScope.PARAMETER) {
+                return false;
+            }
+
+            var type = descriptor.getVarType();
+            return type == null || type.getTypeOfElement() != ElementType.CLASS;
+        }
+
+        /**
+         * @return a prefix no variable or label of the caller starts with
+         */
+        private String freePrefix() {
+            for (int number = 0; ; number++) {
+                var prefix = "inline" + number + "_";
+                boolean free = caller.getVarTable().keySet().stream().noneMatch(name -> name.startsWith(prefix))
+                        && caller.getLabels().keySet().stream().noneMatch(label -> label.startsWith(prefix));
+
+                if (free) {
+                    return prefix;
+                }
+            }
+        }
+
+        private Set<String> assignedVariables() {
+            var assigned = new HashSet<String>();
+
+            for (var inst : callee.getInstructions()) {
+                if (inst instanceof AssignInstruction assignInst && !(assignInst.getDest() instanceof ArrayOperand)
+                        && assignInst.getDest() instanceof Operand dest) {
+                    assigned.add(dest.getName());
+                }
+            }
+
+            return assigned;
+        }
+
+        private List<Instruction> instructions() {
+            var calleeInstructions = callee.getInstructions();
+            var replacements = new ArrayList<List<Instruction>>(calleeInstructions.size());
+
+            for (int i = 0; i < calleeInstructions.size(); i++) {
+                var inst = calleeInstructions.get(i);
+                boolean last = i == calleeInstructions.size() - 1;
+
+                replacements.add(inst instanceof ReturnInstruction ret ? copyReturn(ret, last) : List.of(copy(inst)));
+            }
+
+            // A label of a callee instruction that became nothing labels what runs in its place
+            for (var label : callee.getLabels().entrySet()) {
+                int index = calleeInstructions.indexOf(label.getValue());
+                while (index < replacements.size() && replacements.get(index).isEmpty()) {
+                    index++;
+                }
+
+                var target = index < replacements.size() ? replacements.get(index).get(0) : next;
+                caller.getLabels().put(prefix + label.getKey(), target);
+            }
+
+            if (endLabel != null) {
+                caller.getLabels().put(endLabel, next);
+            }
+
+            var instructions = new ArrayList<>(copies);
+            replacements.forEach(instructions::addAll);
+
+            return instructions;
+        }
+
+        private List<Instruction> copyReturn(ReturnInstruction ret, boolean last) {
+            var instructions = new ArrayList<Instruction>(2);
+
+            if (assign != null && ret.hasReturnValue()) {
+                instructions.add(new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                        new SingleOpInstruction(rename(ret.getOperand()))));
+            }
+
+            // The last instruction already continues with the one after the call
+            if (!last) {
+                instructions.add(new GotoInstruction(endLabel()));
+            }
+
+            return instructions;
+        }
+
+        private String endLabel() {
+            if (endLabel == null) {
+                // Method#getLabels(Instruction) is cached, and the labels of the caller are changing
+                endLabel = caller.getLabels().entrySet().stream()
+                        .filter(label -> label.getValue() == next)
+                        .map(Map.Entry::getKey)
+                        .findFirst()
+                        .orElse(prefix + "end");
+            }
+
+            return endLabel;
+        }
+
+        private Instruction copy(Instruction inst) {
+            if (inst instanceof AssignInstruction assignInst) {
+                return new AssignInstruction(rename(assignInst.getDest()), assignInst.getTypeOfAssign(),
+                        copy(assignInst.getRhs()));
+            }
+
+            if (inst instanceof CallInstruction call) {
+                var arguments = call.getArguments().stream().map(this::rename).toList();
+                return new CallInstruction(call.getInvocationType(), rename(call.getCaller()),
+                        call.getMethodNameTry().orElse(null), new ArrayList<>(arguments), call.getReturnType(),
+                        call.isIsolated());
+            }
+
+            if (inst instanceof SingleOpCondInstruction singleOpCond) {
+                var copy = new SingleOpCondInstruction((SingleOpInstruction) copy(singleOpCond.getCondition()));
+                copy.setLabel(prefix + singleOpCond.getLabel());
+                return copy;
+            }
+
+            if (inst instanceof OpCondInstruction opCond) {
+                var copy = new OpCondInstruction((OpInstruction) copy(opCond.getCondition()));
+                copy.setLabel(prefix + opCond.getLabel());
+                return copy;
+            }
+
+            if (inst instanceof GotoInstruction gotoInst) {
+                return new GotoInstruction(prefix + gotoInst.getLabel());
+            }
+
+            if (inst instanceof PutFieldInstruction putField) {
+                return new PutFieldInstruction((Operand) rename(putField.getObject()), putField.getField(),
+                        rename(putField.getValue()), putField.getFieldType());
+            }
+
+            if (inst instanceof GetFieldInstruction getField) {
+                return new GetFieldInstruction((Operand) rename(getField.getObject()), getField.getField(),
+                        getField.getFieldType());
+            }
+
+            if (inst instanceof UnaryOpInstruction unaryOp) {
+                return new UnaryOpInstruction(unaryOp.getOperation(), rename(unaryOp.getOperand()));
+            }
+
+            if (inst instanceof BinaryOpInstruction binaryOp) {
+                return new BinaryOpInstruction(rename(binaryOp.getLeftOperand()), binaryOp.getOperation(),
+                        rename(binaryOp.getRightOperand()));
+            }
+
+            if (inst instanceof SingleOpInstruction singleOp) {
+                return new SingleOpInstruction(rename(singleOp.getSingleOperand()));
+            }
+
+            throw new RuntimeException("Cannot inline instruction of type " + inst.getInstType());
+        }
+
+        private Element rename(Element element) {
+            if (element instanceof ArrayOperand arrayOperand) {
+                var indexes = arrayOperand.getIndexOperands().stream().map(this::rename).toList();
+                var array = (Operand) rename(new Operand(arrayOperand.getName(), arrayOperand.getType()));
+                return new ArrayOperand(array.getName(), arrayOperand.getType(), new ArrayList<>(indexes));
+            }
+
+            if (!(element instanceof Operand operand)) {
+                return element;
+            }
+
+            if (arguments.containsKey(operand.getName())) {
+                return arguments.get(operand.getName());
+            }
+
+            if (names.containsKey(operand.getName())) {
+                return new Operand(names.get(operand.getName()), operand.getType());
+            }
+
+            return element;
+        }
+    }
+}
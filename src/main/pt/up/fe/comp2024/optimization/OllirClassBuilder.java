@@ -0,0 +1,498 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.AccessModifier;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Builds the OLLIR class of a program straight from the AST, without generating OLLIR code and parsing it.
+ * <p>
+ * The class is the same one {@link OllirGeneratorVisitor} code parses to. Programs whose OLLIR code would not parse,
+ * or that use something the builder does not know how to build, throw an {@link UnsupportedOperationException}, and
+ * should go through the generated code instead. Use one instance per program.
+ * <p>
+ * Given a pool, each method is built by its own builder on the pool, and added to the class in declaration order, as
+ * {@link OllirGeneratorVisitor} does with the code of each method.
+ */
+public class OllirClassBuilder extends AJmmVisitor<Void, Void> {
+
+    private final SymbolTable table;
+
+    private final OllirNames names;
+
+    private final OllirExprBuilder exprBuilder;
+
+    private final ClassUnit classUnit;
+
+    // Instructions of the method being built
+    private OllirInstructions instructions;
+
+    private final ForkJoinPool methodPool;
+
+    private boolean hasMethods;
+
+    public OllirClassBuilder(SymbolTable table) {
+        this(table, null);
+    }
+
+    /**
+     * @param table
+     * @param methodPool where to build each method, or null to build them sequentially
+     */
+    public OllirClassBuilder(SymbolTable table, ForkJoinPool methodPool) {
+        this(table, new OllirNames(), new ClassUnit(), methodPool);
+    }
+
+    private OllirClassBuilder(SymbolTable table, OllirNames names, ClassUnit classUnit, ForkJoinPool methodPool) {
+        this.table = table;
+        this.names = names;
+        this.methodPool = methodPool;
+        this.exprBuilder = new OllirExprBuilder(table, names);
+        this.classUnit = classUnit;
+        this.instructions = OllirInstructions.dropped();
+        this.hasMethods = false;
+        this.buildVisitor();
+    }
+
+    /**
+     * Builds the class of a program, with the variable tables of its methods already built.
+     *
+     * @param root
+     * @return
+     */
+    public ClassUnit build(JmmNode root) {
+        visit(root);
+        classUnit.buildVarTables();
+
+        return classUnit;
+    }
+
+    @Override
+    protected void buildVisitor() {
+
+        addVisit(PROGRAM, this::visitProgram);
+        addVisit(CLASS_DECL, this::visitClass);
+        addVisit(METHOD_DECL, this::visitMethodDecl);
+        addVisit(PARAM, this::visitUnsupported);
+        addVisit(RETURN_STMT, this::visitReturn);
+        addVisit(ASSIGN_STMT, this::visitAssignStmt);
+        addVisit(VAR_DECL, this::visitVar);
+        addVisit(INTEGER, this::visitUnsupported);
+        addVisit(BOOLEAN, this::visitUnsupported);
+        addVisit("String", this::visitUnsupported);
+        addVisit("ImportDecl", this::visitImport);
+        addVisit("Void", this::visitUnsupported);
+        addVisit("Id", this::visitUnsupported);
+        addVisit("ArrayAssign", this::visitArrayAssign);
+        addVisit("Array", this::visitUnsupported);
+        addVisit("IfElseStmt", this::visitIfElse);
+        addVisit("WhileStmt", this::visitWhile);
+        addVisit("StmtScope", this::visitStmt);
+
+        setDefaultVisit(this::defaultVisit);
+    }
+
+
+    private Void visitAssignStmt(JmmNode node, Void unused) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        var rhs = exprBuilder.visit(node.getJmmChild(0));
+
+        // Variables with the name, only the first kind found is assigned
+        List<Symbol> variables = matching(table.getLocalVariables(methodName), node.get("var"));
+        boolean isField = false;
+        if (variables.isEmpty()) {
+            variables = matching(table.getParameters(methodName), node.get("var"));
+        }
+        if (variables.isEmpty()) {
+            variables = matching(table.getFields(), node.get("var"));
+            isField = true;
+        }
+
+        if (variables.size() != 1) {
+            throw new UnsupportedOperationException("Expected one variable named '" + node.get("var") + "', found "
+                    + variables.size());
+        }
+
+        var variable = variables.get(0);
+        String assignType;
+        if (node.getChild(0).getKind().equals("NewClass")) {
+            assignType = OptUtils.toOllirType(new Type(node.getChild(0).get("name"), false));
+        } else {
+            assignType = OptUtils.toOllirType(variable.getType());
+        }
+
+        if (isField) {
+            instructions.add(() -> new PutFieldInstruction(OllirObjects.thisOperand(table.getClassName()),
+                    OllirObjects.operand(variable.getName(), assignType), rhs.toElement(),
+                    OllirObjects.type(".V")));
+        } else {
+            instructions.add(() -> OllirExprBuilder.assign(variable.getName(), assignType, rhs));
+        }
+
+        return null;
+    }
+
+
+    private Void visitReturn(JmmNode node, Void unused) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        Type retType = table.getReturnType(methodName);
+        var expr = OllirExprValue.EMPTY;
+
+        if (node.getNumChildren() > 0) {
+            expr = exprBuilder.visit(node.getJmmChild(0));
+        }
+
+        var value = expr;
+        instructions.add(() -> {
+            var ret = value.isEmpty() ? new ReturnInstruction() : new ReturnInstruction(value.toElement());
+            ret.setReturnType(OllirObjects.type(OptUtils.toOllirType(retType)));
+            return ret;
+        });
+
+        return null;
+    }
+
+
+    private Void visitMethodDecl(JmmNode node, Void unused) {
+        classUnit.addMethod(buildMethod(node));
+        hasMethods = true;
+
+        return null;
+    }
+
+    /**
+     * Builds a method of the class, without adding it to the class.
+     *
+     * @param node
+     * @return
+     */
+    private Method buildMethod(JmmNode node) {
+        boolean retExists = false;
+        names.startMethod();
+        var method = new Method(classUnit);
+        boolean hasEllipsis = NodeUtils.getBooleanAttribute(node, "hasEllipsis", "false");
+
+        boolean isPublic = NodeUtils.getBooleanAttribute(node, "isPublic", "false");
+        if (isPublic) {
+            method.setMethodAccessModifier(AccessModifier.PUBLIC);
+        }
+
+        boolean isStatic = NodeUtils.getBooleanAttribute(node, "isStatic", "false");
+        if (isStatic) {
+            method.setStaticMethod();
+        }
+
+        var name = node.get("name");
+
+        if (PARAM.check(node.getChild(1)) || hasEllipsis) {
+            var params = table.getParameters(name);
+            int paramId = isStatic ? 0 : 1;
+            for (int i = 0; i < params.size(); i++) {
+                var param = params.get(i);
+                if (params.indexOf(param) != i) {
+                    throw new UnsupportedOperationException("Method '" + name + "' repeats parameter " + param);
+                }
+
+                var operand = OllirObjects.operand(param.getName(), OptUtils.toOllirType(param.getType()));
+                operand.setParamId(paramId++);
+                method.addParam(operand);
+            }
+        }
+
+        var returnType = OllirObjects.type(typeOf(node.getJmmChild(0)));
+
+        instructions = new OllirInstructions(method);
+        exprBuilder.setInstructions(instructions);
+
+        boolean skipParams = PARAM.check(node.getChild(1));
+        for (int i = 1; i < node.getNumChildren(); i++) {
+            var child = node.getJmmChild(i);
+            var funcCall = child.getChild(0);
+
+            if (!VAR_DECL.check(child) && !(skipParams && PARAM.check(child))) {
+                visit(child);
+            }
+            if (FUNCTION_CALL.check(funcCall) && child.getKind().equals("ExprStmt")) {
+                exprBuilder.visit(funcCall);
+            }
+            if (RETURN_STMT.check(child)) {
+                retExists = true;
+            }
+        }
+
+        if (!retExists) {
+            instructions.add(() -> {
+                var ret = new ReturnInstruction();
+                ret.setReturnType(OllirObjects.type(".V"));
+                return ret;
+            });
+        }
+
+        if (instructions.hasPendingLabels()) {
+            throw new UnsupportedOperationException("Method '" + name + "' ends with a label");
+        }
+
+        instructions = OllirInstructions.dropped();
+        exprBuilder.setInstructions(instructions);
+
+        method.setReturnType(returnType);
+        method.setMethodName(OllirObjects.checkName(name));
+
+        return method;
+    }
+
+
+    private Void visitClass(JmmNode node, Void unused) {
+        classUnit.setClassName(OllirObjects.checkName(table.getClassName()));
+
+        if (node.hasAttribute("extendClassName")) {
+            classUnit.setSuperClass(OllirObjects.checkName(table.getSuper()));
+        }
+
+        var methods = methodPool != null ? buildMethods(node) : null;
+        int methodIndex = 0;
+
+        for (var child : node.getChildren()) {
+            if (METHOD_DECL.check(child) && methods != null) {
+                classUnit.addMethod(methods.get(methodIndex++).join());
+                hasMethods = true;
+                continue;
+            }
+
+            visit(child);
+        }
+
+        classUnit.addMethod(buildConstructor());
+
+        return null;
+    }
+
+    /**
+     * Starts building each method of the class on the method pool, each with its own builder.
+     *
+     * @param classDecl
+     * @return the methods, in declaration order
+     */
+    private List<ForkJoinTask<Method>> buildMethods(JmmNode classDecl) {
+        var methods = new ArrayList<ForkJoinTask<Method>>();
+
+        for (var method : classDecl.getChildren()) {
+            if (!METHOD_DECL.check(method)) {
+                continue;
+            }
+
+            methods.add(methodPool.submit(
+                    () -> new OllirClassBuilder(table, new OllirNames(), classUnit, null).buildMethod(method)));
+        }
+
+        return methods;
+    }
+
+    private Method buildConstructor() {
+        var constructor = new Method(classUnit);
+        constructor.setConstructMethod();
+
+        var thisOperand = new Operand("this", new ClassType(ElementType.THIS, table.getClassName()));
+        constructor.addInstr(new CallInstruction(CallType.invokespecial, thisOperand,
+                OllirObjects.methodName("<init>"), new ArrayList<>(), OllirObjects.type(".V"), true));
+
+        constructor.setReturnType(OllirObjects.type(".V"));
+        constructor.setMethodName(table.getClassName());
+
+        return constructor;
+    }
+
+
+    private Void visitProgram(JmmNode node, Void unused) {
+
+        node.getChildren().forEach(this::visit);
+
+        return null;
+    }
+
+    private Void visitVar(JmmNode node, Void unused) {
+        if (!CLASS_DECL.check(node.getParent()) || hasMethods) {
+            throw new UnsupportedOperationException("Variable '" + node.get("name") + "' is not a field");
+        }
+
+        boolean isPublic = NodeUtils.getBooleanAttribute(node, "isPublic", "false");
+
+        var field = new Field();
+        field.setFieldAccessModifier(isPublic ? AccessModifier.PUBLIC : AccessModifier.PRIVATE);
+
+        String fieldType;
+        if (node.getChild(0).getKind().equals("[]")) {
+            fieldType = ".array" + typeOf(node.getChild(0));
+        } else {
+            fieldType = typeOf(node.getChild(0));
+        }
+
+        field.setFieldName(OllirObjects.checkName(node.get("name")));
+        field.setFieldType(OllirObjects.type(fieldType));
+        classUnit.addField(field);
+
+        return null;
+    }
+
+    private Void visitImport(JmmNode node, Void unused) {
+        var value = node.get("value").replace("[", "").replace("]", "");
+        classUnit.addImport(OllirObjects.checkName(value));
+
+        return null;
+    }
+
+    private Void visitArrayAssign(JmmNode node, Void unused) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+
+        var position = exprBuilder.visit(node.getJmmChild(0));
+        var value = exprBuilder.visit(node.getJmmChild(1));
+
+        Type thisType = TypeUtils.getExprType(node.getJmmChild(1), table);
+        String typeString = OptUtils.toOllirType(thisType);
+
+        int variables = matching(table.getLocalVariables(methodName), node.get("var")).size()
+                + matching(table.getParameters(methodName), node.get("var")).size();
+        if (variables != 1 || node.getChild(0).getKind().equals("NewClass")) {
+            throw new UnsupportedOperationException("Cannot assign to an element of '" + node.get("var") + "'");
+        }
+
+        instructions.add(() -> new AssignInstruction(
+                OllirExprBuilder.arrayElement(node.get("var"), typeString, position), OllirObjects.type(typeString),
+                value.toInstruction()));
+
+        return null;
+    }
+
+    private Void visitIfElse(JmmNode node, Void unused) {
+        String ifbody = "ifbody_";
+        String end = "endif_";
+        int ifNum = names.getNextIfNum();
+
+        var condition = exprBuilder.visit(node.getChild(0));
+
+        instructions.add(() -> OllirExprBuilder.condition(condition.toInstruction(), ifbody + ifNum));
+
+        visit(node.getChild(2));
+        instructions.add(() -> new GotoInstruction(end + ifNum));
+        instructions.addLabel(ifbody + ifNum);
+        visit(node.getChild(1));
+        instructions.addLabel(end + ifNum);
+
+        return null;
+    }
+
+    private Void visitWhile(JmmNode node, Void unused) {
+        String whilecond = "whilecond_";
+        String whilebody = "whilebody_";
+        String end = "endwhile_";
+        int ifNum = names.getNextWhileNum();
+
+        instructions.addLabel(whilecond + ifNum);
+
+        var condition = exprBuilder.visit(node.getChild(0));
+
+        instructions.add(() -> OllirExprBuilder.condition(condition.toInstruction(), whilebody + ifNum));
+
+        instructions.add(() -> new GotoInstruction(end + ifNum));
+        instructions.addLabel(whilebody + ifNum);
+        visit(node.getChild(1));
+        instructions.add(() -> new GotoInstruction(whilecond + ifNum));
+        instructions.addLabel(end + ifNum);
+
+        return null;
+    }
+
+    private Void visitStmt(JmmNode node, Void unused) {
+        if (node.getChild(0).getKind().equals("ifElseStmt") || node.getChild(0).getKind().equals("WhileStmt")) {
+            visit(node.getChild(0));
+        } else {
+            exprBuilder.visit(node.getChild(0));
+            visit(node.getChild(0));
+        }
+
+        return null;
+    }
+
+    /**
+     * The OLLIR type of a type node, as {@link OllirGeneratorVisitor} writes it.
+     *
+     * @param node
+     * @return
+     */
+    private String typeOf(JmmNode node) {
+        return switch (node.getKind()) {
+            case "Integer" -> OptUtils.toOllirType(new Type("int", false));
+            case "Boolean" -> OptUtils.toOllirType(new Type("boolean", false));
+            case "String" -> OptUtils.toOllirType(new Type("String", true));
+            case "Void" -> OptUtils.toOllirType(new Type("void", false));
+            case "Id" -> OptUtils.toOllirType(new Type(node.get("name"), false));
+            case "Array" -> {
+                var elementKind = node.getChild(0).getKind();
+                if (elementKind.equals("Integer")) {
+                    yield OptUtils.toOllirType(new Type("int", true));
+                } else if (elementKind.equals("Boolean")) {
+                    yield OptUtils.toOllirType(new Type("boolean", true));
+                }
+                yield OptUtils.toOllirType(new Type(node.getKind(), true));
+            }
+            default -> throw new UnsupportedOperationException("'" + node.getKind() + "' is not a type");
+        };
+    }
+
+    private static List<Symbol> matching(List<Symbol> symbols, String name) {
+        var matching = new ArrayList<Symbol>();
+        for (var symbol : symbols) {
+            if (symbol.getName().equals(name)) {
+                matching.add(symbol);
+            }
+        }
+
+        return matching;
+    }
+
+    /**
+     * Nodes the generator writes code for that does not parse, when they are visited on their own.
+     */
+    private Void visitUnsupported(JmmNode node, Void unused) {
+        throw new UnsupportedOperationException("Cannot build '" + node.getKind() + "' on its own");
+    }
+
+    /**
+     * Default visitor. Visits every child node and builds nothing.
+     *
+     * @param node
+     * @param unused
+     * @return
+     */
+    private Void defaultVisit(JmmNode node, Void unused) {
+        for (var child : node.getChildren()) {
+            visit(child);
+        }
+
+        return null;
+    }
+}
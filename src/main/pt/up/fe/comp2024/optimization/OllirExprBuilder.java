@@ -0,0 +1,427 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.OpCondInstruction;
+import org.specs.comp.ollir.OpInstruction;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpCondInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Builds the OLLIR instructions of JmmNodes that are expressions, the same ones {@link OllirExprGeneratorVisitor}
+ * generates code for.
+ * <p>
+ * Each visit follows the generator step by step, including the temporaries and labels it uses, so that both produce
+ * the same class.
+ */
+public class OllirExprBuilder extends AJmmVisitor<Void, OllirExprValue> {
+
+    private static final String VARARGS_ARRAY = "__varargs_array_0";
+
+    private final SymbolTable table;
+
+    private final OllirNames names;
+
+    // Where the instructions that compute the expressions are added
+    private OllirInstructions instructions;
+
+    public OllirExprBuilder(SymbolTable table, OllirNames names) {
+        this.table = table;
+        this.names = names;
+        this.instructions = OllirInstructions.dropped();
+    }
+
+    /**
+     * @param instructions where the instructions of the next visits are added
+     */
+    public void setInstructions(OllirInstructions instructions) {
+        this.instructions = instructions;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(VAR_REF_EXPR, this::visitVarRef);
+        addVisit(BINARY_OP, this::visitBinExpr);
+        addVisit(INTEGER_LITERAL, this::visitInteger);
+        addVisit(BOOLEAN_LITERAL, this::visitBoolean);
+        addVisit(FUNCTION_CALL, this::visitFunctionCall);
+        addVisit(NEW_CLASS, this::visitNewClass);
+        addVisit(NEGATION, this::visitNegation);
+        addVisit(NEW_ARRAY, this::visitNewArray);
+        addVisit(ARRAY_ACCESS, this::visitArrayAccess);
+        addVisit(ARRAY_INIT, this::visitArrayInit);
+        addVisit(LENGTH, this::visitLength);
+        addVisit("ExprStmt", this::visitExprStmt);
+
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    private OllirExprValue visitInteger(JmmNode node, Void unused) {
+        var intType = new Type(TypeUtils.getIntTypeName(), false);
+        return OllirExprValue.literal(node.get("value"), OptUtils.toOllirType(intType));
+    }
+
+    private OllirExprValue visitBoolean(JmmNode node, Void unused) {
+        var boolType = new Type("boolean", false);
+        String ollirBoolType = OptUtils.toOllirType(boolType);
+
+        return switch (node.get("value")) {
+            case "true" -> OllirExprValue.literal("1", ollirBoolType);
+            case "false" -> OllirExprValue.literal("0", ollirBoolType);
+            default -> throw new UnsupportedOperationException("Unknown boolean '" + node.get("value") + "'");
+        };
+    }
+
+    private OllirExprValue visitBinExpr(JmmNode node, Void unused) {
+        var lhs = visit(node.getJmmChild(0));
+        var rhs = visit(node.getJmmChild(1));
+
+        Type resType = TypeUtils.getExprType(node, table);
+        String resOllirType = OptUtils.toOllirType(resType);
+        String temp = names.getTemp();
+        String op = node.get("op");
+
+        if (op.equals("<") || op.equals(">") || op.equals("&&") || op.equals("||")) {
+            int ifNum = names.getNextCondNumber();
+
+            instructions.add(() -> condition(
+                    new BinaryOpInstruction(lhs.toElement(), operation(op, resOllirType), rhs.toElement()),
+                    "true_" + ifNum));
+            instructions.add(() -> assign(temp, resOllirType, OllirExprValue.literal("0", resOllirType)));
+            instructions.add(() -> new GotoInstruction("end_" + ifNum));
+            instructions.addLabel("true_" + ifNum);
+            instructions.add(() -> assign(temp, resOllirType, OllirExprValue.literal("1", resOllirType)));
+            instructions.addLabel("end_" + ifNum);
+        } else {
+            instructions.add(() -> assign(temp, resOllirType,
+                    new BinaryOpInstruction(lhs.toElement(), operation(op, resOllirType), rhs.toElement())));
+        }
+
+        return OllirExprValue.operand(temp, resOllirType);
+    }
+
+    private OllirExprValue visitVarRef(JmmNode node, Void unused) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        String name = null;
+        var id = node.get("name");
+
+        Type type = TypeUtils.getExprType(node, table);
+        String ollirType = OptUtils.toOllirType(type);
+
+        boolean Local = false;
+        for (var local : table.getLocalVariables(methodName)) {
+            if (local.getName().equals(id)) {
+                name = id;
+                Local = true;
+            }
+        }
+
+        boolean Param = false;
+        if (!Local) {
+            for (var param : table.getParameters(methodName)) {
+                if (param.getName().equals(id)) {
+                    name = id;
+                    Param = true;
+                }
+            }
+        }
+
+        boolean Field = false;
+        if (!Local && !Param) {
+            for (var field : table.getFields()) {
+                if (field.getName().equals(id)) {
+                    name = names.getTemp();
+                    Field = true;
+                }
+            }
+        }
+
+        if (Field) {
+            var temp = name;
+            instructions.add(() -> new AssignInstruction(OllirObjects.operand(temp, ollirType),
+                    OllirObjects.type(ollirType), new GetFieldInstruction(OllirObjects.thisOperand(table.getClassName()),
+                    OllirObjects.operand(id, ollirType), OllirObjects.type(ollirType))));
+        }
+
+        return name == null ? OllirExprValue.EMPTY : OllirExprValue.operand(name, ollirType);
+    }
+
+    private OllirExprValue visitFunctionCall(JmmNode node, Void unused) {
+        Type retType;
+
+        if (table.getReturnType(node.get("name")) != null) {
+            retType = table.getReturnType(node.get("name"));
+        } else {
+            retType = new Type("void", false);
+        }
+
+        // The arguments are computed before the call
+        List<OllirExprValue> arguments = new ArrayList<>();
+        for (int i = 1; i < node.getChildren().size(); i++) {
+            arguments.add(visit(node.getChild(i)));
+        }
+
+        String temp = null;
+        var parentKind = node.getParent().getKind();
+        if (parentKind.equals("BinaryOp") || parentKind.equals("AssignStmt") || parentKind.equals("FunctionCall")
+                || parentKind.equals("ArrayAccess")) {
+            temp = names.getTemp();
+        }
+
+        boolean isVirtual = table.getMethods().contains(node.get("name"));
+
+        List<String> modifiedImports = new ArrayList<>();
+        for (String importString : table.getImports()) {
+            String[] elements = importString.substring(1, importString.length() - 1).split(",");
+            for (String element : elements) {
+                modifiedImports.add(element.trim());
+            }
+        }
+
+        // Name of the caller, null if 'this'
+        String callerName = node.getChild(0).hasAttribute("name") ? node.getChild(0).get("name") : null;
+        boolean isImported = callerName != null && modifiedImports.contains(callerName);
+
+        String className = table.getClassName();
+        String methodName = node.get("name");
+        String callOllirType = isVirtual ? OptUtils.toOllirType(retType) : ".V";
+
+        var resultTemp = temp;
+        instructions.add(() -> {
+            Operand caller;
+            if (isVirtual) {
+                if (callerName == null) {
+                    caller = OllirObjects.thisOperand(className);
+                } else if (!isImported) {
+                    caller = OllirObjects.operand(callerName, "." + className);
+                } else {
+                    throw new UnsupportedOperationException("invokevirtual needs the type of '" + callerName + "'");
+                }
+            } else {
+                if (isImported) {
+                    caller = new Operand(OllirObjects.checkName(callerName),
+                            new ClassType(ElementType.CLASS, className));
+                } else {
+                    throw new UnsupportedOperationException("invokestatic needs a class name as caller");
+                }
+            }
+
+            List<Element> elements = new ArrayList<>();
+            for (var argument : arguments) {
+                elements.add(argument.toElement());
+            }
+
+            var callType = isVirtual ? CallType.invokevirtual : CallType.invokestatic;
+            if (resultTemp == null) {
+                return new CallInstruction(callType, caller, OllirObjects.methodName(methodName), elements,
+                        OllirObjects.type(callOllirType), true);
+            }
+
+            String tempOllirType = OptUtils.toOllirType(retType);
+            return new AssignInstruction(OllirObjects.operand(resultTemp, tempOllirType),
+                    OllirObjects.type(tempOllirType), new CallInstruction(callType, caller,
+                    OllirObjects.methodName(methodName), elements, OllirObjects.type(callOllirType)));
+        });
+
+        return temp == null ? OllirExprValue.EMPTY : OllirExprValue.operand(temp, OptUtils.toOllirType(retType));
+    }
+
+    private OllirExprValue visitNewClass(JmmNode node, Void unused) {
+        String className = node.get("name");
+        String retType = "." + className;
+        String temp = names.getTemp();
+
+        instructions.add(() -> new AssignInstruction(OllirObjects.operand(temp, retType), OllirObjects.type(retType),
+                new CallInstruction(CallType.NEW, OllirObjects.newClass(className), new ArrayList<>(),
+                        OllirObjects.type(retType))));
+        instructions.add(() -> new CallInstruction(CallType.invokespecial, OllirObjects.operand(temp, retType),
+                OllirObjects.methodName("<init>"), new ArrayList<>(), OllirObjects.type(".V"), true));
+
+        return OllirExprValue.operand(temp, retType);
+    }
+
+    private OllirExprValue visitNegation(JmmNode node, Void unused) {
+        Type resType = TypeUtils.getExprType(node, table);
+        String resOllirType = OptUtils.toOllirType(resType);
+
+        if (!node.get("value").equals("!")) {
+            throw new UnsupportedOperationException("Unknown negation '" + node.get("value") + "'");
+        }
+
+        return OllirExprValue.not(resOllirType, visit(node.getChild(0)));
+    }
+
+    private OllirExprValue visitNewArray(JmmNode node, Void unused) {
+        Type resType = TypeUtils.getExprType(node, table);
+        String resOllirType = OptUtils.toOllirType(resType);
+
+        return OllirExprValue.newArray(visit(node.getChild(0)), resOllirType);
+    }
+
+    private OllirExprValue visitArrayAccess(JmmNode node, Void unused) {
+        TypeUtils.getExprType(node.getChild(0), table);
+        Type retArrayAcces = TypeUtils.getExprType(node, table);
+        String retArrayAccesOllirType = OptUtils.toOllirType(retArrayAcces);
+        String temp = names.getTemp();
+
+        var index = visit(node.getChild(1));
+
+        String arrayName = node.getChild(0).get("name");
+        instructions.add(() -> assign(temp, retArrayAccesOllirType, new SingleOpInstruction(
+                arrayElement(arrayName, retArrayAccesOllirType, index))));
+
+        return OllirExprValue.operand(temp, retArrayAccesOllirType);
+    }
+
+    private OllirExprValue visitArrayInit(JmmNode node, Void unused) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        Type retType = TypeUtils.getExprType(node.getChild(0), table);
+        String arrayType = OptUtils.toOllirType(retType);
+
+        if (!(node.getParent().getKind().equals("FunctionCall"))) {
+            for (var param : table.getParameters(methodName)) {
+                if (param.getName().equals(node.getParent().get("var"))) {
+                    retType = param.getType();
+                }
+            }
+
+            for (var local : table.getLocalVariables(methodName)) {
+                if (local.getName().equals(node.getParent().get("var"))) {
+                    retType = local.getType();
+                }
+            }
+        }
+
+        String resOllirType = OptUtils.toOllirType(retType);
+        String temp = names.getTemp();
+        String size = String.valueOf(node.getNumChildren());
+
+        instructions.add(() -> {
+            List<Element> arguments = new ArrayList<>();
+            arguments.add(OllirObjects.literal(size, arrayType));
+            return new AssignInstruction(OllirObjects.operand(temp, resOllirType), OllirObjects.type(resOllirType),
+                    new CallInstruction(CallType.NEW, OllirObjects.newArray(), arguments,
+                            OllirObjects.type(resOllirType)));
+        });
+        instructions.add(() -> assign(VARARGS_ARRAY, resOllirType, OllirExprValue.operand(temp, resOllirType)));
+
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            var element = visit(node.getChild(i));
+
+            instructions.add(() -> new AssignInstruction(arrayElement(VARARGS_ARRAY, arrayType, element),
+                    OllirObjects.type(arrayType), element.toInstruction()));
+        }
+
+        return OllirExprValue.operand(VARARGS_ARRAY, resOllirType);
+    }
+
+    private OllirExprValue visitLength(JmmNode node, Void unused) {
+        Type lengthType = TypeUtils.getExprType(node, table);
+        String resOllirType = OptUtils.toOllirType(lengthType);
+        TypeUtils.getExprType(node.getChild(0), table);
+        String temp = names.getTemp();
+
+        var array = visit(node.getChild(0));
+        instructions.add(() -> new AssignInstruction(OllirObjects.operand(temp, resOllirType),
+                OllirObjects.type(resOllirType), new CallInstruction(CallType.arraylength, array.toElement(),
+                OllirObjects.type(resOllirType))));
+
+        return OllirExprValue.operand(temp, resOllirType);
+    }
+
+    private OllirExprValue visitExprStmt(JmmNode node, Void unused) {
+        return visit(node.getChild(0));
+    }
+
+    /**
+     * Default visitor. Adds no instructions and returns an empty value, the expressions inside statements are visited
+     * when {@link OllirClassBuilder} builds each statement.
+     *
+     * @param node
+     * @param unused
+     * @return
+     */
+    private OllirExprValue defaultVisit(JmmNode node, Void unused) {
+        return OllirExprValue.EMPTY;
+    }
+
+    /**
+     * @return the assignment of a value to a variable, e.g. 'a.i32 :=.i32 b.i32'
+     */
+    static AssignInstruction assign(String name, String ollirType, OllirExprValue value) {
+        return new AssignInstruction(OllirObjects.operand(name, ollirType), OllirObjects.type(ollirType),
+                value.toInstruction());
+    }
+
+    static AssignInstruction assign(String name, String ollirType, Instruction value) {
+        return new AssignInstruction(OllirObjects.operand(name, ollirType), OllirObjects.type(ollirType), value);
+    }
+
+    /**
+     * @return an element of an array, e.g. 'a[i.i32].i32'
+     */
+    static ArrayOperand arrayElement(String arrayName, String ollirType, OllirExprValue index) {
+        List<Element> indexes = new ArrayList<>();
+        indexes.add(index.toElement());
+        return new ArrayOperand(OllirObjects.checkName(arrayName), OllirObjects.type(ollirType), indexes);
+    }
+
+    /**
+     * @return the condition of an 'if', which must be a boolean operand or operation
+     */
+    static Instruction condition(Instruction expression, String label) {
+        if (expression instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand().getType().getTypeOfElement() == ElementType.BOOLEAN) {
+            var condition = new SingleOpCondInstruction(singleOp);
+            condition.setLabel(label);
+            return condition;
+        }
+
+        if (expression instanceof OpInstruction opInstruction
+                && opInstruction.getOperation().getTypeInfo().getTypeOfElement() == ElementType.BOOLEAN) {
+            var condition = new OpCondInstruction(opInstruction);
+            condition.setLabel(label);
+            return condition;
+        }
+
+        throw new UnsupportedOperationException("Condition is not a boolean operand or operation: " + expression);
+    }
+
+    private static Operation operation(String op, String ollirType) {
+        var opType = switch (op) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "<" -> OperationType.LTH;
+            case ">" -> OperationType.GTH;
+            case "&&" -> OperationType.ANDB;
+            case "||" -> OperationType.ORB;
+            default -> throw new UnsupportedOperationException("Unknown operator '" + op + "'");
+        };
+
+        return new Operation(opType, OllirObjects.type(ollirType));
+    }
+}
@@ -15,6 +15,9 @@ import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
+ * <p>
+ * The code that computes an expression is written to a sink shared with {@link OllirGeneratorVisitor} as it is
+ * generated, and the result of each visit is only the operand that holds the value of the expression.
  */
 public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult> {
 
@@ -24,8 +27,18 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
     private final SymbolTable table;
 
-    public OllirExprGeneratorVisitor(SymbolTable table) {
+    private final OllirNames names;
+
+    // Where the computation of the expressions is written
+    private final StringBuilder computation;
+
+    /**
+     * @param computation sink where the code that computes each expression is written
+     */
+    public OllirExprGeneratorVisitor(SymbolTable table, OllirNames names, StringBuilder computation) {
         this.table = table;
+        this.names = names;
+        this.computation = computation;
     }
 
     @Override
@@ -72,37 +85,22 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
 
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
-        System.out.println(" node:"+node);
+        // code to compute the children
         var lhs = visit(node.getJmmChild(0));
         var rhs = visit(node.getJmmChild(1));
 
-        StringBuilder computation = new StringBuilder();
-        //System.out.println(" lhs:"+lhs);
-        //System.out.println(" rhs:"+rhs);
-
-//        if(lhs.getComputation().equals("invoke") && rhs.getComputation().equals("invoke")) {
-//
-//        }
-
-        // code to compute the children
-        computation.append(lhs.getComputation());
-        computation.append(rhs.getComputation());
-
         // code to compute self
         Type resType = TypeUtils.getExprType(node, table);
         String resOllirType = OptUtils.toOllirType(resType);
-        String code = OptUtils.getTemp() + resOllirType;
-
-
-        Type type = TypeUtils.getExprType(node, table);
+        String code = names.getTemp() + resOllirType;
 
 
         if(node.get("op").equals("<") || node.get("op").equals(">")) {
-            int ifNum = OptUtils.getNextCondNumber();
+            int ifNum = names.getNextCondNumber();
 
             computation.append("if(").append(lhs.getCode()).append(SPACE);
 
-            computation.append(node.get("op")).append(OptUtils.toOllirType(type)).append(SPACE)
+            computation.append(node.get("op")).append(resOllirType).append(SPACE)
                     .append(rhs.getCode()).append(") ").append("goto ").append("true_").append(ifNum).append(END_STMT);
 
             computation.append(code).append(SPACE)
@@ -119,11 +117,11 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
             computation.append("end_").append(ifNum).append(":\n");
         } else if(node.get("op").equals("&&") || node.get("op").equals("||")) {
-            int ifNum = OptUtils.getNextCondNumber();
+            int ifNum = names.getNextCondNumber();
 
             computation.append("if(").append(lhs.getCode()).append(SPACE);
 
-            computation.append(node.get("op")).append(OptUtils.toOllirType(type)).append(SPACE)
+            computation.append(node.get("op")).append(resOllirType).append(SPACE)
                     .append(rhs.getCode()).append(") ").append("goto ").append("true_").append(ifNum).append(END_STMT);
 
             computation.append(code).append(SPACE)
@@ -145,17 +143,14 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                     .append(ASSIGN).append(resOllirType).append(SPACE)
                     .append(lhs.getCode()).append(SPACE);
 
-            computation.append(node.get("op")).append(OptUtils.toOllirType(type)).append(SPACE)
+            computation.append(node.get("op")).append(resOllirType).append(SPACE)
                     .append(rhs.getCode()).append(END_STMT);
         }
-        System.out.print(" Code:"+code+"\n");
-        System.out.print(" Computation:"+computation+"\n");
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
 
     private OllirExprResult visitVarRef(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
         String code = "";
         String temp = "";
@@ -189,7 +184,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             for (int i = 0; i < table.getFields().size(); i++) {
                 if (table.getFields().get(i).getName().equals(node.get("name"))) {
 //                    ollirType = OptUtils.toOllirType(table.getFields().get(i).getType());
-                    code = OptUtils.getTemp() + ollirType;
+                    code = names.getTemp() + ollirType;
                     Field = true;
                 }
             }
@@ -199,15 +194,13 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             computation.append(code).append(SPACE).append(ASSIGN).append(ollirType).append(SPACE).append("getfield(this.").append(table.getClassName()).append(", ").append(id).append(ollirType).append(")").append(ollirType).append(END_STMT);
         }
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitFunctionCall(JmmNode node, Void unused) {
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
-        StringBuilder computation = new StringBuilder();
         Type retType;
         String temp = "";
-        OllirExprResult childfunc = new OllirExprResult("", "");
 
 
         if(table.getReturnType(node.get("name")) != null) {
@@ -217,22 +210,20 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         }
 
 
-        if(node.getChildren().size()>1) {
-            for(int i=1; i<node.getChildren().size(); i++) {
-                childfunc = visit(node.getChild(i));
-            }
+        // The arguments are computed before the call
+        List<OllirExprResult> arguments = new ArrayList<>();
+        for (int i = 1; i < node.getChildren().size(); i++) {
+            arguments.add(visit(node.getChild(i)));
         }
 
 
-        computation.append(childfunc.getComputation());
-
 
         String code = "";
         if(node.getParent().getKind().equals("BinaryOp") || node.getParent().getKind().equals("AssignStmt") || node.getParent().getKind().equals("FunctionCall") || node.getParent().getKind().equals("ArrayAccess")) {
             if (retType != null) {
-                temp = OptUtils.getTemp() + OptUtils.toOllirType(retType);
+                temp = names.getTemp() + OptUtils.toOllirType(retType);
             } else {
-                temp = OptUtils.getTemp() + ".V";
+                temp = names.getTemp() + ".V";
             }
 
             computation.append(temp).append(SPACE);
@@ -289,22 +280,8 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         computation.append("\""+node.get("name")+"\"");
 
-        if(node.getChildren().size()>1) {
-            for(int i=1; i<node.getChildren().size(); i++) {
-                computation.append(", ");
-//                if(node.getChild(i).getKind().equals("FunctionCall") || table.getFields().contains(node.getChild(i)) || Field) {
-//                    computation.append(childfunc.getCode());
-//                }
-//                else {
-//                    computation.append(visit(node.getChild(i)).getCode());
-//                }
-                if(node.getChildren().size() > 2) {
-                    computation.append(visit(node.getChild(i)).getCode());
-                } else {
-                    computation.append(childfunc.getCode());
-                }
-
-            }
+        for (var argument : arguments) {
+            computation.append(", ").append(argument.getCode());
         }
 
         computation.append(")");
@@ -312,7 +289,6 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
 
 //        Type retType = table.getReturnType(node.get("name"));
-        //System.out.println(" type:"+retType);
         if(table.getMethods().contains(node.get("name"))) {
             computation.append(OptUtils.toOllirType(retType));
         } else {
@@ -321,17 +297,16 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         computation.append(END_STMT);
 
-        return new OllirExprResult(code, computation.toString());
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitNewClass(JmmNode node, Void unused) {
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
-        StringBuilder computation = new StringBuilder();
         String retType = "." + node.get("name");
         String temp = "";
         String code = "";
 
-        temp = OptUtils.getTemp()  + retType;
+        temp = names.getTemp()  + retType;
 
         computation.append(temp).append(SPACE);
 
@@ -368,8 +343,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         //computation.append(node.getParent().get("var")).append(retType).append(SPACE).append(ASSIGN).append(retType).append(SPACE).append(temp);
 
-        //System.out.println(computation);
-        return new OllirExprResult(code, computation.toString());
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitNegation(JmmNode node, Void unused) {
@@ -388,14 +362,13 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
     }
 
     private OllirExprResult visitArrayAccess(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
         String temp = "";
         String code = "";
         Type resType = TypeUtils.getExprType(node.getChild(0), table);
         String resOllirType = OptUtils.toOllirType(resType);
         Type retArrayAcces = TypeUtils.getExprType(node, table);
         String retArrayAccesOllirType = OptUtils.toOllirType(retArrayAcces);
-        temp = OptUtils.getTemp() + retArrayAccesOllirType;
+        temp = names.getTemp() + retArrayAccesOllirType;
 
 //        if(node.getDescendants().get(1).getKind().equals("FunctionCall")) {
 //            var funcCall = visit(node.getChild(1));
@@ -419,38 +392,21 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 //            computation.append(node.getChild(0).get("name")).append("[").append(visit(node.getChild(1)).getCode()).append("]").append(retArrayAccesOllirType).append(END_STMT);
 //        }
 
-        if(node.getDescendants().get(1).getKind().equals("IntegerLiteral") || node.getDescendants().get(1).getKind().equals("BooleanLiteral") || node.getDescendants().get(1).getKind().equals("VarRefExpr")) {
-            computation.append(temp).append(SPACE);
-
-            code = temp;
-
-            computation.append(ASSIGN).append(retArrayAccesOllirType).append(SPACE);
+        var index = visit(node.getChild(1));
 
-            computation.append(node.getChild(0).get("name")).append("[").append(visit(node.getChild(1)).getCode()).append("]").append(retArrayAccesOllirType).append(END_STMT);
-
-        }
-        else {
-            var funcCall = visit(node.getChild(1));
-            computation.append(funcCall.getComputation());
-
-            computation.append(temp).append(SPACE);
-
-            code = temp;
+        computation.append(temp).append(SPACE);
 
-            computation.append(ASSIGN).append(retArrayAccesOllirType).append(SPACE);
+        code = temp;
 
-            computation.append(node.getChild(0).get("name")).append("[").append(funcCall.getCode()).append("]").append(retArrayAccesOllirType).append(END_STMT);
+        computation.append(ASSIGN).append(retArrayAccesOllirType).append(SPACE);
 
-        }
+        computation.append(node.getChild(0).get("name")).append("[").append(index.getCode()).append("]").append(retArrayAccesOllirType).append(END_STMT);
 
-        System.out.println(" Array Access:"+code);
-        System.out.println(" Array Access:"+computation);
-        return new OllirExprResult(code,computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitArrayInit(JmmNode node, Void unused) {
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
-        StringBuilder computation = new StringBuilder();
         String temp = "";
         String code = "";
         Type retType = TypeUtils.getExprType(node.getChild(0), table);
@@ -474,21 +430,21 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         String resOllirType = OptUtils.toOllirType(retType);
 
-        temp = OptUtils.getTemp() + resOllirType;
+        temp = names.getTemp() + resOllirType;
         code = "__varargs_array_0" + resOllirType;
         computation.append(temp).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE).append("new(array, ").append(node.getNumChildren()).append(arrayType).append(")").append(resOllirType).append(END_STMT);
 
         computation.append(code).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE).append(temp).append(END_STMT);
 
         for(int i = 0; i<node.getNumChildren(); i++) {
-            computation.append(code).append("[").append(visit(node.getChild(i)).getCode()).append("]").append(arrayType).append(SPACE).append(ASSIGN).append(arrayType).append(SPACE).append(visit(node.getChild(i)).getCode()).append(END_STMT);
+            var element = visit(node.getChild(i)).getCode();
+            computation.append(code).append("[").append(element).append("]").append(arrayType).append(SPACE).append(ASSIGN).append(arrayType).append(SPACE).append(element).append(END_STMT);
         }
 
-        return new OllirExprResult(code, computation.toString());
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitLength(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
         String temp = "";
         String code = "";
         Type lengthType = TypeUtils.getExprType(node, table);
@@ -496,37 +452,28 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         Type retType = TypeUtils.getExprType(node.getChild(0), table);
         String arrayType = OptUtils.toOllirType(retType);
 
-        temp = OptUtils.getTemp() + resOllirType;
+        temp = names.getTemp() + resOllirType;
         code = temp;
+        var array = visit(node.getChild(0));
 
-        computation.append(temp).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE).append("arraylength(").append(visit(node.getChild(0)).getCode()).append(")").append(resOllirType).append(END_STMT);
+        computation.append(temp).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE).append("arraylength(").append(array.getCode()).append(")").append(resOllirType).append(END_STMT);
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitExprStmt(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
-        String code = "";
-
-        computation.append(visit(node.getChild(0)).getComputation());
-        code = visit(node.getChild(0)).getCode();
-
-        return new OllirExprResult(code, computation);
+        return visit(node.getChild(0));
     }
 
     /**
-     * Default visitor. Visits every child node and return an empty result.
+     * Default visitor. Generates no code and returns an empty result, the expressions inside statements are visited
+     * when {@link OllirGeneratorVisitor} generates each statement.
      *
      * @param node
      * @param unused
      * @return
      */
     private OllirExprResult  defaultVisit(JmmNode node, Void unused) {
-
-        for (var child : node.getChildren()) {
-            visit(child);
-        }
-
         return OllirExprResult.EMPTY;
     }
 
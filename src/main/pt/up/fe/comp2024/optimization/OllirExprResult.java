@@ -1,27 +1,16 @@
 package pt.up.fe.comp2024.optimization;
 
+/**
+ * Operand holding the value of an expression. The code that computes it is written by the visitor as it goes.
+ */
 public class OllirExprResult {
 
-    public static final OllirExprResult EMPTY = new OllirExprResult("", "");
+    public static final OllirExprResult EMPTY = new OllirExprResult("");
 
-    private final String computation;
     private final String code;
 
-    public OllirExprResult(String code, String computation) {
-        this.code = code;
-        this.computation = computation;
-    }
-
     public OllirExprResult(String code) {
-        this(code, "");
-    }
-
-    public OllirExprResult(String code, StringBuilder computation) {
-        this(code, computation.toString());
-    }
-
-    public String getComputation() {
-        return computation;
+        this.code = code;
     }
 
     public String getCode() {
@@ -31,8 +20,7 @@ public class OllirExprResult {
     @Override
     public String toString() {
         return "OllirNodeResult{" +
-                "computation='" + computation + '\'' +
-                ", code='" + code + '\'' +
+                "code='" + code + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,108 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Value of an expression, as built by {@link OllirExprBuilder}. The counterpart of {@link OllirExprResult}.
+ * <p>
+ * The OLLIR objects are only created when the value is used, and each use creates new ones. A value used where its
+ * OLLIR code would not parse throws an {@link UnsupportedOperationException}.
+ */
+public class OllirExprValue {
+
+    private enum Kind {
+        EMPTY,
+        LITERAL,
+        OPERAND,
+        NOT,
+        NEW_ARRAY
+    }
+
+    public static final OllirExprValue EMPTY = new OllirExprValue(Kind.EMPTY, null, null, null);
+
+    private final Kind kind;
+
+    // Value of a literal or name of an operand
+    private final String name;
+
+    private final String ollirType;
+
+    // Operand of a negation, or size of a new array
+    private final OllirExprValue operand;
+
+    private OllirExprValue(Kind kind, String name, String ollirType, OllirExprValue operand) {
+        this.kind = kind;
+        this.name = name;
+        this.ollirType = ollirType;
+        this.operand = operand;
+    }
+
+    public static OllirExprValue literal(String value, String ollirType) {
+        return new OllirExprValue(Kind.LITERAL, value, ollirType, null);
+    }
+
+    public static OllirExprValue operand(String name, String ollirType) {
+        return new OllirExprValue(Kind.OPERAND, name, ollirType, null);
+    }
+
+    public static OllirExprValue not(String ollirType, OllirExprValue operand) {
+        return new OllirExprValue(Kind.NOT, null, ollirType, operand);
+    }
+
+    public static OllirExprValue newArray(OllirExprValue size, String ollirType) {
+        return new OllirExprValue(Kind.NEW_ARRAY, null, ollirType, size);
+    }
+
+    public boolean isEmpty() {
+        return kind == Kind.EMPTY;
+    }
+
+    /**
+     * @return the value as a literal or operand, e.g. an argument of a call
+     */
+    public Element toElement() {
+        return switch (kind) {
+            case LITERAL -> OllirObjects.literal(name, ollirType);
+            case OPERAND -> OllirObjects.operand(name, ollirType);
+            default -> throw new UnsupportedOperationException("Expected an operand, found " + this);
+        };
+    }
+
+    /**
+     * @return the value as the right side of an assignment
+     */
+    public Instruction toInstruction() {
+        return switch (kind) {
+            case LITERAL, OPERAND -> new SingleOpInstruction(toElement());
+            case NOT -> new UnaryOpInstruction(new Operation(OperationType.NOTB, OllirObjects.type(ollirType)),
+                    operand.toElement());
+            case NEW_ARRAY -> {
+                List<Element> arguments = new ArrayList<>();
+                arguments.add(operand.toElement());
+                yield new CallInstruction(CallType.NEW, OllirObjects.newArray(), arguments,
+                        OllirObjects.type(ollirType));
+            }
+            case EMPTY -> throw new UnsupportedOperationException("Expected an expression, found " + this);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "OllirExprValue{" +
+                "kind=" + kind +
+                ", name='" + name + '\'' +
+                ", ollirType='" + ollirType + '\'' +
+                ", operand=" + operand +
+                '}';
+    }
+}
@@ -8,12 +8,23 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are not expressions.
+ * <p>
+ * The code of the whole program is appended to a single buffer, shared with the expression visitor, and can be read
+ * with {@link #getCode()} after visiting the root. Use one instance per program.
+ * <p>
+ * Given a pool, the code of each method is generated by its own visitor on the pool, and appended in declaration
+ * order, so the code is the same as when generated sequentially.
  */
-public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
+public class OllirGeneratorVisitor extends AJmmVisitor<Void, Void> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
@@ -25,14 +36,42 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private final SymbolTable table;
 
+    private final OllirNames names;
+
     private final OllirExprGeneratorVisitor exprVisitor;
 
+    private final StringBuilder code;
+
+    private final ForkJoinPool methodPool;
+
     public OllirGeneratorVisitor(SymbolTable table) {
+        this(table, null);
+    }
+
+    /**
+     * @param table
+     * @param methodPool where to generate the code of each method, or null to generate it sequentially
+     */
+    public OllirGeneratorVisitor(SymbolTable table, ForkJoinPool methodPool) {
+        this(table, new OllirNames(), methodPool);
+    }
+
+    public OllirGeneratorVisitor(SymbolTable table, OllirNames names, ForkJoinPool methodPool) {
         this.table = table;
-        exprVisitor = new OllirExprGeneratorVisitor(table);
+        this.names = names;
+        this.methodPool = methodPool;
+        this.code = new StringBuilder();
+        exprVisitor = new OllirExprGeneratorVisitor(table, names, code);
         this.buildVisitor();
     }
 
+    /**
+     * @return the OLLIR code generated so far
+     */
+    public String getCode() {
+        return code.toString();
+    }
+
 
     @Override
     protected void buildVisitor() {
@@ -60,30 +99,20 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
 
-    private String visitAssignStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+    private Void visitAssignStmt(JmmNode node, Void unused) {
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
-//        System.out.print(" Assign:"+node.get("var")+"\n");
-//        System.out.print(" Local Variables:"+table.getLocalVariables(methodName)+"\n");
 //        for(int i = 0; i<table.getLocalVariables(methodName).size(); i++) {
 //            if(table.getLocalVariables(methodName).get(i).getName().equals(node.get("var"))) {
 //                code.append(table.getLocalVariables(methodName).get(i).getName());
 //                code.append(OptUtils.toOllirType(table.getLocalVariables(methodName).get(i).getType()));
 //            }
 //        }
-//        System.out.print(" code ta certo?:"+code+"\n");
         //var lhs = exprVisitor.visit(node.getJmmChild(0));
-        var rhs = exprVisitor.visit(node.getJmmChild(0));
-
-        //StringBuilder code = new StringBuilder();
-
         // code to compute the children
-        //code.append(lhs.getComputation());
-        code.append(rhs.getComputation());
+        var rhs = exprVisitor.visit(node.getJmmChild(0));
 
         // code to compute self
         // statement has type of lhs
-//        System.out.println(node);
 
 
         Type thisType = TypeUtils.getExprType(node.getJmmChild(0), table);
@@ -153,59 +182,44 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         code.append(END_STMT);
 
-        System.out.println(" code assign:"+code);
-        return code.toString();
+        return null;
     }
 
 
-    private String visitReturn(JmmNode node, Void unused) {
+    private Void visitReturn(JmmNode node, Void unused) {
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
         Type retType = table.getReturnType(methodName);
-        //System.out.print(" Return qual é?: "+node.getChild(0)+"\n");
-        //System.out.print(" Return type: " + retType + "\n");
-        //System.out.println(node);
-        StringBuilder code = new StringBuilder();
-
         var expr = OllirExprResult.EMPTY;
 
         if (node.getNumChildren() > 0) {
-            //System.out.print(" Está certo?: sim "+node.getJmmChild(0)+"\n");
             expr = exprVisitor.visit(node.getJmmChild(0));
         }
-        //System.out.print(" Antes ou depois?" + expr + "\n");
-        code.append(expr.getComputation());
         code.append("ret");
         code.append(OptUtils.toOllirType(retType));
         code.append(SPACE);
-        //System.out.print(code);
 
         code.append(expr.getCode());
-        //System.out.print(code);
         code.append(END_STMT);
 
-        //System.out.print(code);
-        return code.toString();
+        return null;
     }
 
 
-    private String visitParam(JmmNode node, Void unused) { // NAO ENTRA AQUI PORQUE FAÇO COM A SYMBOLTABLE NO METHODDECL
+    private Void visitParam(JmmNode node, Void unused) { // NAO ENTRA AQUI PORQUE FAÇO COM A SYMBOLTABLE NO METHODDECL
 
-        //System.out.print(" Node Param:"+node+"\n");
-        var typeCode = visit(node.getJmmChild(0));
         var id = node.get("name");
 
-        String code = id + typeCode;
+        code.append(id);
+        visit(node.getJmmChild(0));
 
-        //System.out.print(code);
-        return code;
+        return null;
     }
 
 
-    private String visitMethodDecl(JmmNode node, Void unused) {
-//        System.out.println(" Aqui:"+node.getChildren());
-//        System.out.println(" Aqui2:"+table.getMethods());
+    private Void visitMethodDecl(JmmNode node, Void unused) {
         boolean retExists = false;
-        StringBuilder code = new StringBuilder(".method ");
+        names.startMethod();
+        code.append(".method ");
         boolean hasEllipsis = NodeUtils.getBooleanAttribute(node, "hasEllipsis", "false");
 
         boolean isPublic = NodeUtils.getBooleanAttribute(node, "isPublic", "false");
@@ -235,7 +249,6 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             code.append("(");
             var paramCode = table.getParameters(name);
             for (Symbol param : paramCode) {
-                //System.out.print(" Node Param:"+param+"\n");
                 code.append(param.getName());
 //                if(param.getType().isArray())
 //                    code.append(".array");
@@ -247,19 +260,14 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             }
             code.append(")");
 //            var paramCode = visit(node.getJmmChild(1));
-            //System.out.print(code);
             //code.append("(" + paramCode + ")");
-            //System.out.print(code);
         } else {
             code.append("()");
         }
 
         // type
         //var retType = OptUtils.toOllirType(node.getJmmChild(0));
-        //System.out.println(" ???:"+node.getJmmChild(0));
-        var retType = visit(node.getJmmChild(0));
-        //System.out.print(" RetType:"+retType+"\n");
-        code.append(retType);
+        visit(node.getJmmChild(0));
         code.append(L_BRACKET);
 
         // rest of its children stmts
@@ -268,10 +276,6 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             for (int i = afterParam; i < node.getNumChildren(); i++) {
                 var child = node.getJmmChild(i);
                 var funcCall = child.getChild(0);
-//                System.out.println(" Child:"+child);
-//                System.out.println(" ChildDoChild:"+child.getChild(0));
-                //                System.out.println(" type:"+child.getChild(0));
-//                System.out.println(" que?:"+table.getLocalVariables(name));
 //                if(VAR_DECL.check(child) && funcCall.getKind().equals("Id")) {
 //                    visit(child);
 //                }
@@ -279,15 +283,10 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 //                    if(child.getChild(0).getKind().equals("Id")) {
 //
 //                    }
-                    var childCode = visit(child);
-//                    System.out.println(" ChildCode:"+childCode);
-                    code.append(childCode);
+                    visit(child);
                 }
                 if(FUNCTION_CALL.check(funcCall) && child.getKind().equals("ExprStmt")) {
-                    var childCode = exprVisitor.visit(funcCall);
-                    //System.out.print(" function call:"+childCode.getCode()+"\n");
-                    System.out.println(" Computation:"+childCode.getComputation());
-                    code.append(childCode.getComputation());
+                    exprVisitor.visit(funcCall);
                 }
                 if(RETURN_STMT.check(child)) {
                     retExists = true;
@@ -298,17 +297,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             for (int i = afterParam; i < node.getNumChildren(); i++) {
                 var child = node.getJmmChild(i);
                 var funcCall = child.getChild(0);
-//                System.out.print(" Child:"+child+"\n");
-//                System.out.print(" Child do Child:"+funcCall+"\n");
                 if(!(VAR_DECL.check(child))) {
-                    var childCode = visit(child);
-                    code.append(childCode);
+                    visit(child);
                 }
                 if(FUNCTION_CALL.check(funcCall) && child.getKind().equals("ExprStmt")) {
-                    var childCode = exprVisitor.visit(funcCall);
-                    //System.out.print(" function call:"+childCode+"\n");
-                    System.out.println(childCode.getComputation());
-                    code.append(childCode.getComputation());
+                    exprVisitor.visit(funcCall);
                 }
                 if(RETURN_STMT.check(child)) {
                     retExists = true;
@@ -323,19 +316,14 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(R_BRACKET);
         code.append(NL);
 
-        //System.out.print(code);
-        return code.toString();
+        return null;
     }
 
 
-    private String visitClass(JmmNode node, Void unused) {
+    private Void visitClass(JmmNode node, Void unused) {
 
-        StringBuilder code = new StringBuilder();
         String teste = "null";
         code.append(table.getClassName());
-        //System.out.print(table.getClass().toString());
-        //System.out.println(table.getSuper().equals(null));
-        //System.out.print("SUPER?: "+node.getObject("extendClassName")+"\n");
 //
         if(node.hasAttribute("extendClassName")) {
            code.append(" extends ");
@@ -347,24 +335,51 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(NL);
         var needNl = true;
 
-        for (var child : node.getChildren()) {
-            //System.out.print(child);
-
-            var result = visit(child);
+        var methodCodes = methodPool != null ? generateMethods(node) : null;
+        int methodIndex = 0;
 
+        for (var child : node.getChildren()) {
             if (METHOD_DECL.check(child) && needNl) {
                 code.append(NL);
                 needNl = false;
             }
 
-            code.append(result);
+            if (METHOD_DECL.check(child) && methodCodes != null) {
+                code.append(methodCodes.get(methodIndex++).join());
+                continue;
+            }
+
+            visit(child);
         }
 
         code.append(buildConstructor());
         code.append(R_BRACKET);
 
-        //System.out.print(code);
-        return code.toString();
+        return null;
+    }
+
+    /**
+     * Starts generating the code of each method of the class on the method pool, each with its own visitor.
+     *
+     * @param classDecl
+     * @return the code of each method, in declaration order
+     */
+    private List<ForkJoinTask<String>> generateMethods(JmmNode classDecl) {
+        var methodCodes = new ArrayList<ForkJoinTask<String>>();
+
+        for (var method : classDecl.getChildren()) {
+            if (!METHOD_DECL.check(method)) {
+                continue;
+            }
+
+            methodCodes.add(methodPool.submit(() -> {
+                var methodVisitor = new OllirGeneratorVisitor(table);
+                methodVisitor.visit(method);
+                return methodVisitor.getCode();
+            }));
+        }
+
+        return methodCodes;
     }
 
     private String buildConstructor() {
@@ -375,24 +390,18 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
 
-    private String visitProgram(JmmNode node, Void unused) {
+    private Void visitProgram(JmmNode node, Void unused) {
 
-        StringBuilder code = new StringBuilder();
+        node.getChildren().forEach(this::visit);
 
-        node.getChildren().stream()
-                .map(this::visit)
-                .forEach(code::append);
-
-        return code.toString();
+        return null;
     }
 
-    private String visitVar(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
+    private Void visitVar(JmmNode node, Void unused) {
         boolean isPublic = NodeUtils.getBooleanAttribute(node, "isPublic", "false");
 
         if(CLASS_DECL.check(node.getParent())) {
-            code = new StringBuilder(".field ");
+            code.append(".field ");
 
             if (isPublic) {
                 code.append("public ");
@@ -404,81 +413,70 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         if(node.getChild(0).getKind().equals("[]")) {
             code.append(node.get("name"));
             code.append(".array");
-            code.append(visit(node.getChild(0)));
+            visit(node.getChild(0));
         } else {
             code.append(node.get("name"));
             //if(node.getChild(0).equals("Id"))
-            code.append(visit(node.getChild(0)));
+            visit(node.getChild(0));
         }
 
         code.append(END_STMT);
 
-        //System.out.println(code);
-        return code.toString();
+        return null;
     }
 
-    private String visitInteger(JmmNode node, Void unused) {
+    private Void visitInteger(JmmNode node, Void unused) {
         var intType = new Type("int", false);
-        StringBuilder code = new StringBuilder();
         code.append(OptUtils.toOllirType(intType));
 
-        //System.out.println(code);
-        return code.toString();
+        return null;
     }
 
-    private String visitBoolean(JmmNode node, Void unused) {
+    private Void visitBoolean(JmmNode node, Void unused) {
         var boolType = new Type("boolean", false);
-        StringBuilder code = new StringBuilder();
         code.append(OptUtils.toOllirType(boolType));
 
-        //System.out.println(code);
-        return code.toString();
+        return null;
     }
 
-    private String visitString(JmmNode node, Void unused) {
+    private Void visitString(JmmNode node, Void unused) {
         var arrayType = new Type("String", true);
-        StringBuilder code = new StringBuilder();
         code.append(OptUtils.toOllirType(arrayType));
 
-        return code.toString();
+        return null;
     }
 
-    private String visitImport(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+    private Void visitImport(JmmNode node, Void unused) {
+        StringBuilder importCode = new StringBuilder();
 
-        code.append("import ");
-        code.append(node.get("value"));
-        code.append(END_STMT);
-        for (int i = 0; i < code.length(); i++) {
-            if (code.charAt(i) == '[' || code.charAt(i) == ']') {
-                code.deleteCharAt(i);
+        importCode.append("import ");
+        importCode.append(node.get("value"));
+        importCode.append(END_STMT);
+        for (int i = 0; i < importCode.length(); i++) {
+            if (importCode.charAt(i) == '[' || importCode.charAt(i) == ']') {
+                importCode.deleteCharAt(i);
                 i--;
             }
         }
-        //System.out.print(code);
-        return code.toString();
+        code.append(importCode);
+        return null;
     }
 
-    private String visitVoid(JmmNode node, Void unused) {
+    private Void visitVoid(JmmNode node, Void unused) {
         var voidType = new Type("void", false);
-        StringBuilder code = new StringBuilder();
         code.append(OptUtils.toOllirType(voidType));
 
-        //System.out.println(code);
-        return code.toString();
+        return null;
     }
 
-    private String visitId(JmmNode node, Void unused) {
+    private Void visitId(JmmNode node, Void unused) {
         var IdType = new Type(node.get("name"), false);
-        StringBuilder code = new StringBuilder();
         code.append(OptUtils.toOllirType(IdType));
 
-        //System.out.println(code);
-        return code.toString();
+        return null;
     }
 
-    private String visitArrayAssign(JmmNode node, Void unused) {
-//        System.out.println(" Array?:"+node);
+    private Void visitArrayAssign(JmmNode node, Void unused) {
 //        StringBuilder computation = new StringBuilder();
 //        String code = "";
 //        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
@@ -487,7 +485,6 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 //
 //        for(int i = 0; i<table.getParameters(methodName).size(); i++) {
 //            if(table.getParameters(methodName).get(i).getName().equals(node.get("var"))) {
-//                //System.out.println(" parametro:"+table.getParameters(methodName).get(i).getType().getName());
 //                computation.append(table.getParameters(methodName).get(i).getType());
 //            }
 //        }
@@ -497,8 +494,6 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 //        computation.append(ASSIGN).append(resOllirType).append(SPACE);
 //
 //        computation.append(visit(node.getChild(1))).append(END_STMT);
-//        System.out.println(" Array Access:"+code);
-//        System.out.println(" Array Access:"+computation);
 //        return computation.toString();
 
 
@@ -506,7 +501,6 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
 
 
-        StringBuilder code = new StringBuilder();
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
 
         var position = exprVisitor.visit(node.getJmmChild(0));
@@ -549,11 +543,10 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         code.append(END_STMT);
 
-        System.out.println(" code assign:"+code);
-        return code.toString();
+        return null;
     }
 
-    private String visitArray(JmmNode node, Void unused) {
+    private Void visitArray(JmmNode node, Void unused) {
         Type arrayType;
         if(node.getChild(0).getKind().equals("Integer")) {
             arrayType = new Type("int", true);
@@ -562,105 +555,76 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         } else {
             arrayType = new Type(node.getKind(), true);
         }
-        StringBuilder code = new StringBuilder();
         code.append(OptUtils.toOllirType(arrayType));
 
-        System.out.println(code);
-        return code.toString();
+        return null;
     }
 
-    private String visitIfElse(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+    private Void visitIfElse(JmmNode node, Void unused) {
         String ifbody = "ifbody_";
         String end = "endif_";
-        int ifNum = OptUtils.getNextIfNum();
-
-        if(node.getChild(0).getKind().equals("BinaryOp")) {
-            var binOp = exprVisitor.visit(node.getChild(0));
-            code.append(binOp.getComputation());
+        int ifNum = names.getNextIfNum();
 
-            code.append("if( ").append(binOp.getCode()).append(" ) ").append("goto ").append(ifbody).append(ifNum).append(END_STMT);
+        var condition = exprVisitor.visit(node.getChild(0));
 
-            code.append(visit(node.getChild(2)));
-            code.append("goto ").append(end).append(ifNum).append(END_STMT);
-            code.append(ifbody).append(ifNum).append(":\n");
-            code.append(visit(node.getChild(1)));
-            code.append(end).append(ifNum).append(":\n");
-        } else {
+        code.append("if( ").append(condition.getCode()).append(" ) ").append("goto ").append(ifbody).append(ifNum).append(END_STMT);
 
-            code.append("if( ").append(exprVisitor.visit(node.getChild(0)).getCode()).append(" ) ").append("goto ").append(ifbody).append(ifNum).append(END_STMT);
+        visit(node.getChild(2));
+        code.append("goto ").append(end).append(ifNum).append(END_STMT);
+        code.append(ifbody).append(ifNum).append(":\n");
+        visit(node.getChild(1));
+        code.append(end).append(ifNum).append(":\n");
 
-            code.append(visit(node.getChild(2)));
-            code.append("goto ").append(end).append(ifNum).append(END_STMT);
-            code.append(ifbody).append(ifNum).append(":\n");
-            code.append(visit(node.getChild(1)));
-            code.append(end).append(ifNum).append(":\n");
-        }
 
-
-        return code.toString();
+        return null;
     }
 
-    private String visitWhile(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+    private Void visitWhile(JmmNode node, Void unused) {
+        String whilecond = "whilecond_";
         String whilebody = "whilebody_";
         String end = "endwhile_";
-        int ifNum = OptUtils.getNextWhileNum();
+        int ifNum = names.getNextWhileNum();
 
-        if(node.getChild(0).getKind().equals("BinaryOp")) {
-            code.append("Loop:\n");
-            var binOp = exprVisitor.visit(node.getChild(0));
-            code.append(binOp.getComputation());
+        code.append(whilecond).append(ifNum).append(":\n");
+        var condition = exprVisitor.visit(node.getChild(0));
 
-            code.append("if( ").append(binOp.getCode()).append(" ) ").append("goto ").append(whilebody).append(ifNum).append(END_STMT);
+        code.append("if( ").append(condition.getCode()).append(" ) ").append("goto ").append(whilebody).append(ifNum).append(END_STMT);
 
-            code.append("goto ").append(end).append(ifNum).append(END_STMT);
-            code.append(whilebody).append(ifNum).append(":\n");
-            code.append(visit(node.getChild(1)));
-            code.append("goto Loop").append(END_STMT);
-            code.append(end).append(ifNum).append(":\n");
-        } else {
-            code.append("Loop:\n");
-            code.append("if( ").append(exprVisitor.visit(node.getChild(0)).getCode()).append(" ) ").append("goto ").append(whilebody).append(ifNum).append(END_STMT);
-
-            code.append("goto ").append(end).append(ifNum).append(END_STMT);
-            code.append(whilebody).append(ifNum).append(":\n");
-            code.append(visit(node.getChild(1)));
-            code.append("goto Loop").append(END_STMT);
-            code.append(end).append(ifNum).append(":\n");
-        }
+        code.append("goto ").append(end).append(ifNum).append(END_STMT);
+        code.append(whilebody).append(ifNum).append(":\n");
+        visit(node.getChild(1));
+        code.append("goto ").append(whilecond).append(ifNum).append(END_STMT);
+        code.append(end).append(ifNum).append(":\n");
 
 
-        return code.toString();
+        return null;
     }
 
-    private String visitStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
+    private Void visitStmt(JmmNode node, Void unused) {
         if(node.getChild(0).getKind().equals("ifElseStmt") || node.getChild(0).getKind().equals("WhileStmt")) {
-            code.append(visit(node.getChild(0)));
+            visit(node.getChild(0));
         } else {
-            code.append(exprVisitor.visit(node.getChild(0)).getComputation());
-            code.append(visit(node.getChild(0)));
+            exprVisitor.visit(node.getChild(0));
+            visit(node.getChild(0));
         }
 
-        return code.toString();
+        return null;
     }
 
 
 
     /**
-     * Default visitor. Visits every child node and return an empty string.
+     * Default visitor. Visits every child node and generates no code.
      *
      * @param node
      * @param unused
      * @return
      */
-    private String defaultVisit(JmmNode node, Void unused) {
+    private Void defaultVisit(JmmNode node, Void unused) {
         for (var child : node.getChildren()) {
             visit(child);
         }
 
-        return "";
+        return null;
     }
 }
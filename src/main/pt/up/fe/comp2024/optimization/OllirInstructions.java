@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Where the builders add the instructions of a method. Labels are kept until the next instruction is added, and then
+ * point to it, as when parsing OLLIR code.
+ * <p>
+ * Instructions added outside of a method are dropped, and never created.
+ */
+public class OllirInstructions {
+
+    private final Method method;
+
+    private final List<String> labels;
+
+    /**
+     * @param method the method that receives the instructions, or null to drop them
+     */
+    public OllirInstructions(Method method) {
+        this.method = method;
+        this.labels = new ArrayList<>();
+    }
+
+    public static OllirInstructions dropped() {
+        return new OllirInstructions(null);
+    }
+
+    /**
+     * @param instruction creates the instruction, only called if the instruction is kept
+     */
+    public void add(Supplier<Instruction> instruction) {
+        if (method == null) {
+            labels.clear();
+            return;
+        }
+
+        var kept = instruction.get();
+        for (var label : labels) {
+            method.addLabel(label, kept);
+        }
+        labels.clear();
+
+        method.addInstr(kept);
+    }
+
+    public void addLabel(String label) {
+        labels.add(label);
+    }
+
+    /**
+     * @return true if there are labels that do not point to an instruction yet
+     */
+    public boolean hasPendingLabels() {
+        return !labels.isEmpty();
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp2024.optimization;
+
+/**
+ * Hands out the names of temporaries and the numbers used in labels while generating OLLIR.
+ * <p>
+ * One instance per compilation, shared by the statement and expression visitors. Numbering restarts at each method
+ * (see {@link #startMethod()}), so the OLLIR of a method only depends on the method, and methods can be generated in
+ * any order, or at the same time, with the same result.
+ */
+public class OllirNames {
+
+    private int tempNumber = -1;
+
+    private int ifNumber = -1;
+
+    private int whileNumber = -1;
+
+    private int conditionalNumber = -1;
+
+    /**
+     * Restarts the numbering of temporaries and labels, to be called before generating each method.
+     */
+    public void startMethod() {
+        tempNumber = -1;
+        ifNumber = -1;
+        whileNumber = -1;
+        conditionalNumber = -1;
+    }
+
+    public String getTemp() {
+
+        return getTemp("tmp");
+    }
+
+    public String getTemp(String prefix) {
+
+        return prefix + getNextTempNum();
+    }
+
+    public int getNextTempNum() {
+
+        tempNumber += 1;
+        return tempNumber;
+    }
+
+    public int getNextIfNum() {
+
+        ifNumber += 1;
+        return ifNumber;
+    }
+
+    public int getNextWhileNum() {
+
+        whileNumber += 1;
+        return whileNumber;
+    }
+
+    public int getNextCondNumber() {
+
+        conditionalNumber += 1;
+        return conditionalNumber;
+    }
+}
@@ -0,0 +1,126 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Type;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the OLLIR elements and types that the OLLIR parser would create for a given piece of OLLIR code.
+ * <p>
+ * Everything returned is a new object, since the parser never shares elements between instructions. Names and types
+ * the parser would not accept throw an {@link UnsupportedOperationException}.
+ */
+public class OllirObjects {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    // Words the OLLIR lexer reads as keywords, and so cannot be used as names
+    private static final Set<String> KEYWORDS = Set.of("i32", "bool", "V", "array", "String", "final", "goto", "if",
+            "import", "interface", "new", "package", "private", "protected", "public", "ret", "static", "this", "ldc",
+            "invokespecial", "invokevirtual", "invokeinterface", "invokestatic", "arraylength", "getfield",
+            "putfield", "getstatic", "putstatic", "extends", "varargs");
+
+    /**
+     * @param name
+     * @return the name, if it can be used as an identifier in OLLIR code
+     */
+    public static String checkName(String name) {
+        if (!NAME.matcher(name).matches() || KEYWORDS.contains(name)) {
+            throw new UnsupportedOperationException("'" + name + "' is not a valid OLLIR name");
+        }
+
+        return name;
+    }
+
+    /**
+     * Builds the type written by {@link OptUtils#toOllirType}, e.g. ".array.i32".
+     *
+     * @param ollirType
+     * @return
+     */
+    public static Type type(String ollirType) {
+        if (!ollirType.startsWith(".")) {
+            throw new UnsupportedOperationException("'" + ollirType + "' is not an OLLIR type");
+        }
+
+        int dims = 0;
+        ElementType elementType = null;
+        String className = null;
+
+        for (var part : ollirType.substring(1).split("\\.", -1)) {
+            switch (part) {
+                case "array" -> dims++;
+                case "i32" -> elementType = ElementType.INT32;
+                case "bool" -> elementType = ElementType.BOOLEAN;
+                case "String" -> elementType = ElementType.STRING;
+                case "V" -> elementType = ElementType.VOID;
+                default -> {
+                    elementType = ElementType.OBJECTREF;
+                    className = checkName(part);
+                }
+            }
+        }
+
+        if (dims > 0) {
+            var arrayType = new ArrayType();
+            arrayType.setNumDimensions(dims);
+            arrayType.setTypeOfElements(elementType);
+
+            if (elementType == ElementType.OBJECTREF) {
+                arrayType.setElementClass(className);
+            } else if (elementType == ElementType.STRING) {
+                arrayType.setElementClass("String");
+            }
+
+            return arrayType;
+        }
+
+        if (elementType == null) {
+            throw new UnsupportedOperationException("'" + ollirType + "' is not an OLLIR type");
+        }
+
+        return elementType == ElementType.OBJECTREF ? new ClassType(elementType, className) : new Type(elementType);
+    }
+
+    public static Operand operand(String name, String ollirType) {
+        return new Operand(checkName(name), type(ollirType));
+    }
+
+    public static LiteralElement literal(String value, String ollirType) {
+        return new LiteralElement(value, type(ollirType));
+    }
+
+    /**
+     * @return the literal with the name of a method in a call, such as "\"foo\""
+     */
+    public static LiteralElement methodName(String name) {
+        return new LiteralElement("\"" + name + "\"", new Type(ElementType.STRING));
+    }
+
+    /**
+     * @return 'this' as the object of a call or field access
+     */
+    public static Operand thisOperand(String className) {
+        return new Operand("this", new ClassType(ElementType.THIS, checkName(className)));
+    }
+
+    /**
+     * @return the class given to 'new', e.g. 'new(Foo)'
+     */
+    public static Operand newClass(String className) {
+        return new Operand(checkName(className), new ClassType(ElementType.OBJECTREF, className));
+    }
+
+    /**
+     * @return 'array' as given to 'new' when creating an array
+     */
+    public static Operand newArray() {
+        return new Operand("array", new ArrayType());
+    }
+}
@@ -13,47 +13,6 @@ import java.util.Optional;
 import static pt.up.fe.comp2024.ast.Kind.TYPE;
 
 public class OptUtils {
-    private static int tempNumber = -1;
-
-    private static int ifNumber = -1;
-
-    private static int whileNumber = -1;
-
-    private static int conditionalNumber = -1;
-
-    public static String getTemp() {
-
-        return getTemp("tmp");
-    }
-
-    public static String getTemp(String prefix) {
-
-        return prefix + getNextTempNum();
-    }
-
-    public static int getNextTempNum() {
-
-        tempNumber += 1;
-        return tempNumber;
-    }
-
-    public static int getNextIfNum() {
-
-        ifNumber += 1;
-        return ifNumber;
-    }
-
-    public static int getNextWhileNum() {
-
-        whileNumber += 1;
-        return whileNumber;
-    }
-
-    public static int getNextCondNumber() {
-
-        conditionalNumber += 1;
-        return conditionalNumber;
-    }
 
     public static String toOllirType(JmmNode typeNode) {
 
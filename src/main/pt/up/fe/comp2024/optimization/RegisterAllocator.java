@@ -0,0 +1,186 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Maps the local variables of each method to as few JVM registers as possible, changing the virtual registers of
+ * their descriptors in the var table.
+ * <p>
+ * Two locals interfere if one is defined while the other is live. The interference graph is colored by removing the
+ * local with the fewest neighbours until none is left, and giving each one, in the reverse order, the lowest register
+ * its neighbours do not have. 'this' and the parameters keep their registers, and locals come after them.
+ */
+public class RegisterAllocator {
+
+    private final int maxRegisters;
+
+    private final List<Report> reports;
+
+    /**
+     * @param maxRegisters how many registers each method can use at most, counting 'this' and the parameters, or 0 to
+     *                     use as few as possible
+     */
+    public RegisterAllocator(int maxRegisters) {
+        this.maxRegisters = maxRegisters;
+        this.reports = new ArrayList<>();
+    }
+
+    /**
+     * @param classUnit
+     * @return an error for each method that needs more registers than allowed, whose registers are left unchanged
+     */
+    public List<Report> allocate(ClassUnit classUnit) {
+        for (var method : classUnit.getMethods()) {
+            allocate(method);
+        }
+
+        return reports;
+    }
+
+    private void allocate(Method method) {
+        var liveness = new Liveness(method);
+        var variables = liveness.getVariables();
+        var varTable = method.getVarTable();
+
+        int firstLocal = method.isStaticMethod() ? 0 : 1;
+        var locals = new BitSet();
+        for (int i = 0; i < variables.size(); i++) {
+            var descriptor = varTable.get(variables.get(i));
+            if (descriptor.getScope() == VarScope.PARAMETER) {
+                firstLocal = Math.max(firstLocal, descriptor.getVirtualReg() + 1);
+            } else {
+                locals.set(i);
+            }
+        }
+
+        var colors = color(interferences(liveness, locals), locals);
+        int registers = firstLocal + colors.stream().mapToInt(color -> color + 1).max().orElse(0);
+
+        if (maxRegisters > 0 && registers > maxRegisters) {
+            reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1, "Method '" + method.getMethodName() + "' needs "
+                    + registers + " registers, but at most " + maxRegisters + " were allowed", null));
+            return;
+        }
+
+        for (int i = locals.nextSetBit(0); i >= 0; i = locals.nextSetBit(i + 1)) {
+            varTable.get(variables.get(i)).setVirtualReg(firstLocal + colors.get(i));
+        }
+
+        // The names of classes are never loaded, so any register does for them
+        for (var entry : varTable.entrySet()) {
+            var descriptor = entry.getValue();
+            if (descriptor.getScope() == VarScope.LOCAL && liveness.indexOf(entry.getKey()) < 0
+                    && !entry.getKey().equals("this")) {
+                descriptor.setVirtualReg(firstLocal);
+            }
+        }
+    }
+
+    private List<BitSet> interferences(Liveness liveness, BitSet locals) {
+        int size = liveness.getVariables().size();
+        var neighbours = new ArrayList<BitSet>(size);
+        for (int i = 0; i < size; i++) {
+            neighbours.add(new BitSet());
+        }
+
+        int instructions = liveness.getMethod().getInstructions().size();
+        for (int inst = 0; inst < instructions; inst++) {
+            var defs = liveness.getDefs(inst);
+            var liveOut = liveness.getLiveOut(inst);
+
+            for (int def = defs.nextSetBit(0); def >= 0; def = defs.nextSetBit(def + 1)) {
+                for (int live = liveOut.nextSetBit(0); live >= 0; live = liveOut.nextSetBit(live + 1)) {
+                    addInterference(neighbours, def, live);
+                }
+            }
+        }
+
+        // Locals read before being written are all live together when the method starts
+        if (instructions > 0) {
+            var liveIn = liveness.getLiveIn(0);
+            for (int i = liveIn.nextSetBit(0); i >= 0; i = liveIn.nextSetBit(i + 1)) {
+                for (int j = liveIn.nextSetBit(i + 1); j >= 0; j = liveIn.nextSetBit(j + 1)) {
+                    addInterference(neighbours, i, j);
+                }
+            }
+        }
+
+        // Parameters have registers of their own, so only locals can be in the way of each other
+        for (var variableNeighbours : neighbours) {
+            variableNeighbours.and(locals);
+        }
+
+        return neighbours;
+    }
+
+    private static void addInterference(List<BitSet> neighbours, int first, int second) {
+        if (first != second) {
+            neighbours.get(first).set(second);
+            neighbours.get(second).set(first);
+        }
+    }
+
+    /**
+     * @param neighbours
+     * @param locals     the variables to color
+     * @return the color of each variable, starting at 0, or -1 for those that are not locals
+     */
+    private static List<Integer> color(List<BitSet> neighbours, BitSet locals) {
+        int size = neighbours.size();
+
+        var degrees = new int[size];
+        for (int i = locals.nextSetBit(0); i >= 0; i = locals.nextSetBit(i + 1)) {
+            degrees[i] = neighbours.get(i).cardinality();
+        }
+
+        // Simplify: the local with the fewest neighbours left goes first, and is colored last
+        var remaining = (BitSet) locals.clone();
+        var order = new ArrayList<Integer>(locals.cardinality());
+        while (!remaining.isEmpty()) {
+            int lowest = remaining.nextSetBit(0);
+            for (int i = remaining.nextSetBit(lowest + 1); i >= 0; i = remaining.nextSetBit(i + 1)) {
+                if (degrees[i] < degrees[lowest]) {
+                    lowest = i;
+                }
+            }
+
+            remaining.clear(lowest);
+            order.add(lowest);
+
+            var lowestNeighbours = neighbours.get(lowest);
+            for (int i = lowestNeighbours.nextSetBit(0); i >= 0; i = lowestNeighbours.nextSetBit(i + 1)) {
+                degrees[i]--;
+            }
+        }
+
+        // Select: the lowest color not taken by a neighbour already colored
+        var colors = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            colors.add(-1);
+        }
+
+        for (int i = order.size() - 1; i >= 0; i--) {
+            int variable = order.get(i);
+
+            var taken = new BitSet();
+            var variableNeighbours = neighbours.get(variable);
+            for (int j = variableNeighbours.nextSetBit(0); j >= 0; j = variableNeighbours.nextSetBit(j + 1)) {
+                if (colors.get(j) >= 0) {
+                    taken.set(colors.get(j));
+                }
+            }
+
+            colors.set(variable, taken.nextClearBit(0));
+        }
+
+        return colors;
+    }
+}
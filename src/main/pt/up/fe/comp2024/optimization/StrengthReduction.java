@@ -0,0 +1,415 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces operations by simpler ones with the same result.
+ * <p>
+ * In each loop, a multiplication of a variable that the loop only changes by adding a constant to it, by another
+ * constant, becomes a variable that starts with the product before the loop, and gets the constant times the step
+ * added to it right after the variable is.
+ * <p>
+ * Then, adding or subtracting 0, multiplying or dividing by 1, and and-ing with true or or-ing with false give the
+ * operand itself, and multiplying by 0, and-ing with false and or-ing with true give a constant. Negating a value
+ * negated earlier in the same block gives the value. Multiplying by a power of two becomes a left shift, and dividing
+ * by one a right shift of the dividend, plus one less than the divisor if the dividend is negative, so that it rounds
+ * towards zero as the division does.
+ */
+public class StrengthReduction {
+
+    /**
+     * @param classUnit
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        boolean changed = false;
+
+        for (var method : classUnit.getMethods()) {
+            if (method.getInstructions().isEmpty()) {
+                continue;
+            }
+
+            // The positions of the instructions change with each loop, so everything is computed again after it
+            while (reduceAnyLoop(method)) {
+                changed = true;
+            }
+
+            changed |= simplify(method);
+        }
+
+        return changed;
+    }
+
+    private boolean reduceAnyLoop(Method method) {
+        var dominators = new Dominators(method);
+        for (var loop : Loop.find(dominators, method.getInstructions().size())) {
+            if (loop.hasPreheader() && reduceInductions(method, loop)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if any multiplication of the loop became an addition
+     */
+    private boolean reduceInductions(Method method, Loop loop) {
+        var instructions = method.getInstructions();
+        var body = loop.getBody();
+
+        var assignments = new HashMap<String, Integer>();
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            if (instructions.get(i) instanceof AssignInstruction assign && nameOf(assign.getDest()) != null) {
+                assignments.merge(nameOf(assign.getDest()), 1, Integer::sum);
+            }
+        }
+
+        // The only assignment of each variable that the loop changes by a constant, and that constant
+        var increments = new HashMap<String, AssignInstruction>();
+        var steps = new HashMap<String, Integer>();
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            if (instructions.get(i) instanceof AssignInstruction assign && nameOf(assign.getDest()) != null
+                    && assignments.get(nameOf(assign.getDest())) == 1) {
+                var step = stepOf(assign);
+                if (step != null) {
+                    increments.put(nameOf(assign.getDest()), assign);
+                    steps.put(nameOf(assign.getDest()), step);
+                }
+            }
+        }
+
+        // The variable that holds each product, by the induction variable and the factor
+        var products = new LinkedHashMap<String, Operand>();
+        var factors = new HashMap<String, Integer>();
+        var inductions = new HashMap<String, Operand>();
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)
+                    || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                    || binaryOp.getOperation().getOpType() != OperationType.MUL
+                    || binaryOp.getOperation().getTypeInfo().getTypeOfElement() != ElementType.INT32) {
+                continue;
+            }
+
+            var induction = binaryOp.getLeftOperand();
+            var factor = intValue(binaryOp.getRightOperand());
+            if (factor == null) {
+                induction = binaryOp.getRightOperand();
+                factor = intValue(binaryOp.getLeftOperand());
+            }
+
+            // Multiplying by 0, 1 or -1 is simplified on its own
+            var name = nameOf(induction);
+            if (factor == null || Math.abs((long) factor) <= 1 || name == null || !increments.containsKey(name)) {
+                continue;
+            }
+
+            var key = name + "*" + factor;
+            var product = products.get(key);
+            if (product == null) {
+                product = newVariable(method, induction.getType());
+                products.put(key, product);
+                factors.put(key, factor);
+                inductions.put(key, (Operand) induction);
+            }
+
+            replacements.put(assign, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                    new SingleOpInstruction(copyOf(product))));
+        }
+
+        if (replacements.isEmpty()) {
+            return false;
+        }
+
+        var inLoop = loop.instructions(method);
+        var header = instructions.get(loop.getHeader());
+        var start = replacements.getOrDefault(header, header);
+
+        var initial = new ArrayList<Instruction>();
+        for (var product : products.entrySet()) {
+            var induction = inductions.get(product.getKey());
+            int factor = factors.get(product.getKey());
+            var type = product.getValue().getType();
+
+            initial.add(new AssignInstruction(product.getValue(), type, new BinaryOpInstruction(copyOf(induction),
+                    new Operation(OperationType.MUL, type), new LiteralElement(String.valueOf(factor), type))));
+        }
+
+        ControlFlow.replaceInstructions(method, replacements);
+
+        // Right after the induction variable changes, each of its products changes by as many times the factor
+        for (var product : products.entrySet()) {
+            var increment = increments.get(inductions.get(product.getKey()).getName());
+            int step = steps.get(inductions.get(product.getKey()).getName());
+            int factor = factors.get(product.getKey());
+            var type = product.getValue().getType();
+
+            var update = new AssignInstruction(product.getValue(), type, new BinaryOpInstruction(
+                    copyOf(product.getValue()), new Operation(OperationType.ADD, type),
+                    new LiteralElement(String.valueOf(step * factor), type)));
+            instructions.add(instructions.indexOf(increment) + 1, update);
+        }
+
+        Loop.insertBefore(method, inLoop, start, initial);
+
+        return true;
+    }
+
+    /**
+     * @return how much the assignment adds to its variable, or null if it does not add a constant to it
+     */
+    private static Integer stepOf(AssignInstruction assign) {
+        if (!(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                || binaryOp.getOperation().getTypeInfo().getTypeOfElement() != ElementType.INT32) {
+            return null;
+        }
+
+        var name = nameOf(assign.getDest());
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> name.equals(nameOf(left)) ? intValue(right)
+                    : name.equals(nameOf(right)) ? intValue(left) : null;
+            case SUB -> name.equals(nameOf(left)) && intValue(right) != null ? -intValue(right) : null;
+            default -> null;
+        };
+    }
+
+    private boolean simplify(Method method) {
+        var instructions = method.getInstructions();
+        var leaders = ControlFlow.leaders(method);
+        var replacements = new IdentityHashMap<Instruction, Instruction>();
+        var divisions = new ArrayList<AssignInstruction>();
+
+        // The value each variable is the negation of, in the current block
+        var negations = new HashMap<String, Element>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (leaders[i]) {
+                negations.clear();
+            }
+
+            if (!(instructions.get(i) instanceof AssignInstruction assign)) {
+                continue;
+            }
+
+            var rhs = simplify(assign.getRhs(), negations);
+            if (rhs != null) {
+                replacements.put(assign, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), rhs));
+            } else if (isDivisionByPowerOfTwo(assign.getRhs())) {
+                divisions.add(assign);
+            }
+
+            var name = nameOf(assign.getDest());
+            if (name != null) {
+                negations.remove(name);
+                negations.values().removeIf(value -> name.equals(nameOf(value)));
+
+                var value = rhs != null ? rhs : assign.getRhs();
+                if (value instanceof UnaryOpInstruction unaryOp && isNegation(unaryOp)
+                        && !(unaryOp.getOperand() instanceof ArrayOperand)
+                        && !name.equals(nameOf(unaryOp.getOperand()))) {
+                    negations.put(name, unaryOp.getOperand());
+                }
+            }
+        }
+
+        ControlFlow.replaceInstructions(method, replacements);
+
+        for (var division : divisions) {
+            expandDivision(method, division);
+        }
+
+        return !replacements.isEmpty() || !divisions.isEmpty();
+    }
+
+    /**
+     * @return a simpler instruction with the same value, or null if there is none
+     */
+    private static Instruction simplify(Instruction rhs, Map<String, Element> negations) {
+        if (rhs instanceof UnaryOpInstruction unaryOp && isNegation(unaryOp)) {
+            var negated = negations.get(nameOf(unaryOp.getOperand()));
+            return negated != null ? new SingleOpInstruction(negated) : null;
+        }
+
+        if (!(rhs instanceof BinaryOpInstruction binaryOp)) {
+            return null;
+        }
+
+        var type = binaryOp.getOperation().getTypeInfo();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+        var leftValue = intValue(left);
+        var rightValue = intValue(right);
+
+        // Array accesses are kept, since they can throw
+        if (left instanceof ArrayOperand || right instanceof ArrayOperand) {
+            return null;
+        }
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> isValue(rightValue, 0) ? single(left) : isValue(leftValue, 0) ? single(right) : null;
+            case SUB -> isValue(rightValue, 0) ? single(left) : null;
+            case MUL -> {
+                if (isValue(leftValue, 0) || isValue(rightValue, 0)) {
+                    yield single(new LiteralElement("0", type));
+                }
+                if (isValue(rightValue, 1) || isValue(leftValue, 1)) {
+                    yield single(isValue(rightValue, 1) ? left : right);
+                }
+
+                int shift = log2(rightValue);
+                var shifted = left;
+                if (shift <= 0) {
+                    shift = log2(leftValue);
+                    shifted = right;
+                }
+
+                yield shift > 0 ? new BinaryOpInstruction(shifted, new Operation(OperationType.SHL, type),
+                        new LiteralElement(String.valueOf(shift), type)) : null;
+            }
+            case DIV -> isValue(rightValue, 1) ? single(left) : null;
+            case ANDB -> {
+                if (isValue(leftValue, 0) || isValue(rightValue, 0)) {
+                    yield single(new LiteralElement("0", type));
+                }
+                yield isTrue(rightValue) ? single(left) : isTrue(leftValue) ? single(right) : null;
+            }
+            case ORB -> {
+                if (isTrue(leftValue) || isTrue(rightValue)) {
+                    yield single(new LiteralElement("1", type));
+                }
+                yield isValue(rightValue, 0) ? single(left) : isValue(leftValue, 0) ? single(right) : null;
+            }
+            default -> null;
+        };
+    }
+
+    private static boolean isDivisionByPowerOfTwo(Instruction rhs) {
+        return rhs instanceof BinaryOpInstruction binaryOp && binaryOp.getOperation().getOpType() == OperationType.DIV
+                && !(binaryOp.getLeftOperand() instanceof ArrayOperand)
+                && log2(intValue(binaryOp.getRightOperand())) > 0;
+    }
+
+    /**
+     * Replaces a division by 2^k by a right shift of k, after adding 2^k - 1 to the dividend if it is negative, which
+     * is the sign of the dividend shifted to the lowest k bits.
+     */
+    private static void expandDivision(Method method, AssignInstruction division) {
+        var binaryOp = (BinaryOpInstruction) division.getRhs();
+        var type = binaryOp.getOperation().getTypeInfo();
+        var dividend = binaryOp.getLeftOperand();
+        int shift = log2(intValue(binaryOp.getRightOperand()));
+
+        var expanded = new ArrayList<Instruction>();
+
+        var sign = dividend;
+        if (shift > 1) {
+            var extended = newVariable(method, type);
+            expanded.add(new AssignInstruction(extended, type, new BinaryOpInstruction(dividend,
+                    new Operation(OperationType.SHR, type), new LiteralElement("31", type))));
+            sign = copyOf(extended);
+        }
+
+        var bias = newVariable(method, type);
+        expanded.add(new AssignInstruction(bias, type, new BinaryOpInstruction(sign,
+                new Operation(OperationType.SHRR, type), new LiteralElement(String.valueOf(32 - shift), type))));
+
+        var biased = newVariable(method, type);
+        expanded.add(new AssignInstruction(biased, type, new BinaryOpInstruction(dividend,
+                new Operation(OperationType.ADD, type), copyOf(bias))));
+
+        expanded.add(new AssignInstruction(division.getDest(), division.getTypeOfAssign(), new BinaryOpInstruction(
+                copyOf(biased), new Operation(OperationType.SHR, type),
+                new LiteralElement(String.valueOf(shift), type))));
+
+        var instructions = method.getInstructions();
+        int position = instructions.indexOf(division);
+        instructions.remove(position);
+        instructions.addAll(position, expanded);
+
+        for (var label : method.getLabels().entrySet()) {
+            if (label.getValue() == division) {
+                label.setValue(expanded.get(0));
+            }
+        }
+    }
+
+    /**
+     * @return a local variable of the method that is not used yet
+     */
+    private static Operand newVariable(Method method, Type type) {
+        var varTable = method.getVarTable();
+
+        int register = varTable.values().stream()
+                .mapToInt(Descriptor::getVirtualReg)
+                .max().orElse(0) + 1;
+
+        var name = "tmp0";
+        for (int number = 1; varTable.containsKey(name); number++) {
+            name = "tmp" + number;
+        }
+
+        varTable.put(name, new Descriptor(VarScope.LOCAL, register, type));
+        return new Operand(name, type);
+    }
+
+    private static Operand copyOf(Operand operand) {
+        return new Operand(operand.getName(), operand.getType());
+    }
+
+    private static SingleOpInstruction single(Element element) {
+        return new SingleOpInstruction(element);
+    }
+
+    private static boolean isNegation(UnaryOpInstruction unaryOp) {
+        var opType = unaryOp.getOperation().getOpType();
+        return opType == OperationType.NOTB || opType == OperationType.NOT;
+    }
+
+    /**
+     * @return the name of the variable, or null if the element is not one
+     */
+    private static String nameOf(Element element) {
+        return element instanceof Operand operand && !(element instanceof ArrayOperand) ? operand.getName() : null;
+    }
+
+    /**
+     * @return the value of an int or boolean literal, or null if the element is not one
+     */
+    private static Integer intValue(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValue(Integer value, int expected) {
+        return value != null && value == expected;
+    }
+
+    private static boolean isTrue(Integer value) {
+        return value != null && value != 0;
+    }
+
+    /**
+     * @return k if the value is 2^k, or -1 if it is not a power of two
+     */
+    private static int log2(Integer value) {
+        return value != null && value > 0 && Integer.bitCount(value) == 1 ? Integer.numberOfTrailingZeros(value) : -1;
+    }
+}
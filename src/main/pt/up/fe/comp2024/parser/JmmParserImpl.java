@@ -1,15 +1,27 @@
 package pt.up.fe.comp2024.parser;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.ReportUtils;
 
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Copyright 2022 SPeCS.
@@ -26,6 +38,25 @@ import java.util.Map;
 
 public class JmmParserImpl implements JmmParser {
 
+    /**
+     * Lexer, token stream and parser kept by each thread when parser reuse is enabled.
+     * <p>
+     * All instances of the generated parser already share the same ATN and DFA cache (static fields), reusing the
+     * objects themselves avoids rebuilding the interpreters on every parse. The token stream is the exception: in this
+     * ANTLR version, setTokenSource() does not clear the end-of-file flag, so a fresh (and cheap) one is used per parse.
+     */
+    private static class ReusableParser {
+        private final pt.up.fe.comp2024.JavammLexer lex = new pt.up.fe.comp2024.JavammLexer(null);
+        private final pt.up.fe.comp2024.JavammParser parser = new pt.up.fe.comp2024.JavammParser(null);
+
+        private void reset(CharStream input) {
+            lex.setInputStream(input);
+            parser.setTokenStream(new CommonTokenStream(lex));
+        }
+    }
+
+    private static final ThreadLocal<ReusableParser> REUSABLE_PARSER = ThreadLocal.withInitial(ReusableParser::new);
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -33,10 +64,65 @@ public class JmmParserImpl implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        // Convert code string into a character stream
+        return parse(() -> new ANTLRInputStream(jmmCode), startingRule, config);
+    }
+
+    /**
+     * Parses code read from the given reader, without building an intermediate String.
+     *
+     * @param reader
+     * @param startingRule
+     * @param config
+     * @return
+     */
+    public JmmParserResult parse(Reader reader, String startingRule, Map<String, String> config) {
+        return parse(() -> new ANTLRInputStream(reader), startingRule, config);
+    }
+
+    public JmmParserResult parse(Reader reader, Map<String, String> config) {
+        return parse(reader, getDefaultRule(), config);
+    }
+
+    /**
+     * Parses the remaining characters of the given buffer. If the buffer is backed by an array starting at its current
+     * position, the array is used directly.
+     *
+     * @param jmmCode
+     * @param startingRule
+     * @param config
+     * @return
+     */
+    public JmmParserResult parse(CharBuffer jmmCode, String startingRule, Map<String, String> config) {
+        return parse(() -> new ANTLRInputStream(toArray(jmmCode), jmmCode.remaining()), startingRule, config);
+    }
+
+    public JmmParserResult parse(CharBuffer jmmCode, Map<String, String> config) {
+        return parse(jmmCode, getDefaultRule(), config);
+    }
+
+    private static char[] toArray(CharBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0) {
+            return buffer.array();
+        }
+
+        var chars = new char[buffer.remaining()];
+        buffer.duplicate().get(chars);
+        return chars;
+    }
+
+    private JmmParserResult parse(Callable<CharStream> inputSupplier, String startingRule, Map<String, String> config) {
 
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
+            var input = inputSupplier.call();
+
+            if (CompilerConfig.getReuseParser(config)) {
+                var reusable = REUSABLE_PARSER.get();
+                reusable.reset(input);
+
+                return parse(reusable.lex, reusable.parser, startingRule, config);
+            }
+
             // Transform characters into tokens using the lexer
             var lex = new pt.up.fe.comp2024.JavammLexer(input);
             // Wrap lexer around a token stream
@@ -44,13 +130,53 @@ public class JmmParserImpl implements JmmParser {
             // Transforms tokens into a parse tree
             var parser = new pt.up.fe.comp2024.JavammParser(tokens);
 
-
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            return parse(lex, parser, startingRule, config);
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
         }
     }
+
+    private JmmParserResult parse(Lexer lex, Parser parser, String startingRule, Map<String, String> config) {
+
+        if (CompilerConfig.getParseMode(config).equals(CompilerConfig.PARSE_MODE_SLL)) {
+            // First stage: SLL prediction, giving up on the first syntax error
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+
+            try {
+                var result = AntlrParser.parse(lex, parser, startingRule, config);
+
+                if (!ReportUtils.anyError(result.getReports())) {
+                    return withParseMode(result, PredictionMode.SLL);
+                }
+            } catch (RuntimeException e) {
+                // SLL bailed out, either the code has a syntax error or it needs full LL prediction
+            }
+
+            // Second stage: rewind the input and parse again with full LL, which reports errors as usual
+            lex.reset();
+            parser.setTokenStream(new CommonTokenStream(lex));
+        }
+
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+
+        // Convert ANTLR CST to JmmNode AST
+        var result = AntlrParser.parse(lex, parser, startingRule, config);
+
+        if (CompilerConfig.getParseMode(config).equals(CompilerConfig.PARSE_MODE_SLL)) {
+            return withParseMode(result, PredictionMode.LL);
+        }
+
+        return result;
+    }
+
+    private static JmmParserResult withParseMode(JmmParserResult result, PredictionMode mode) {
+        var reports = new ArrayList<>(result.getReports());
+        reports.add(Report.newLog(Stage.SYNTATIC, -1, -1, "Parsed with " + mode + " prediction", null));
+
+        return new JmmParserResult(result.getRootNode(), reports, result.getConfig());
+    }
 }
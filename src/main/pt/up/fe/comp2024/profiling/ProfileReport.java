@@ -0,0 +1,97 @@
+package pt.up.fe.comp2024.profiling;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the stage measurements of one or more compilations and writes them as JSON or CSV.
+ * <p>
+ * JSON has the form {@code {"compilations": [{"name": ..., "stages": [{"stage": ..., "wallNanos": ...}]}]}}. CSV has a
+ * header line and one line per stage of each compilation.
+ */
+public class ProfileReport {
+
+    private static final String CSV_HEADER = "name,stage,wallNanos,cpuNanos,allocatedBytes,outputSize";
+
+    private final List<String> names;
+    private final List<List<StageMeasurement>> compilations;
+
+    public ProfileReport() {
+        this.names = new ArrayList<>();
+        this.compilations = new ArrayList<>();
+    }
+
+    public void add(String name, List<StageMeasurement> measurements) {
+        names.add(name);
+        compilations.add(measurements);
+    }
+
+    public String toJson() {
+        var compilationsArray = new JsonArray();
+
+        for (int i = 0; i < names.size(); i++) {
+            var stages = new JsonArray();
+            for (var measurement : compilations.get(i)) {
+                var stage = new JsonObject();
+                stage.addProperty("stage", measurement.getStage());
+                stage.addProperty("wallNanos", measurement.getWallNanos());
+                stage.addProperty("cpuNanos", measurement.getCpuNanos());
+                stage.addProperty("allocatedBytes", measurement.getAllocatedBytes());
+                stage.addProperty("outputSize", measurement.getOutputSize());
+                stages.add(stage);
+            }
+
+            var compilation = new JsonObject();
+            compilation.addProperty("name", names.get(i));
+            compilation.add("stages", stages);
+            compilationsArray.add(compilation);
+        }
+
+        var report = new JsonObject();
+        report.add("compilations", compilationsArray);
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(report);
+    }
+
+    public String toCsv() {
+        var csv = new StringBuilder();
+        csv.append(CSV_HEADER).append("\n");
+
+        for (int i = 0; i < names.size(); i++) {
+            for (var measurement : compilations.get(i)) {
+                csv.append(escapeCsv(names.get(i))).append(",")
+                        .append(measurement.getStage()).append(",")
+                        .append(measurement.getWallNanos()).append(",")
+                        .append(measurement.getCpuNanos()).append(",")
+                        .append(measurement.getAllocatedBytes()).append(",")
+                        .append(measurement.getOutputSize()).append("\n");
+            }
+        }
+
+        return csv.toString();
+    }
+
+    /**
+     * Writes the report to the given file, as CSV if its name ends in '.csv' and as JSON otherwise.
+     *
+     * @param file
+     */
+    public void write(File file) {
+        var contents = file.getName().toLowerCase().endsWith(".csv") ? toCsv() : toJson();
+        SpecsIo.write(file, contents);
+    }
+
+    private static String escapeCsv(String value) {
+        if (!value.contains(",") && !value.contains("\"") && !value.contains("\n")) {
+            return value;
+        }
+
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,50 @@
+package pt.up.fe.comp2024.profiling;
+
+/**
+ * Resources used by a single run of a compiler stage.
+ */
+public class StageMeasurement {
+
+    private final String stage;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final long outputSize;
+
+    public StageMeasurement(String stage, long wallNanos, long cpuNanos, long allocatedBytes, long outputSize) {
+        this.stage = stage;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.outputSize = outputSize;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return CPU time of the thread that ran the stage, or -1 if the JVM does not support it
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * @return bytes allocated by the thread that ran the stage, or -1 if the JVM does not support it
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return size of what the stage produced, see {@link StageProfiler} for the unit of each stage
+     */
+    public long getOutputSize() {
+        return outputSize;
+    }
+}
@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures wall time, CPU time and allocated bytes of each stage of a compilation.
+ * <p>
+ * CPU time and allocations are read from the {@link java.lang.management.ThreadMXBean} of the current thread, so a
+ * profiler must only be used by the thread running the compilation. The output size depends on the stage: AST nodes
+ * for parsing, symbols for the symbol table, reports for analysis passes and characters for generated code.
+ */
+public class StageProfiler {
+
+    private static final StageProfiler DISABLED = new StageProfiler(false);
+
+    private final boolean enabled;
+    private final List<StageMeasurement> measurements;
+
+    public StageProfiler() {
+        this(true);
+    }
+
+    private StageProfiler(boolean enabled) {
+        this.enabled = enabled;
+        this.measurements = new ArrayList<>();
+    }
+
+    /**
+     * @return a profiler that runs stages without measuring them
+     */
+    public static StageProfiler disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs a stage, recording its measurements if the profiler is enabled.
+     *
+     * @param stage      name of the stage
+     * @param action     the stage itself
+     * @param outputSize computes the size of the result, outside of the measured interval
+     * @return the result of the stage
+     */
+    public <T> T measure(String stage, Supplier<T> action, ToLongFunction<T> outputSize) {
+        if (!enabled) {
+            return action.get();
+        }
+
+        long wallStart = System.nanoTime();
+        long cpuStart = getCpuNanos();
+        long allocatedStart = getAllocatedBytes();
+
+        T result = action.get();
+
+        long allocatedEnd = getAllocatedBytes();
+        long cpuEnd = getCpuNanos();
+        long wallEnd = System.nanoTime();
+
+        measurements.add(new StageMeasurement(stage,
+                wallEnd - wallStart,
+                cpuStart < 0 ? -1 : cpuEnd - cpuStart,
+                allocatedStart < 0 ? -1 : allocatedEnd - allocatedStart,
+                outputSize.applyAsLong(result)));
+
+        return result;
+    }
+
+    public List<StageMeasurement> getMeasurements() {
+        return Collections.unmodifiableList(measurements);
+    }
+
+    private static long getCpuNanos() {
+        var threads = ManagementFactory.getThreadMXBean();
+
+        if (!threads.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+
+        return threads.getCurrentThreadCpuTime();
+    }
+
+    private static long getAllocatedBytes() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -7,8 +7,10 @@ import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class JmmSymbolTable implements SymbolTable {
 
@@ -23,6 +25,11 @@ public class JmmSymbolTable implements SymbolTable {
 
     private final List<String> imports;
 
+    // Indexes used by resolve(), built once from the lists above
+    private final Map<String, Map<String, ResolvedSymbol>> methodScopes;
+    private final Map<String, ResolvedSymbol> fieldScope;
+    private final Map<String, String> importedClasses;
+
     public JmmSymbolTable(String className,
                           List<String> methods,
                           Map<String, Type> returnTypes,
@@ -39,6 +46,106 @@ public class JmmSymbolTable implements SymbolTable {
         this.fields = fields;
         this.superClass = superClass;
         this.imports = imports;
+
+        this.methodScopes = buildMethodScopes(params, locals);
+        this.fieldScope = buildScope(fields, ResolvedSymbol.Scope.FIELD, new HashMap<>());
+        this.importedClasses = buildImportedClasses(imports);
+    }
+
+    /**
+     * Gives the {@link #resolve} and {@link #isImported} lookups to any symbol table. The tables built by
+     * {@link JmmSymbolTableBuilder} are returned as they are, others are copied through the {@link SymbolTable}
+     * interface.
+     *
+     * @param table
+     * @return the table itself, or a copy of it
+     */
+    public static JmmSymbolTable of(SymbolTable table) {
+        if (table instanceof JmmSymbolTable symbols) {
+            return symbols;
+        }
+
+        Map<String, Type> returnTypes = new HashMap<>();
+        Map<String, List<Symbol>> params = new HashMap<>();
+        Map<String, List<Symbol>> locals = new HashMap<>();
+
+        for (var method : table.getMethods()) {
+            returnTypes.put(method, table.getReturnType(method));
+            params.put(method, table.getParameters(method));
+            locals.put(method, table.getLocalVariables(method));
+        }
+
+        return new JmmSymbolTable(table.getClassName(), table.getMethods(), returnTypes, params, locals,
+                table.getFields(), table.getSuper(), table.getImports());
+    }
+
+    private static Map<String, Map<String, ResolvedSymbol>> buildMethodScopes(Map<String, List<Symbol>> params,
+                                                                               Map<String, List<Symbol>> locals) {
+        Map<String, Map<String, ResolvedSymbol>> scopes = new HashMap<>();
+
+        for (var method : params.keySet()) {
+            scopes.put(method, buildScope(params.get(method), ResolvedSymbol.Scope.PARAM, new HashMap<>()));
+        }
+
+        // Locals are added last, so they hide parameters with the same name
+        for (var method : locals.keySet()) {
+            buildScope(locals.get(method), ResolvedSymbol.Scope.LOCAL, scopes.computeIfAbsent(method, m -> new HashMap<>()));
+        }
+
+        return scopes;
+    }
+
+    private static Map<String, ResolvedSymbol> buildScope(List<Symbol> symbols, ResolvedSymbol.Scope scope,
+                                                          Map<String, ResolvedSymbol> index) {
+        for (var symbol : symbols) {
+            index.put(symbol.getName(), new ResolvedSymbol(symbol, scope));
+        }
+
+        return index;
+    }
+
+    /**
+     * Maps the name of each imported class to the full import. Imports are kept as the string of the list of their
+     * parts, e.g. "[pt, up, Foo]".
+     */
+    private static Map<String, String> buildImportedClasses(List<String> imports) {
+        Map<String, String> importedClasses = new HashMap<>();
+
+        for (var importString : imports) {
+            var parts = importString.substring(1, importString.length() - 1).split(",");
+            var className = parts[parts.length - 1].trim();
+            importedClasses.put(className, importString);
+        }
+
+        return importedClasses;
+    }
+
+    /**
+     * Finds the declaration an identifier refers to inside a method, looking at locals, then parameters, then fields.
+     *
+     * @param methodSignature
+     * @param name
+     * @return the symbol and the scope where it was found, or empty if the name is not declared
+     */
+    public Optional<ResolvedSymbol> resolve(String methodSignature, String name) {
+        var methodScope = methodScopes.get(methodSignature);
+
+        if (methodScope != null) {
+            var symbol = methodScope.get(name);
+            if (symbol != null) {
+                return Optional.of(symbol);
+            }
+        }
+
+        return Optional.ofNullable(fieldScope.get(name));
+    }
+
+    /**
+     * @param className
+     * @return true if a class with the given name was imported
+     */
+    public boolean isImported(String className) {
+        return importedClasses.containsKey(className);
     }
 
     @Override
@@ -0,0 +1,44 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * A symbol found by {@link JmmSymbolTable#resolve(String, String)}, together with the scope where it was declared.
+ */
+public class ResolvedSymbol {
+
+    public enum Scope {
+        LOCAL,
+        PARAM,
+        FIELD
+    }
+
+    private final Symbol symbol;
+    private final Scope scope;
+
+    public ResolvedSymbol(Symbol symbol, Scope scope) {
+        this.symbol = symbol;
+        this.scope = scope;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public String getName() {
+        return symbol.getName();
+    }
+
+    public Type getType() {
+        return symbol.getType();
+    }
+
+    public boolean isField() {
+        return scope == Scope.FIELD;
+    }
+}
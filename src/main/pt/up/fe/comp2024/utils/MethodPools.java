@@ -0,0 +1,34 @@
+package pt.up.fe.comp2024.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * The thread pools where the methods of a class are compiled in parallel.
+ * <p>
+ * Each stage gets a pool of its own, shut down once the stage is done, so that a long-running compiler, such as the
+ * daemon, does not keep a pool for each parallelism it was asked for.
+ */
+public class MethodPools {
+
+    /**
+     * Runs a stage with a pool of the given parallelism, and shuts the pool down afterwards.
+     *
+     * @param parallelism how many methods to compile at the same time, as given by
+     *                    {@link pt.up.fe.comp2024.CompilerConfig#getMethodParallelism}
+     * @param stage       the stage, given the pool, or null if methods should be compiled one after another
+     * @return the result of the stage
+     */
+    public static <T> T run(int parallelism, Function<ForkJoinPool, T> stage) {
+        if (parallelism <= 1) {
+            return stage.apply(null);
+        }
+
+        var pool = new ForkJoinPool(parallelism);
+        try {
+            return stage.apply(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package pt.up.fe.comp2024.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid Java-- programs of a configurable size and shape, to see how each stage scales with its input.
+ * <p>
+ * The generated class has a number of methods {@code int methodN(int a, int b)}, each declaring int, boolean and int
+ * array locals, and a body made of assignments, array stores, if/else, bounded while loops, calls to earlier methods
+ * and returns. Expressions are built from the binary operators, array accesses, lengths and literals of the grammar,
+ * with nesting up to the given depth. Parentheses and negation are left out, since OLLIR generation does not support
+ * them yet. Calls only go to methods declared before, and loops always end, so the programs can also be run.
+ * <p>
+ * Generation is deterministic for a given seed and shape.
+ */
+public class ProgramGenerator {
+
+    private static final String CLASS_NAME = "Generated";
+
+    private int numMethods = 10;
+    private int numStatements = 10;
+    private int numLocals = 4;
+    private int expressionDepth = 3;
+    private int controlDepth = 2;
+    private long seed = 0;
+
+    private Random random;
+    private StringBuilder code;
+
+    // Locals of the method being generated, by type
+    private List<String> intVars;
+    private List<String> boolVars;
+    private List<String> arrayVars;
+    private int loopCounter;
+
+    public ProgramGenerator setMethods(int numMethods) {
+        this.numMethods = numMethods;
+        return this;
+    }
+
+    /**
+     * @param numStatements top-level statements in each method, besides the initialization of locals and the return
+     */
+    public ProgramGenerator setStatements(int numStatements) {
+        this.numStatements = numStatements;
+        return this;
+    }
+
+    /**
+     * @param numLocals locals declared in each method, split between int, boolean and int[]
+     */
+    public ProgramGenerator setLocals(int numLocals) {
+        this.numLocals = Math.max(numLocals, 3);
+        return this;
+    }
+
+    /**
+     * @param expressionDepth maximum nesting of operators in an expression
+     */
+    public ProgramGenerator setExpressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+        return this;
+    }
+
+    /**
+     * @param controlDepth maximum nesting of if/else and while statements
+     */
+    public ProgramGenerator setControlDepth(int controlDepth) {
+        this.controlDepth = controlDepth;
+        return this;
+    }
+
+    public ProgramGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    public String generate() {
+        random = new Random(seed);
+        code = new StringBuilder();
+
+        code.append("import io;\n\n");
+        code.append("class ").append(CLASS_NAME).append(" {\n");
+        code.append(indent(1)).append("int total;\n\n");
+
+        for (int i = 0; i < numMethods; i++) {
+            generateMethod(i);
+        }
+
+        code.append(indent(1)).append("public static void main(String[] args) {\n");
+        code.append(indent(2)).append(CLASS_NAME).append(" g;\n");
+        code.append(indent(2)).append("g = new ").append(CLASS_NAME).append("();\n");
+        if (numMethods > 0) {
+            code.append(indent(2)).append("io.println(g.method").append(numMethods - 1).append("(1, 2));\n");
+        }
+        code.append(indent(1)).append("}\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    private void generateMethod(int index) {
+        intVars = new ArrayList<>(List.of("a", "b"));
+        boolVars = new ArrayList<>();
+        arrayVars = new ArrayList<>();
+        loopCounter = 0;
+
+        code.append(indent(1)).append("public int method").append(index).append("(int a, int b) {\n");
+
+        // Locals are declared and initialized before any other statement
+        var declarations = new StringBuilder();
+        var initializations = new StringBuilder();
+        for (int i = 0; i < numLocals; i++) {
+            switch (i % 3) {
+                case 0 -> {
+                    var name = "i" + i;
+                    declarations.append(indent(2)).append("int ").append(name).append(";\n");
+                    initializations.append(indent(2)).append(name).append(" = ").append(random.nextInt(100)).append(";\n");
+                    intVars.add(name);
+                }
+                case 1 -> {
+                    var name = "c" + i;
+                    declarations.append(indent(2)).append("boolean ").append(name).append(";\n");
+                    initializations.append(indent(2)).append(name).append(" = ").append(random.nextBoolean()).append(";\n");
+                    boolVars.add(name);
+                }
+                default -> {
+                    var name = "v" + i;
+                    declarations.append(indent(2)).append("int[] ").append(name).append(";\n");
+                    initializations.append(indent(2)).append(name).append(" = new int[").append(1 + random.nextInt(10)).append("];\n");
+                    arrayVars.add(name);
+                }
+            }
+        }
+
+        // Loop counters are declared up front, one per loop
+        var body = new StringBuilder();
+        var previous = code;
+        code = body;
+        for (int i = 0; i < numStatements; i++) {
+            generateStatement(2, controlDepth, index);
+        }
+        code = previous;
+
+        code.append(declarations);
+        for (int i = 0; i < loopCounter; i++) {
+            code.append(indent(2)).append("int k").append(i).append(";\n");
+        }
+        code.append(initializations);
+        code.append(body);
+        code.append(indent(2)).append("return ").append(generateInt(expressionDepth)).append(";\n");
+        code.append(indent(1)).append("}\n\n");
+    }
+
+    private void generateStatement(int level, int controlDepth, int methodIndex) {
+        int choice = random.nextInt(controlDepth > 0 ? 10 : 8);
+
+        switch (choice) {
+            case 0, 1, 2 -> {
+                var name = pick(intVars);
+                code.append(indent(level)).append(name).append(" = ").append(generateInt(expressionDepth)).append(";\n");
+            }
+            case 3 -> {
+                if (boolVars.isEmpty()) {
+                    generateStatement(level, controlDepth, methodIndex);
+                    return;
+                }
+                var name = pick(boolVars);
+                code.append(indent(level)).append(name).append(" = ").append(generateBool(expressionDepth)).append(";\n");
+            }
+            case 4 -> {
+                if (arrayVars.isEmpty()) {
+                    generateStatement(level, controlDepth, methodIndex);
+                    return;
+                }
+                // Index is always 0, which every array has
+                code.append(indent(level)).append(pick(arrayVars)).append("[0] = ").append(generateInt(expressionDepth)).append(";\n");
+            }
+            case 5 -> {
+                if (methodIndex == 0) {
+                    generateStatement(level, controlDepth, methodIndex);
+                    return;
+                }
+                var callee = random.nextInt(methodIndex);
+                code.append(indent(level)).append(pick(intVars)).append(" = this.method").append(callee).append("(")
+                        .append(generateInt(1)).append(", ").append(generateInt(1)).append(");\n");
+            }
+            case 6 -> code.append(indent(level)).append("total = ").append(generateInt(expressionDepth)).append(";\n");
+            case 7 -> code.append(indent(level)).append("io.println(").append(generateInt(expressionDepth)).append(");\n");
+            case 8 -> {
+                code.append(indent(level)).append("if (").append(generateBool(expressionDepth)).append(") {\n");
+                generateStatement(level + 1, controlDepth - 1, methodIndex);
+                code.append(indent(level)).append("} else {\n");
+                generateStatement(level + 1, controlDepth - 1, methodIndex);
+                code.append(indent(level)).append("}\n");
+            }
+            default -> {
+                var counter = "k" + loopCounter++;
+                code.append(indent(level)).append(counter).append(" = 0;\n");
+                code.append(indent(level)).append("while (").append(counter).append(" < ").append(1 + random.nextInt(10))
+                        .append(") {\n");
+                generateStatement(level + 1, controlDepth - 1, methodIndex);
+                code.append(indent(level + 1)).append(counter).append(" = ").append(counter).append(" + 1;\n");
+                code.append(indent(level)).append("}\n");
+            }
+        }
+    }
+
+    /**
+     * Builds an int expression as a chain of operators, so the size grows linearly with depth. Parentheses are not
+     * used, the nesting of the tree comes from precedence and left associativity.
+     */
+    private String generateInt(int depth) {
+        if (depth <= 0) {
+            return intLeaf();
+        }
+
+        return switch (random.nextInt(5)) {
+            case 0 -> generateInt(depth - 1) + " + " + intLeaf();
+            case 1 -> generateInt(depth - 1) + " - " + intLeaf();
+            case 2 -> generateInt(depth - 1) + " * " + intLeaf();
+            // Divisor is never zero
+            case 3 -> generateInt(depth - 1) + " / " + (1 + random.nextInt(9));
+            default -> intLeaf();
+        };
+    }
+
+    private String generateBool(int depth) {
+        if (depth <= 0) {
+            return boolLeaf();
+        }
+
+        return switch (random.nextInt(3)) {
+            case 0 -> generateBool(depth - 1) + " && " + boolLeaf();
+            case 1 -> generateInt(depth - 1) + " < " + intLeaf();
+            default -> boolLeaf();
+        };
+    }
+
+    private String intLeaf() {
+        return switch (random.nextInt(5)) {
+            case 0 -> Integer.toString(random.nextInt(100));
+            case 1 -> arrayVars.isEmpty() ? pick(intVars) : pick(arrayVars) + ".length";
+            case 2 -> arrayVars.isEmpty() ? pick(intVars) : pick(arrayVars) + "[0]";
+            default -> pick(intVars);
+        };
+    }
+
+    private String boolLeaf() {
+        if (boolVars.isEmpty() || random.nextInt(4) == 0) {
+            return Boolean.toString(random.nextBoolean());
+        }
+
+        return pick(boolVars);
+    }
+
+    private String pick(List<String> vars) {
+        return vars.get(random.nextInt(vars.size()));
+    }
+
+    private static String indent(int level) {
+        return "    ".repeat(level);
+    }
+}
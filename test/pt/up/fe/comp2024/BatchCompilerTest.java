@@ -0,0 +1,33 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchCompilerTest {
+
+    @Test
+    public void reportsStackOverflows() {
+        // The analysis recurses once per operation, so this overflows the stack
+        var code = "class Deep { public static void main(String[] args) { int a; a = "
+                + String.join(" + ", Collections.nCopies(50000, "1")) + "; } }";
+        var inputFile = new File(SpecsIo.getTempFolder("batch"), "Deep.jmm");
+        SpecsIo.write(inputFile, code);
+
+        var results = new BatchCompiler(Map.of()).compile(List.of(inputFile));
+
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).isSuccess());
+
+        var report = results.get(0).getReports().get(0);
+        assertEquals(Stage.OTHER, report.getStage());
+        assertTrue(report.getException().orElseThrow().getCause() instanceof StackOverflowError);
+    }
+}
@@ -0,0 +1,92 @@
+package pt.up.fe.comp2024;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompileDaemonTest {
+
+    private static JsonObject handle(String request) {
+        return JsonParser.parseString(new CompileDaemon(Map.of()).handle(request)).getAsJsonObject();
+    }
+
+    @Test
+    public void compilesRequests() {
+        var response = handle("""
+                {"name": "Foo.jmm", "source": "class Foo { public static void main(String[] args) { } }",
+                 "config": {"optimize": true}}""".replace("\n", ""));
+
+        assertTrue(response.get("success").getAsBoolean());
+        assertEquals("Foo.jmm", response.get("name").getAsString());
+        assertTrue(response.get("jasmin").getAsString().contains(".class public Foo"));
+    }
+
+    @Test
+    public void answersRequestsOfTheWrongType() {
+        var requests = List.of("[]", "{}", "{\"source\": null}", "{\"source\": {}}", "{\"source\": 1}",
+                "{\"source\": \"\", \"name\": []}", "{\"source\": \"\", \"config\": []}",
+                "{\"source\": \"\", \"config\": {\"optimize\": null}}",
+                "{\"source\": \"\", \"config\": {\"threads\": \"0\"}}",
+                "{\"source\": \"\", \"config\": {\"parallelMethods\": \"0\"}}");
+
+        for (var request : requests) {
+            var response = handle(request);
+
+            assertFalse(request, response.get("success").getAsBoolean());
+            assertTrue(request, response.has("error"));
+        }
+    }
+
+    @Test
+    public void idleClientsDoNotBlockOthers() throws IOException, InterruptedException {
+        // A single compile thread, which the idle client must not keep
+        var daemon = new CompileDaemon(Map.of("threads", "1"));
+
+        try (var server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var daemonThread = new Thread(() -> {
+                try {
+                    daemon.run(server);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            daemonThread.start();
+
+            try (var idle = new Socket(server.getInetAddress(), server.getLocalPort());
+                 var client = new Socket(server.getInetAddress(), server.getLocalPort())) {
+
+                // Fails instead of waiting for the idle client to go away
+                client.setSoTimeout(30_000);
+
+                Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8);
+                var reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+
+                for (int i = 0; i < 2; i++) {
+                    writer.write("{\"source\": \"class Foo { public static void main(String[] args) { } }\"}\n");
+                    writer.flush();
+
+                    var response = JsonParser.parseString(reader.readLine()).getAsJsonObject();
+                    assertTrue(response.get("success").getAsBoolean());
+                }
+            }
+
+            server.close();
+            daemonThread.join(30_000);
+            assertFalse(daemonThread.isAlive());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompilerConfigTest {
+
+    private static void assertInvalid(String... args) {
+        try {
+            CompilerConfig.parseArgs(args);
+            fail("Expected " + String.join(" ", args) + " to be rejected");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void verifiesValuesInEveryMode() {
+        var inputFile = "-i=test/pt/up/fe/comp/cp2/apps/HelloWorld.jmm";
+        var batchInput = "-b=test/pt/up/fe/comp/cp2/apps";
+        var daemonPort = "-s=0";
+
+        for (var mode : new String[]{inputFile, batchInput, daemonPort}) {
+            assertInvalid(mode, "-t=0");
+            assertInvalid(mode, "-j=0");
+            assertInvalid(mode, "-m=LR");
+            assertInvalid(mode, "-c=llvm");
+            assertInvalid(mode, "-n=-1");
+            assertInvalid(mode, "-r=x");
+
+            CompilerConfig.parseArgs(new String[]{mode, "-t=2", "-j=2", "-m=SLL", "-c=class", "-n=0", "-r=0"});
+        }
+    }
+
+    @Test
+    public void rejectsNumericOptionsWithoutValue() {
+        var inputFile = "-i=test/pt/up/fe/comp/cp2/apps/HelloWorld.jmm";
+        var options = new String[][]{{"-s"}, {inputFile, "-t"}, {inputFile, "-n"}, {inputFile, "-r"},
+                {inputFile, "-t=x"}, {"-s=x"}};
+
+        for (var args : options) {
+            var option = args[args.length - 1].substring(0, 2);
+
+            try {
+                CompilerConfig.parseArgs(args);
+                fail("Expected " + String.join(" ", args) + " to be rejected");
+            } catch (NumberFormatException e) {
+                fail("Expected " + String.join(" ", args) + " to be rejected naming the option, got " + e);
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("'" + option + "'"));
+            }
+        }
+    }
+}
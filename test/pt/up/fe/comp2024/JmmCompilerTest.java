@@ -0,0 +1,106 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class JmmCompilerTest {
+
+    @Test
+    public void profilesSyntaxErrors() {
+        var result = new JmmCompiler().compile("Broken", "class Broken { int }", Map.of("profile", "true"));
+
+        assertFalse(result.isSuccess());
+        assertFalse(result.getReports().isEmpty());
+        for (var report : result.getReports()) {
+            assertEquals(Stage.SYNTATIC, report.getStage());
+        }
+
+        // The parse is still measured, with no nodes
+        var parse = result.getMeasurements().get(0);
+        assertEquals("parse", parse.getStage());
+        assertEquals(0, parse.getOutputSize());
+    }
+
+    private static final String CODE = """
+            class Foo {
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    /**
+     * @return how many times the log of the SLL parse is in the reports
+     */
+    private static long countParseLogs(CompilationResult result) {
+        return result.getReports().stream()
+                .map(Report::getMessage)
+                .filter(message -> message.startsWith("Parsed with"))
+                .count();
+    }
+
+    @Test
+    public void keepsTheReportsOfTheDirectJasminPath() {
+        var result = new JmmCompiler().compile("Foo", CODE, Map.of("parseMode", "SLL"));
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getOllirResult().isEmpty());
+        assertEquals(1, countParseLogs(result));
+    }
+
+    @Test
+    public void keepsTheReportsOfTheDirectClassFilePath() {
+        var result = new JmmCompiler().compile("Foo", CODE, Map.of("parseMode", "SLL", "backend", "class"));
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getClassFileResult().isPresent());
+        assertEquals(1, countParseLogs(result));
+    }
+
+    private static Optional<String> getOllirCode(String name, String code, String parallelism) {
+        var config = Map.of("ollirCode", "true", "parallelMethods", parallelism);
+        var result = new JmmCompiler().compile(name, code, config);
+
+        return result.getOllirResult().map(OllirResult::getOllirCode);
+    }
+
+    @Test
+    public void generatesTheSameOllirInParallel() throws IOException {
+        var fixtures = new ArrayList<Path>();
+        for (var dir : List.of("test/pt/up/fe/comp/cp2/ollir", "test/pt/up/fe/comp/cpf/3_ollir")) {
+            try (Stream<Path> files = Files.walk(Path.of(dir))) {
+                files.filter(file -> file.toString().endsWith(".jmm")).sorted().forEach(fixtures::add);
+            }
+        }
+
+        int compared = 0;
+        for (var fixture : fixtures) {
+            var code = SpecsIo.read(fixture.toFile());
+            var sequential = getOllirCode(fixture.toString(), code, "1");
+
+            // '-j' alone uses all processors, which may be a single one, so a fixed parallelism is also compared
+            for (var parallelism : List.of("true", "4")) {
+                var parallel = getOllirCode(fixture.toString(), code, parallelism);
+
+                assertEquals(fixture + " with -j=" + parallelism, sequential, parallel);
+            }
+
+            compared += sequential.isPresent() ? 1 : 0;
+        }
+
+        assertTrue(compared > 10);
+    }
+}
@@ -0,0 +1,47 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+
+import static org.junit.Assert.*;
+
+public class ExprTypeTest {
+
+    private static final String CODE = """
+            class Foo {
+                int sum(int a, int b) {
+                    return a + b;
+                }
+            }
+            """;
+
+    private static JmmNode getSum(JmmNode root) {
+        return root.getDescendants("BinaryOp").get(0);
+    }
+
+    @Test
+    public void storesTypesDuringAnalysis() {
+        var semantics = TestUtils.analyse(CODE);
+        TestUtils.noErrors(semantics);
+
+        var sum = getSum(semantics.getRootNode());
+        assertEquals(new Type("int", false), sum.getObject("exprType"));
+        assertEquals(new Type("int", false), sum.getJmmChild(0).getObject("exprType"));
+    }
+
+    @Test
+    public void generatesOllirFromStoredTypes() {
+        var semantics = TestUtils.analyse(CODE);
+        TestUtils.noErrors(semantics);
+
+        // A type the OLLIR generator would not compute, to show it reads the stored one
+        TypeUtils.setExprType(getSum(semantics.getRootNode()), new Type("boolean", false));
+        var ollirCode = new JmmOptimizationImpl().toOllir(semantics).getOllirCode();
+
+        assertTrue(ollirCode, ollirCode.contains("tmp0.bool :=.bool a.i32 +.bool b.i32;"));
+    }
+}
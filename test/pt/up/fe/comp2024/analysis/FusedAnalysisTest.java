@@ -0,0 +1,58 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FusedAnalysisTest {
+
+    private static List<Path> fixtures() throws IOException {
+        var fixtures = new ArrayList<Path>();
+
+        for (var dir : List.of("test/pt/up/fe/comp/cp2/semanticanalysis",
+                "test/pt/up/fe/comp/cpf/2_semantic_analysis")) {
+            try (Stream<Path> files = Files.walk(Path.of(dir))) {
+                files.filter(file -> file.toString().endsWith(".jmm")).sorted().forEach(fixtures::add);
+            }
+        }
+
+        return fixtures;
+    }
+
+    /**
+     * @return the reports of the analysis, sorted, since the fused pass can find the errors in another order
+     */
+    private static List<String> analyse(String code, boolean fused) {
+        return TestUtils.analyse(code, Map.of("fusedAnalysis", String.valueOf(fused))).getReports().stream()
+                .map(Report::toString)
+                .sorted()
+                .toList();
+    }
+
+    @Test
+    public void reportsLikeTheSeparatePasses() throws IOException {
+        int failing = 0;
+
+        for (var fixture : fixtures()) {
+            var code = SpecsIo.read(fixture.toFile());
+            var reports = analyse(code, false);
+
+            assertEquals(fixture.toString(), reports, analyse(code, true));
+            failing += reports.isEmpty() ? 0 : 1;
+        }
+
+        // Most fixtures have errors, so the reports themselves are compared, and not only their absence
+        assertTrue(failing > 10);
+    }
+}
@@ -0,0 +1,91 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+import pt.up.fe.specs.util.SpecsSystem;
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ClassFileGeneratorTest {
+
+    private static final String FIXTURES = "test/pt/up/fe/comp/cpf/4_jasmin";
+
+    private static final Map<String, String> ARRAY_OUTPUTS = Map.of(
+            "ArrayAccess.ollir", "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5",
+            "ComplexArrayAccess.ollir", "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5",
+            "ArrayInitialization.ollir", "3",
+            "ArrayVarArgs.ollir", "1\n4",
+            "VarargsAndArrayInit.ollir", "8");
+
+    private static List<Path> fixtures() throws IOException {
+        try (Stream<Path> files = Files.walk(Path.of(FIXTURES))) {
+            return files.filter(file -> file.toString().endsWith(".ollir")).sorted().toList();
+        }
+    }
+
+    /**
+     * Writes the class file of the OLLIR code and runs it, as {@link pt.up.fe.comp.jmm.jasmin.JasminResult} runs the
+     * class Jasmin assembles.
+     */
+    private static ProcessOutputAsString runClassFile(OllirResult ollirResult) {
+        var result = new ClassFileBackendImpl().toClassFile(ollirResult);
+        assertTrue(result.getReports().toString(), result.getReports().isEmpty());
+
+        var outputDir = SpecsIo.getTempFolder("classfile");
+        SpecsIo.deleteFolderContents(outputDir);
+        result.write(outputDir);
+
+        var classpath = new ArrayList<String>();
+        classpath.add(outputDir.getAbsolutePath());
+        Collections.addAll(classpath, TestUtils.getLibsClasspath());
+
+        var command = List.of("java", "-cp", String.join(File.pathSeparator, classpath), result.getClassName());
+        return SpecsSystem.runProcess(command, SpecsIo.getWorkingDir(), true, false);
+    }
+
+    @Test
+    public void runsLikeTheJasminBackend() throws IOException {
+        for (var fixture : fixtures()) {
+            if (ARRAY_OUTPUTS.containsKey(fixture.getFileName().toString())) {
+                continue;
+            }
+
+            var ollirResult = new OllirResult(SpecsIo.read(fixture.toFile()), Collections.emptyMap());
+
+            var expected = TestUtils.backend(ollirResult).runWithFullOutput();
+            var actual = runClassFile(ollirResult);
+
+            assertEquals(fixture.toString(), expected.getReturnValue(), actual.getReturnValue());
+            assertEquals(fixture.toString(), expected.getOutput(), actual.getOutput());
+        }
+    }
+
+    /**
+     * These fixtures are expected to differ from the Jasmin backend, which loads and stores a whole array where the
+     * OLLIR code reads or assigns one of its elements, so they are checked against the outputs Cpf4_Jasmin expects.
+     */
+    @Test
+    public void loadsAndStoresArrayElements() {
+        ARRAY_OUTPUTS.forEach((fixture, expectedOutput) -> {
+            var ollirCode = SpecsIo.read(Path.of(FIXTURES, "arrays", fixture).toFile());
+            var actual = runClassFile(new OllirResult(ollirCode, Collections.emptyMap()));
+
+            assertEquals(fixture, 0, actual.getReturnValue());
+            assertEquals(fixture, expectedOutput, SpecsStrings.normalizeFileContents(actual.getOutput(), true));
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class JasminGeneratorTest {
+
+    private static List<Path> fixtures() throws IOException {
+        var fixtures = new ArrayList<Path>();
+
+        for (var dir : List.of("test/pt/up/fe/comp/cp2/jasmin", "test/pt/up/fe/comp/cpf/4_jasmin")) {
+            try (Stream<Path> files = Files.walk(Path.of(dir))) {
+                files.filter(file -> file.toString().endsWith(".ollir")).sorted().forEach(fixtures::add);
+            }
+        }
+
+        return fixtures;
+    }
+
+    @Test
+    public void generatesMethodsInParallelLikeSequentially() throws IOException {
+        var pool = new ForkJoinPool(4);
+
+        try {
+            for (var fixture : fixtures()) {
+                // Each generator gets its own class, so that nothing is shared but what the generator shares
+                var code = SpecsIo.read(fixture.toFile());
+                var sequential = new JasminGenerator(new OllirResult(code, new HashMap<>()).getOllirClass()).build();
+                var parallel = new JasminGenerator(new OllirResult(code, new HashMap<>()).getOllirClass(), pool).build();
+
+                assertEquals(fixture.toString(), sequential, parallel);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void describesObjectArguments() {
+        var code = """
+                import pt.up.Bar;
+
+                Foo {
+
+                    .construct Foo().V {
+                        invokespecial(this, "<init>").V;
+                    }
+
+                    .method public sum(x.Foo, y.Bar, z.i32).i32 {
+                        ret.i32 z.i32;
+                    }
+
+                    .method public call(a.Foo, b.Bar, c.i32).Foo {
+                        t.i32 :=.i32 invokevirtual(this, "sum", a.Foo, b.Bar, c.i32).i32;
+                        u.i32 :=.i32 invokevirtual(this, "sum", a.Foo, b.Bar, t.i32).i32;
+                        ret.Foo a.Foo;
+                    }
+                }
+                """;
+
+        var jasmin = new JasminGenerator(new OllirResult(code, new HashMap<>()).getOllirClass()).build();
+
+        assertTrue(jasmin, jasmin.contains(".method public sum(LFoo;Lpt/up/Bar;I)I"));
+        assertTrue(jasmin, jasmin.contains(".method public call(LFoo;Lpt/up/Bar;I)LFoo;"));
+        assertTrue(jasmin, jasmin.contains("invokevirtual Foo/sum(LFoo;Lpt/up/Bar;I)I"));
+
+        // Each call pops its three arguments and the object, so the second one starts from an empty stack
+        var call = jasmin.substring(jasmin.indexOf(".method public call"));
+        assertTrue(call, call.contains(".limit stack 4"));
+    }
+}
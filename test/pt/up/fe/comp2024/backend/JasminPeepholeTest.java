@@ -0,0 +1,135 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class JasminPeepholeTest {
+
+    private static List<String> optimize(String code) {
+        return JasminPeephole.optimize(code.lines().toList(), true);
+    }
+
+    @Test
+    public void shortForms() {
+        var code = """
+                ldc -1
+                ldc 5
+                ldc 6
+                ldc -129
+                ldc 40000
+                ldc "text"
+                iload 3
+                astore 4
+                """;
+
+        assertEquals(List.of("iconst_m1", "iconst_5", "bipush 6", "sipush -129", "ldc 40000", "ldc \"text\"",
+                "iload_3", "astore 4"), optimize(code));
+    }
+
+    @Test
+    public void increments() {
+        var code = """
+                iload 1
+                ldc 1
+                iadd
+                istore 2
+                iload 2
+                istore 1
+                ldc 200
+                iload 1
+                iadd
+                istore 1
+                iload 1
+                ldc 3
+                isub
+                istore 1
+                iload 1
+                ireturn
+                """;
+
+        assertEquals(List.of("iinc 1 1", "sipush 200", "iload_1", "iadd", "istore_1", "iinc 1 -3", "iload_1",
+                "ireturn"), optimize(code));
+    }
+
+    @Test
+    public void comparesWithZero() {
+        var code = """
+                iload 1
+                ldc 0
+                if_icmplt negative
+                ldc 0
+                iload 1
+                if_icmplt positive
+                ldc 0
+                ireturn
+                negative:
+                ldc -1
+                ireturn
+                positive:
+                ldc 1
+                ireturn
+                """;
+
+        assertEquals(List.of("iload_1", "iflt negative", "iload_1", "ifgt positive", "iconst_0", "ireturn",
+                "negative:", "iconst_m1", "ireturn", "positive:", "iconst_1", "ireturn"), optimize(code));
+    }
+
+    @Test
+    public void keepsStoresOfLiveValues() {
+        // The sum is read again after the loop, the temporary is not
+        var code = """
+                loop:
+                iload 1
+                iload 2
+                iadd
+                istore 3
+                iload 3
+                istore 1
+                iload 1
+                ifne loop
+                iload 1
+                ireturn
+                """;
+
+        assertEquals(List.of("loop:", "iload_1", "iload_2", "iadd", "istore_1", "iload_1", "ifne loop", "iload_1",
+                "ireturn"), optimize(code));
+    }
+
+    @Test
+    public void keepsStoresWithoutOptimizing() {
+        var code = """
+                ldc 2
+                istore 1
+                iload 1
+                ireturn
+                """;
+
+        assertEquals(List.of("iconst_2", "istore_1", "iload_1", "ireturn"),
+                JasminPeephole.optimize(code.lines().toList(), false));
+    }
+
+    @Test
+    public void keepsStoresReadAfterBranches() {
+        // The zero comparison makes the store and the load adjacent, but the value is still read at the label
+        var code = """
+                iload 1
+                ldc 1
+                iadd
+                istore 2
+                ldc 0
+                iload 2
+                if_icmplt pos
+                ldc 7
+                ireturn
+                pos:
+                iload 2
+                ireturn
+                """;
+
+        assertEquals(List.of("iload_1", "iconst_1", "iadd", "istore_2", "iload_2", "ifgt pos", "bipush 7", "ireturn",
+                "pos:", "iload_2", "ireturn"), optimize(code));
+    }
+}
@@ -0,0 +1,122 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class JasminStackCalculatorTest {
+
+    @Test
+    public void straightLine() {
+        var code = """
+                iconst_1
+                iload_1
+                iadd
+                bipush 10
+                imul
+                istore_2
+                return
+                """;
+
+        assertEquals(2, JasminStackCalculator.maxStack(code));
+    }
+
+    @Test
+    public void calls() {
+        var code = """
+                new Foo
+                dup
+                invokespecial Foo/<init>()V
+                astore_1
+                aload_1
+                iconst_1
+                iconst_2
+                iconst_3
+                invokevirtual Foo/sum(III)I
+                invokestatic io/println(I)V
+                getstatic java/lang/System/out Ljava/io/PrintStream;
+                aload_0
+                getfield Foo/x J
+                invokevirtual java/io/PrintStream/println(J)V
+                return
+                """;
+
+        assertEquals(4, JasminStackCalculator.maxStack(code));
+    }
+
+    @Test
+    public void arrays() {
+        var code = """
+                iconst_3
+                newarray int
+                astore_1
+                aload_1
+                iconst_0
+                bipush 7
+                iastore
+                aload_1
+                iconst_0
+                iaload
+                ireturn
+                """;
+
+        assertEquals(3, JasminStackCalculator.maxStack(code));
+    }
+
+    @Test
+    public void branches() {
+        // The value of the condition is pushed on either side, and both reach the end with one value
+        var code = """
+                iload_1
+                iload_2
+                if_icmplt true
+                iconst_0
+                goto end
+                true:
+                iconst_1
+                end:
+                iconst_2
+                iconst_3
+                iadd
+                iadd
+                ireturn
+                """;
+
+        assertEquals(3, JasminStackCalculator.maxStack(code));
+    }
+
+    @Test
+    public void loop() {
+        var code = """
+                loop:
+                iload_1
+                ifeq end
+                iinc 1 -1
+                goto loop
+                end:
+                return
+                """;
+
+        assertEquals(1, JasminStackCalculator.maxStack(code));
+    }
+
+    @Test
+    public void deepestPathOnlyOnBranch() {
+        // Code after the goto is only reached through the label, with the stack left by the branch
+        var code = """
+                iconst_1
+                ifne deep
+                return
+                deep:
+                iconst_1
+                iconst_2
+                iconst_3
+                iconst_4
+                pop2
+                pop2
+                return
+                """;
+
+        assertEquals(4, JasminStackCalculator.maxStack(code));
+    }
+}
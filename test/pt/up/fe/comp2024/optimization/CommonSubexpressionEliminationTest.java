@@ -0,0 +1,114 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+
+import static org.junit.Assert.*;
+
+public class CommonSubexpressionEliminationTest {
+
+    private static Method optimize(String body) {
+        return OllirTestUtils.optimizeFoo(".field public x.i32;", """
+                .method public foo(a.array.i32, i.i32, n.i32, c.bool).i32 {
+                """ + body + """
+                }
+                """, new CommonSubexpressionElimination()::optimize);
+    }
+
+    /**
+     * @return the name of the variable copied to the given one, or null if it is assigned something else
+     */
+    private static String copiedTo(Method method, String name) {
+        for (var inst : method.getInstructions()) {
+            if (inst instanceof AssignInstruction assign && ((Operand) assign.getDest()).getName().equals(name)) {
+                return assign.getRhs() instanceof SingleOpInstruction singleOp
+                        && singleOp.getSingleOperand() instanceof Operand operand
+                        && !(operand instanceof ArrayOperand) ? operand.getName() : null;
+            }
+        }
+
+        throw new AssertionError("No assignment to " + name);
+    }
+
+    @Test
+    public void reusesValuesInBlock() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 i.i32 +.i32 1.i32;
+                tmp1.i32 :=.i32 a[i.i32].i32;
+                tmp2.i32 :=.i32 arraylength(a.array.i32).i32;
+                tmp3.i32 :=.i32 1.i32 +.i32 i.i32;
+                tmp4.i32 :=.i32 a[i.i32].i32;
+                tmp5.i32 :=.i32 arraylength(a.array.i32).i32;
+                tmp6.i32 :=.i32 tmp3.i32 +.i32 tmp4.i32;
+                tmp7.i32 :=.i32 tmp6.i32 +.i32 tmp5.i32;
+                ret.i32 tmp7.i32;
+                """);
+
+        assertEquals("tmp0", copiedTo(method, "tmp3"));
+        assertEquals("tmp1", copiedTo(method, "tmp4"));
+        assertEquals("tmp2", copiedTo(method, "tmp5"));
+    }
+
+    @Test
+    public void recomputesAfterOperandChanges() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 i.i32 +.i32 1.i32;
+                i.i32 :=.i32 tmp0.i32;
+                tmp1.i32 :=.i32 i.i32 +.i32 1.i32;
+                ret.i32 tmp1.i32;
+                """);
+
+        assertNull(copiedTo(method, "tmp1"));
+    }
+
+    @Test
+    public void recomputesAfterStores() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 a[i.i32].i32;
+                a[n.i32].i32 :=.i32 0.i32;
+                tmp1.i32 :=.i32 a[i.i32].i32;
+                tmp2.i32 :=.i32 getfield(this, x.i32).i32;
+                invokevirtual(this, "bar").V;
+                tmp3.i32 :=.i32 getfield(this, x.i32).i32;
+                tmp4.i32 :=.i32 tmp1.i32 +.i32 tmp3.i32;
+                ret.i32 tmp4.i32;
+                """);
+
+        assertNull(copiedTo(method, "tmp1"));
+        assertNull(copiedTo(method, "tmp3"));
+    }
+
+    @Test
+    public void reusesValuesOfDominators() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 n.i32 *.i32 2.i32;
+                if (c.bool) goto other;
+                tmp1.i32 :=.i32 n.i32 *.i32 2.i32;
+                ret.i32 tmp1.i32;
+            other:
+                tmp2.i32 :=.i32 n.i32 *.i32 2.i32;
+                tmp3.i32 :=.i32 tmp0.i32 +.i32 tmp2.i32;
+                ret.i32 tmp3.i32;
+                """);
+
+        assertEquals("tmp0", copiedTo(method, "tmp1"));
+        assertEquals("tmp0", copiedTo(method, "tmp2"));
+    }
+
+    @Test
+    public void recomputesValuesOfLoopVariables() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 i.i32 *.i32 2.i32;
+            loop:
+                if (i.i32 >=.bool n.i32) goto end;
+                tmp1.i32 :=.i32 i.i32 *.i32 2.i32;
+                i.i32 :=.i32 i.i32 +.i32 tmp1.i32;
+                goto loop;
+            end:
+                ret.i32 tmp0.i32;
+                """);
+
+        // 'i' changes in the loop, after 'tmp0' was computed
+        assertNull(copiedTo(method, "tmp1"));
+    }
+}
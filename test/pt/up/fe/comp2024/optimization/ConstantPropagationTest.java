@@ -0,0 +1,93 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+
+import static org.junit.Assert.*;
+
+public class ConstantPropagationTest {
+
+    private static Method optimize(String method) {
+        return OllirTestUtils.optimizeFoo(method, new ConstantPropagation()::optimize);
+    }
+
+    private static String returned(Method method) {
+        var ret = (ReturnInstruction) method.getInstructions().get(method.getInstructions().size() - 1);
+        var operand = ret.getOperand();
+
+        return operand.isLiteral() ? ((LiteralElement) operand).getLiteral() : ((Operand) operand).getName();
+    }
+
+    @Test
+    public void foldsArithmetic() {
+        var method = optimize("""
+                .method public foo().i32 {
+                    a.i32 :=.i32 10.i32;
+                    b.i32 :=.i32 a.i32 *.i32 3.i32;
+                    c.i32 :=.i32 b.i32 -.i32 a.i32;
+                    ret.i32 c.i32;
+                }
+                """);
+
+        assertEquals("20", returned(method));
+    }
+
+    @Test
+    public void loopIsNotConstant() {
+        var method = optimize("""
+                .method public foo().i32 {
+                    i.i32 :=.i32 0.i32;
+                    a.i32 :=.i32 10.i32;
+                loop:
+                    if (i.i32 >=.bool a.i32) goto end;
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto loop;
+                end:
+                    r.i32 :=.i32 i.i32 *.i32 a.i32;
+                    ret.i32 r.i32;
+                }
+                """);
+
+        assertEquals("r", returned(method));
+
+        // a is still known inside the loop
+        var condition = (BinaryOpInstruction) ((OpCondInstruction) method.getInstructions().get(2)).getCondition();
+        assertTrue(condition.getRightOperand().isLiteral());
+    }
+
+    @Test
+    public void prunesBranches() {
+        var method = optimize("""
+                .method public foo(n.i32).i32 {
+                    a.i32 :=.i32 1.i32;
+                    if (a.i32 <.bool 0.i32) goto then;
+                    r.i32 :=.i32 n.i32;
+                    goto end;
+                then:
+                    r.i32 :=.i32 5.i32;
+                end:
+                    ret.i32 r.i32;
+                }
+                """);
+
+        // Only the assignments of a and r, the goto to the end, and the return are left
+        assertEquals(4, method.getInstructions().size());
+        assertFalse(method.getLabels().containsKey("then"));
+        assertEquals("r", returned(method));
+    }
+
+    @Test
+    public void onlyReachablePathsMerge() {
+        var method = optimize("""
+                .method public foo().i32 {
+                    a.i32 :=.i32 1.i32;
+                    if (a.i32 ==.bool 1.i32) goto same;
+                    a.i32 :=.i32 2.i32;
+                same:
+                    ret.i32 a.i32;
+                }
+                """);
+
+        assertEquals("1", returned(method));
+    }
+}
@@ -0,0 +1,74 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+
+import static org.junit.Assert.*;
+
+public class DeadCodeEliminationTest {
+
+    private static Method optimize(String method) {
+        return OllirTestUtils.optimizeFoo(method, new DeadCodeElimination()::optimize);
+    }
+
+    @Test
+    public void removesDeadStores() {
+        var method = optimize("""
+                .method public foo(n.i32).i32 {
+                    tmp0.i32 :=.i32 n.i32 +.i32 1.i32;
+                    tmp1.i32 :=.i32 tmp0.i32 *.i32 2.i32;
+                    a.i32 :=.i32 n.i32;
+                    ret.i32 a.i32;
+                }
+                """);
+
+        assertEquals(2, method.getInstructions().size());
+    }
+
+    @Test
+    public void mergesCopies() {
+        var method = optimize("""
+                .method public foo(n.i32).i32 {
+                    tmp0.i32 :=.i32 n.i32 +.i32 1.i32;
+                    a.i32 :=.i32 tmp0.i32;
+                    ret.i32 a.i32;
+                }
+                """);
+
+        assertEquals(2, method.getInstructions().size());
+        var assign = (AssignInstruction) method.getInstructions().get(0);
+        assertEquals("a", ((Operand) assign.getDest()).getName());
+        assertTrue(assign.getRhs() instanceof BinaryOpInstruction);
+    }
+
+    @Test
+    public void keepsSideEffects() {
+        var method = optimize("""
+                .method public foo(n.i32, a.array.i32).i32 {
+                    tmp0.i32 :=.i32 invokestatic(io, "read").i32;
+                    tmp1.i32 :=.i32 a[n.i32].i32;
+                    tmp2.i32 :=.i32 n.i32 /.i32 n.i32;
+                    ret.i32 n.i32;
+                }
+                """);
+
+        assertEquals(4, method.getInstructions().size());
+    }
+
+    @Test
+    public void removesUnreachable() {
+        var method = optimize("""
+                .method public foo(n.i32).i32 {
+                    goto end;
+                    n.i32 :=.i32 1.i32;
+                    invokestatic(io, "println", n.i32).V;
+                end:
+                    ret.i32 n.i32;
+                }
+                """);
+
+        // The goto to the return is also gone
+        assertEquals(1, method.getInstructions().size());
+        assertSame(method.getInstructions().get(0), method.getLabels().get("end"));
+    }
+}
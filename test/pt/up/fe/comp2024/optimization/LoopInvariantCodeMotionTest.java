@@ -0,0 +1,154 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+
+import static org.junit.Assert.*;
+
+public class LoopInvariantCodeMotionTest {
+
+    private static Method optimize(String method) {
+        return OllirTestUtils.optimizeFoo(".field private x.i32;", method, new LoopInvariantCodeMotion()::optimize);
+    }
+
+    /**
+     * @return the position of the assignment to the variable
+     */
+    private static int assignmentOf(Method method, String variable) {
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof AssignInstruction assign
+                    && ((Operand) assign.getDest()).getName().equals(variable)) {
+                return i;
+            }
+        }
+
+        throw new AssertionError("No assignment to " + variable);
+    }
+
+    private static int labeled(Method method, String label) {
+        return method.getInstructions().indexOf(method.getLabels().get(label));
+    }
+
+    @Test
+    public void hoistsArrayLength() {
+        var method = optimize("""
+                .method public foo(a.array.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                    s.i32 :=.i32 0.i32;
+                whilecond_0:
+                    tmp0.i32 :=.i32 arraylength(a.array.i32).i32;
+                    tmp1.bool :=.bool i.i32 <.bool tmp0.i32;
+                    if (tmp1.bool) goto whilebody_0;
+                    goto endwhile_0;
+                whilebody_0:
+                    tmp2.i32 :=.i32 a[i.i32].i32;
+                    s.i32 :=.i32 s.i32 +.i32 tmp2.i32;
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto whilecond_0;
+                endwhile_0:
+                    ret.i32 s.i32;
+                }
+                """);
+
+        // The loop jumps back past the length
+        assertTrue(assignmentOf(method, "tmp0") < labeled(method, "whilecond_0"));
+        assertEquals(labeled(method, "whilecond_0"), assignmentOf(method, "tmp1"));
+
+        // Elements are only read while the index is in bounds
+        assertTrue(assignmentOf(method, "tmp2") > labeled(method, "whilecond_0"));
+    }
+
+    @Test
+    public void hoistsArithmetic() {
+        var method = optimize("""
+                .method public foo(n.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                whilecond_0:
+                    if (i.i32 >=.bool n.i32) goto endwhile_0;
+                    tmp0.i32 :=.i32 n.i32 *.i32 2.i32;
+                    tmp1.i32 :=.i32 tmp0.i32 +.i32 1.i32;
+                    i.i32 :=.i32 i.i32 +.i32 tmp1.i32;
+                    goto whilecond_0;
+                endwhile_0:
+                    ret.i32 i.i32;
+                }
+                """);
+
+        assertTrue(assignmentOf(method, "tmp0") < assignmentOf(method, "tmp1"));
+        assertTrue(assignmentOf(method, "tmp1") < labeled(method, "whilecond_0"));
+        assertTrue(assignmentOf(method, "i") < assignmentOf(method, "tmp0"));
+    }
+
+    @Test
+    public void keepsValuesReadAfterLoop() {
+        var method = optimize("""
+                .method public foo(n.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                    t.i32 :=.i32 0.i32;
+                whilecond_0:
+                    if (i.i32 >=.bool n.i32) goto endwhile_0;
+                    t.i32 :=.i32 n.i32 *.i32 2.i32;
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto whilecond_0;
+                endwhile_0:
+                    ret.i32 t.i32;
+                }
+                """);
+
+        // When the loop does not run, 't' must still be 0
+        var assign = (AssignInstruction) method.getInstructions().get(labeled(method, "whilecond_0") + 1);
+        assertEquals("t", ((Operand) assign.getDest()).getName());
+        assertTrue(assign.getRhs() instanceof BinaryOpInstruction);
+    }
+
+    @Test
+    public void hoistsFieldsOnlyWithoutCalls() {
+        var loop = """
+                .method public foo(n.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                whilecond_0:
+                    if (i.i32 >=.bool n.i32) goto endwhile_0;
+                    tmp0.i32 :=.i32 getfield(this, x.i32).i32;
+                    i.i32 :=.i32 i.i32 +.i32 tmp0.i32;
+                    %s
+                    goto whilecond_0;
+                endwhile_0:
+                    ret.i32 i.i32;
+                }
+                """;
+
+        var method = optimize(loop.formatted(""));
+        assertTrue(assignmentOf(method, "tmp0") < labeled(method, "whilecond_0"));
+
+        method = optimize(loop.formatted("invokevirtual(this, \"bar\").V;"));
+        assertTrue(assignmentOf(method, "tmp0") > labeled(method, "whilecond_0"));
+    }
+
+    @Test
+    public void hoistsFromNestedLoops() {
+        var method = optimize("""
+                .method public foo(n.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                    s.i32 :=.i32 0.i32;
+                outer:
+                    if (i.i32 >=.bool n.i32) goto outerEnd;
+                    j.i32 :=.i32 0.i32;
+                inner:
+                    if (j.i32 >=.bool n.i32) goto innerEnd;
+                    tmp0.i32 :=.i32 n.i32 *.i32 n.i32;
+                    s.i32 :=.i32 s.i32 +.i32 tmp0.i32;
+                    j.i32 :=.i32 j.i32 +.i32 1.i32;
+                    goto inner;
+                innerEnd:
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto outer;
+                outerEnd:
+                    ret.i32 s.i32;
+                }
+                """);
+
+        assertTrue(assignmentOf(method, "tmp0") < labeled(method, "outer"));
+        assertTrue(assignmentOf(method, "j") > labeled(method, "outer"));
+    }
+}
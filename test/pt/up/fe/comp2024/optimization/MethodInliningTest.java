@@ -0,0 +1,173 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+
+import static org.junit.Assert.*;
+
+public class MethodInliningTest {
+
+    private static Method inline(String methods, int maxInstructions) {
+        return OllirTestUtils.optimizeFoo(methods, new MethodInlining(maxInstructions)::optimize);
+    }
+
+    private static long calls(Method method) {
+        return method.getInstructions().stream()
+                .filter(inst -> inst instanceof CallInstruction
+                        || (inst instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction))
+                .count();
+    }
+
+    private static String returned(Method method) {
+        var ret = (ReturnInstruction) method.getInstructions().get(method.getInstructions().size() - 1);
+        return ((LiteralElement) ret.getOperand()).getLiteral();
+    }
+
+    @Test
+    public void inlinesStaticCalls() {
+        var ollirClass = OllirTestUtils.parseFoo("""
+                .method public static foo().i32 {
+                    a.i32 :=.i32 invokestatic(Foo, "add", 2.i32, 3.i32).i32;
+                    ret.i32 a.i32;
+                }
+
+                .method public static add(a.i32, b.i32).i32 {
+                    tmp0.i32 :=.i32 a.i32 +.i32 b.i32;
+                    ret.i32 tmp0.i32;
+                }
+                """);
+
+        new MethodInlining(12).optimize(ollirClass);
+        var method = ollirClass.getMethod(1);
+        assertEquals(0, calls(method));
+
+        // The 'a' of the callee is not the 'a' of the caller
+        new ConstantPropagation().optimize(ollirClass);
+        assertEquals("5", returned(method));
+    }
+
+    @Test
+    public void renamesLabels() {
+        var ollirClass = OllirTestUtils.parseFoo("""
+                .method public static foo(n.i32).i32 {
+                    a.i32 :=.i32 invokestatic(Foo, "max", n.i32, 4.i32).i32;
+                    b.i32 :=.i32 invokestatic(Foo, "max", 7.i32, 5.i32).i32;
+                    ret.i32 b.i32;
+                }
+
+                .method public static max(a.i32, b.i32).i32 {
+                    if (a.i32 <.bool b.i32) goto second;
+                    ret.i32 a.i32;
+                second:
+                    ret.i32 b.i32;
+                }
+                """);
+
+        new MethodInlining(12).optimize(ollirClass);
+        var method = ollirClass.getMethod(1);
+        assertEquals(0, calls(method));
+        // Each copy has its own 'second', and a label after it for the first return
+        assertEquals(4, method.getLabels().size());
+
+        new ConstantPropagation().optimize(ollirClass);
+        assertEquals("7", returned(method));
+    }
+
+    @Test
+    public void copiesAssignedParameters() {
+        var ollirClass = OllirTestUtils.parseFoo("""
+                .method public static foo(n.i32).i32 {
+                    a.i32 :=.i32 invokestatic(Foo, "twice", n.i32).i32;
+                    ret.i32 n.i32;
+                }
+
+                .method public static twice(n.i32).i32 {
+                    n.i32 :=.i32 n.i32 *.i32 2.i32;
+                    ret.i32 n.i32;
+                }
+                """);
+
+        new MethodInlining(12).optimize(ollirClass);
+        var method = ollirClass.getMethod(1);
+
+        // The parameter of the caller keeps its value
+        var ret = (ReturnInstruction) method.getInstructions().get(method.getInstructions().size() - 1);
+        assertEquals("n", ((Operand) ret.getOperand()).getName());
+        for (var inst : method.getInstructions()) {
+            if (inst instanceof AssignInstruction assign) {
+                assertNotEquals("n", ((Operand) assign.getDest()).getName());
+            }
+        }
+    }
+
+    @Test
+    public void keepsRecursiveCalls() {
+        var method = inline("""
+                .method public static foo(n.i32).i32 {
+                    a.i32 :=.i32 invokestatic(Foo, "even", n.i32).i32;
+                    ret.i32 a.i32;
+                }
+
+                .method public static even(n.i32).i32 {
+                    if (n.i32 ==.bool 0.i32) goto yes;
+                    tmp0.i32 :=.i32 n.i32 -.i32 1.i32;
+                    tmp1.i32 :=.i32 invokestatic(Foo, "odd", tmp0.i32).i32;
+                    ret.i32 tmp1.i32;
+                yes:
+                    ret.i32 1.i32;
+                }
+
+                .method public static odd(n.i32).i32 {
+                    if (n.i32 ==.bool 0.i32) goto no;
+                    tmp0.i32 :=.i32 n.i32 -.i32 1.i32;
+                    tmp1.i32 :=.i32 invokestatic(Foo, "even", tmp0.i32).i32;
+                    ret.i32 tmp1.i32;
+                no:
+                    ret.i32 0.i32;
+                }
+                """, 12);
+
+        assertEquals(1, calls(method));
+    }
+
+    @Test
+    public void inlinesOnlyFinalInstanceMethods() {
+        var methods = """
+                .method public foo().i32 {
+                    a.i32 :=.i32 invokevirtual(this, "one").i32;
+                    b.i32 :=.i32 invokevirtual(this, "two").i32;
+                    tmp0.i32 :=.i32 a.i32 +.i32 b.i32;
+                    ret.i32 tmp0.i32;
+                }
+
+                .method public final one().i32 {
+                    ret.i32 1.i32;
+                }
+
+                .method public two().i32 {
+                    ret.i32 2.i32;
+                }
+                """;
+
+        // A subclass could override 'two'
+        assertEquals(1, calls(inline(methods, 12)));
+    }
+
+    @Test
+    public void respectsBudget() {
+        var methods = """
+                .method public static foo().i32 {
+                    a.i32 :=.i32 invokestatic(Foo, "add", 2.i32, 3.i32).i32;
+                    ret.i32 a.i32;
+                }
+
+                .method public static add(a.i32, b.i32).i32 {
+                    tmp0.i32 :=.i32 a.i32 +.i32 b.i32;
+                    ret.i32 tmp0.i32;
+                }
+                """;
+
+        assertEquals(1, calls(inline(methods, 1)));
+        assertEquals(0, calls(inline(methods, 2)));
+    }
+}
@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class OllirClassBuilderTest {
+
+    private static List<Path> fixtures() throws IOException {
+        var fixtures = new ArrayList<Path>();
+
+        // The fixtures of programs that compile, since the others never reach the OLLIR
+        for (var dir : List.of("test/pt/up/fe/comp/cp2/apps", "test/pt/up/fe/comp/cp2/jasmin",
+                "test/pt/up/fe/comp/cp2/ollir", "test/pt/up/fe/comp/cpf/3_ollir", "test/pt/up/fe/comp/cpf/4_jasmin",
+                "test/pt/up/fe/comp/cpf/5_optimizations")) {
+            try (Stream<Path> files = Files.walk(Path.of(dir))) {
+                files.filter(file -> file.toString().endsWith(".jmm")).sorted().forEach(fixtures::add);
+            }
+        }
+
+        return fixtures;
+    }
+
+    /**
+     * @return what {@link ClassUnit#show()} prints, which has every method, instruction and variable of the class
+     */
+    private static String show(ClassUnit ollirClass) {
+        var out = new ByteArrayOutputStream();
+        var stdout = System.out;
+
+        System.setOut(new PrintStream(out));
+        try {
+            ollirClass.show();
+        } finally {
+            System.setOut(stdout);
+        }
+
+        return out.toString();
+    }
+
+    @Test
+    public void buildsTheSameClassAsTheOllirParser() throws IOException {
+        int compared = 0;
+
+        for (var fixture : fixtures()) {
+            JmmSemanticsResult semanticsResult;
+            try {
+                semanticsResult = TestUtils.analyse(SpecsIo.read(fixture.toFile()));
+            } catch (RuntimeException e) {
+                // The analysis still fails on some programs, as on LocalLimits.jmm, which never reach either path
+                continue;
+            }
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                continue;
+            }
+
+            // None of these programs should fall back to the generated code
+            var optimization = new JmmOptimizationImpl();
+            var built = optimization.toOllirClass(semanticsResult);
+            assertTrue(fixture.toString(), built.isPresent());
+
+            var parsed = optimization.toOllir(semanticsResult).getOllirClass();
+            assertEquals(fixture.toString(), show(parsed), show(built.get()));
+            assertEquals(fixture.toString(), new JasminGenerator(parsed, null).build(),
+                    new JasminGenerator(built.get(), null).build());
+            compared++;
+        }
+
+        assertTrue("Compared only " + compared + " fixtures", compared >= 50);
+    }
+
+    @Test
+    public void fallsBackFromMethodsBuiltOnThePool() {
+        // The builder cannot tell which parameter 'a' is, so it gives up inside the method, wherever that is built
+        var code = "class A { public int foo(int a, int a) { return a; } public static void main(String[] args) {} }";
+
+        for (var parallelism : List.of("1", "2")) {
+            var semanticsResult = TestUtils.analyse(code, Map.of("parallelMethods", parallelism));
+            assertTrue(new JmmOptimizationImpl().toOllirClass(semanticsResult).isEmpty());
+        }
+    }
+}
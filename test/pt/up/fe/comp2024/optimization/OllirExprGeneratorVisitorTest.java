@@ -0,0 +1,101 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import java.util.HashSet;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class OllirExprGeneratorVisitorTest {
+
+    private static final Pattern TEMP = Pattern.compile("tmp\\d+");
+
+    /**
+     * Checks that each temporary is assigned once in its method, before it is read.
+     */
+    private static void assertTempsAssignedOnce(String ollirCode) {
+        var assigned = new HashSet<String>();
+
+        for (var line : ollirCode.lines().toList()) {
+            if (line.startsWith(".method")) {
+                assigned.clear();
+            }
+
+            var sides = line.split(":=", 2);
+            var readSide = sides.length == 2 ? sides[1] : sides[0];
+
+            var reads = TEMP.matcher(readSide);
+            while (reads.find()) {
+                assertTrue(reads.group() + " is read before it is assigned in\n" + ollirCode,
+                        assigned.contains(reads.group()));
+            }
+
+            if (sides.length == 2) {
+                var written = TEMP.matcher(sides[0]);
+                if (written.find()) {
+                    assertTrue(written.group() + " is assigned twice in\n" + ollirCode, assigned.add(written.group()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void computesEveryArgumentOfACall() {
+        var code = """
+                import io;
+                class Foo {
+                    public int sum(int a, int b, int c) {
+                        return a + b + c;
+                    }
+
+                    public static void main(String[] args) {
+                        Foo foo;
+                        foo = new Foo();
+                        io.println(foo.sum(1, 2 + 3, 4 * 5));
+                    }
+                }
+                """;
+
+        var ollirResult = TestUtils.optimize(code);
+        TestUtils.noErrors(ollirResult);
+        assertTempsAssignedOnce(ollirResult.getOllirCode());
+
+        assertEquals("26", TestUtils.backend(code).run().trim());
+    }
+
+    @Test
+    public void computesNestedExpressionsOnce() {
+        // Left-deep, a + a * 1 + a * 2 + ..., so that each sum nests all of the previous ones
+        var expression = new StringBuilder("a");
+        int expected = 2;
+        for (int i = 1; i <= 100; i++) {
+            expression.append(" + a * ").append(i);
+            expected += 2 * i;
+        }
+
+        var code = """
+                import io;
+                class Foo {
+                    public static void main(String[] args) {
+                        int a;
+                        int b;
+                        a = 2;
+                        b = %s;
+                        io.println(b);
+                    }
+                }
+                """.formatted(expression);
+
+        var ollirResult = TestUtils.optimize(code);
+        TestUtils.noErrors(ollirResult);
+        var ollirCode = ollirResult.getOllirCode();
+        assertTempsAssignedOnce(ollirCode);
+
+        // One temporary for each product and each sum
+        assertEquals(200, ollirCode.lines().filter(line -> line.startsWith("tmp")).count());
+
+        assertEquals(String.valueOf(expected), TestUtils.backend(code).run().trim());
+    }
+}
@@ -0,0 +1,52 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Builds the OLLIR classes the optimization tests run on, a class Foo with a constructor and the members under test.
+ */
+class OllirTestUtils {
+
+    /**
+     * @param fields  the fields of the class, declared before its constructor
+     * @param methods the methods of the class, declared after its constructor
+     */
+    static ClassUnit parseFoo(String fields, String methods) {
+        var code = """
+                Foo {
+                """ + fields + """
+
+                    .construct Foo().V {
+                        invokespecial(this, "<init>").V;
+                    }
+
+                """ + methods + """
+                }
+                """;
+
+        return new OllirResult(code, new HashMap<>()).getOllirClass();
+    }
+
+    static ClassUnit parseFoo(String methods) {
+        return parseFoo("", methods);
+    }
+
+    /**
+     * @return the first method after the constructor, once the optimization ran on the class
+     */
+    static Method optimizeFoo(String fields, String methods, Consumer<ClassUnit> optimization) {
+        var ollirClass = parseFoo(fields, methods);
+        optimization.accept(ollirClass);
+
+        return ollirClass.getMethod(1);
+    }
+
+    static Method optimizeFoo(String methods, Consumer<ClassUnit> optimization) {
+        return optimizeFoo("", methods, optimization);
+    }
+}
@@ -0,0 +1,52 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import static org.junit.Assert.*;
+
+public class RegisterAllocatorTest {
+
+    private static final String SUM = """
+            .method public sum(n.i32).i32 {
+                a.i32 :=.i32 1.i32;
+                b.i32 :=.i32 a.i32 +.i32 n.i32;
+                c.i32 :=.i32 b.i32 *.i32 2.i32;
+                d.i32 :=.i32 c.i32 +.i32 n.i32;
+                e.i32 :=.i32 d.i32 +.i32 c.i32;
+                ret.i32 e.i32;
+            }
+            """;
+
+    private static int register(ClassUnit ollirClass, String variable) {
+        return ollirClass.getMethod(1).getVarTable().get(variable).getVirtualReg();
+    }
+
+    @Test
+    public void reusesRegisters() {
+        var ollirClass = OllirTestUtils.parseFoo(SUM);
+        var reports = new RegisterAllocator(0).allocate(ollirClass);
+
+        assertFalse(ReportUtils.anyError(reports));
+        assertEquals(1, register(ollirClass, "n"));
+
+        // c is still needed when d is defined, every other local can share a register
+        assertEquals(2, register(ollirClass, "a"));
+        assertEquals(2, register(ollirClass, "b"));
+        assertNotEquals(register(ollirClass, "c"), register(ollirClass, "d"));
+        assertEquals(3, Math.max(register(ollirClass, "c"), register(ollirClass, "d")));
+    }
+
+    @Test
+    public void tooFewRegisters() {
+        var ollirClass = OllirTestUtils.parseFoo(SUM);
+        var reports = new RegisterAllocator(3).allocate(ollirClass);
+
+        assertTrue(ReportUtils.anyError(reports));
+
+        // The method is left as it was
+        assertEquals(2, register(ollirClass, "a"));
+        assertEquals(6, register(ollirClass, "e"));
+    }
+}
@@ -0,0 +1,156 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+
+import static org.junit.Assert.*;
+
+public class StrengthReductionTest {
+
+    private static Method optimize(String body) {
+        return OllirTestUtils.optimizeFoo("""
+                .method public static foo(a.array.i32, x.i32, n.i32, b.bool).i32 {
+                """ + body + """
+                }
+                """, new StrengthReduction()::optimize);
+    }
+
+    private static Instruction rhsOf(Method method, String name) {
+        for (var inst : method.getInstructions()) {
+            if (inst instanceof AssignInstruction assign && ((Operand) assign.getDest()).getName().equals(name)) {
+                return assign.getRhs();
+            }
+        }
+
+        throw new AssertionError("No assignment to " + name);
+    }
+
+    private static String valueOf(Method method, String name) {
+        var element = ((SingleOpInstruction) rhsOf(method, name)).getSingleOperand();
+        return element instanceof LiteralElement literal ? literal.getLiteral() : ((Operand) element).getName();
+    }
+
+    private static long countOf(Method method, OperationType opType) {
+        return method.getInstructions().stream()
+                .filter(inst -> inst instanceof AssignInstruction assign
+                        && assign.getRhs() instanceof BinaryOpInstruction binaryOp
+                        && binaryOp.getOperation().getOpType() == opType)
+                .count();
+    }
+
+    @Test
+    public void simplifiesIdentities() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 x.i32 *.i32 0.i32;
+                tmp1.i32 :=.i32 0.i32 +.i32 x.i32;
+                tmp2.i32 :=.i32 x.i32 *.i32 1.i32;
+                tmp3.bool :=.bool b.bool &&.bool 1.bool;
+                tmp4.bool :=.bool !.bool b.bool;
+                tmp5.bool :=.bool !.bool tmp4.bool;
+                tmp6.i32 :=.i32 tmp0.i32 +.i32 tmp1.i32;
+                ret.i32 tmp6.i32;
+                """);
+
+        assertEquals("0", valueOf(method, "tmp0"));
+        assertEquals("x", valueOf(method, "tmp1"));
+        assertEquals("x", valueOf(method, "tmp2"));
+        assertEquals("b", valueOf(method, "tmp3"));
+        assertEquals("b", valueOf(method, "tmp5"));
+    }
+
+    @Test
+    public void keepsNegationsOfChangedValues() {
+        var method = optimize("""
+                tmp0.bool :=.bool !.bool b.bool;
+                b.bool :=.bool 0.bool;
+                tmp1.bool :=.bool !.bool tmp0.bool;
+                ret.bool tmp1.bool;
+                """);
+
+        assertTrue(rhsOf(method, "tmp1") instanceof UnaryOpInstruction);
+    }
+
+    @Test
+    public void shiftsPowersOfTwo() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 x.i32 *.i32 8.i32;
+                tmp1.i32 :=.i32 x.i32 /.i32 4.i32;
+                tmp2.i32 :=.i32 x.i32 /.i32 3.i32;
+                tmp3.i32 :=.i32 tmp0.i32 +.i32 tmp1.i32;
+                tmp4.i32 :=.i32 tmp3.i32 +.i32 tmp2.i32;
+                ret.i32 tmp4.i32;
+                """);
+
+        assertEquals(0, countOf(method, OperationType.MUL));
+        assertEquals(1, countOf(method, OperationType.SHL));
+        // Only the division by 3 is still one
+        assertEquals(1, countOf(method, OperationType.DIV));
+        assertEquals(1, countOf(method, OperationType.SHRR));
+    }
+
+    @Test
+    public void dividesTowardsZero() {
+        for (int shift = 1; shift < 31; shift++) {
+            for (int x : new int[]{-7, -1, 0, 1, 7, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+                // What the instructions of a division by 2^shift compute
+                int sign = shift > 1 ? x >> 31 : x;
+                int bias = sign >>> (32 - shift);
+                assertEquals(x / (1 << shift), (x + bias) >> shift);
+            }
+        }
+    }
+
+    @Test
+    public void reducesInductionMultiplications() {
+        var method = optimize("""
+                i.i32 :=.i32 0.i32;
+                s.i32 :=.i32 0.i32;
+            loop:
+                if (i.i32 >=.bool n.i32) goto end;
+                tmp0.i32 :=.i32 i.i32 *.i32 12.i32;
+                s.i32 :=.i32 s.i32 +.i32 tmp0.i32;
+                i.i32 :=.i32 i.i32 +.i32 2.i32;
+                goto loop;
+            end:
+                ret.i32 s.i32;
+                """);
+
+        var instructions = method.getInstructions();
+        var loop = method.getLabels().get("loop");
+        int header = instructions.indexOf(loop);
+
+        // The product starts before the loop, and grows by 24 with each iteration
+        assertEquals(1, countOf(method, OperationType.MUL));
+        var initial = (AssignInstruction) instructions.get(header - 1);
+        assertTrue(initial.getRhs() instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getOperation().getOpType() == OperationType.MUL);
+
+        var product = ((Operand) initial.getDest()).getName();
+        assertEquals(product, valueOf(method, "tmp0"));
+
+        var increment = instructions.indexOf(instructions.stream()
+                .filter(inst -> inst instanceof AssignInstruction assign
+                        && ((Operand) assign.getDest()).getName().equals("i")
+                        && assign.getRhs() instanceof BinaryOpInstruction)
+                .findFirst().orElseThrow());
+        var update = (BinaryOpInstruction) ((AssignInstruction) instructions.get(increment + 1)).getRhs();
+        assertEquals("24", ((LiteralElement) update.getRightOperand()).getLiteral());
+    }
+
+    @Test
+    public void keepsMultiplicationsOfOtherVariables() {
+        var method = optimize("""
+                i.i32 :=.i32 0.i32;
+            loop:
+                if (i.i32 >=.bool n.i32) goto end;
+                tmp0.i32 :=.i32 i.i32 *.i32 3.i32;
+                i.i32 :=.i32 tmp0.i32 +.i32 1.i32;
+                goto loop;
+            end:
+                ret.i32 i.i32;
+                """);
+
+        // 'i' does not grow by a constant
+        assertTrue(rhsOf(method, "tmp0") instanceof BinaryOpInstruction);
+    }
+}
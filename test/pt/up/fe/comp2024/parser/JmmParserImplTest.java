@@ -0,0 +1,171 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.ast.NodeUtils;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class JmmParserImplTest {
+
+    private static final String FOO = """
+            import io;
+
+            class Foo {
+                int field;
+
+                public int sum(int[] values) {
+                    int i;
+                    int sum;
+                    i = 0;
+                    sum = 0;
+                    while (i < values.length) {
+                        sum = sum + values[i];
+                        i = i + 1;
+                    }
+                    return sum;
+                }
+            }
+            """;
+
+    private static final String BAR = """
+            class Bar extends Foo {
+                public static void main(String[] args) {
+                    io.println(new Bar().sum([1, 2, 3]));
+                }
+            }
+            """;
+
+    // Misses the semicolon after the assignment
+    private static final String SYNTAX_ERROR = """
+            class Foo {
+                public int foo(int a) {
+                    a = a + 1
+                    return a;
+                }
+            }
+            """;
+
+    private static final Map<String, String> REUSE = Map.of("reuseParser", "true");
+
+    /**
+     * @return the tree of the AST followed by the position of each node, which the tree leaves out
+     */
+    private static String tree(JmmParserResult result) {
+        TestUtils.noErrors(result);
+
+        var root = result.getRootNode();
+        return root.toTree() + root.getDescendantsAndSelfStream()
+                .map(node -> NodeUtils.getLine(node) + ":" + NodeUtils.getColumn(node))
+                .collect(Collectors.joining(" "));
+    }
+
+    @Test
+    public void reusesTheParserForDifferentSources() {
+        var parser = new JmmParserImpl();
+        var foo = tree(parser.parse(FOO, REUSE));
+        var bar = tree(parser.parse(BAR, REUSE));
+
+        // The second parse must not see anything left from the first one
+        assertEquals(tree(parser.parse(FOO, Map.of())), foo);
+        assertEquals(tree(parser.parse(BAR, Map.of())), bar);
+        assertTrue(foo.contains("className: Foo"));
+        assertTrue(bar.contains("className: Bar"));
+
+        // And the first source parses the same once more
+        assertEquals(foo, tree(parser.parse(FOO, REUSE)));
+    }
+
+    @Test
+    public void parsesReadersLikeStrings() {
+        var parser = new JmmParserImpl();
+
+        for (var config : List.of(Map.<String, String>of(), REUSE)) {
+            assertEquals(tree(parser.parse(FOO, config)), tree(parser.parse(new StringReader(FOO), config)));
+        }
+    }
+
+    @Test
+    public void parsesCharBuffersLikeStrings() {
+        var parser = new JmmParserImpl();
+        var expected = tree(parser.parse(FOO, Map.of()));
+
+        // Backed by an array that is used directly
+        assertEquals(expected, tree(parser.parse(CharBuffer.wrap(FOO.toCharArray()), REUSE)));
+
+        // Not backed by an array
+        assertEquals(expected, tree(parser.parse(CharBuffer.wrap(FOO), REUSE)));
+
+        // Backed by an array, but only from the buffer position on
+        var prefix = "class Ignored { }";
+        var buffer = CharBuffer.wrap((prefix + FOO).toCharArray());
+        buffer.position(prefix.length());
+        assertEquals(expected, tree(parser.parse(buffer, Map.of())));
+        assertEquals(prefix.length(), buffer.position());
+    }
+
+    /**
+     * @return the messages logging the prediction mode of the parse, only given when SLL is tried first
+     */
+    private static List<String> parseModes(JmmParserResult result) {
+        return result.getReports().stream()
+                .filter(report -> report.getType() == ReportType.LOG)
+                .map(Report::getMessage)
+                .filter(message -> message.startsWith("Parsed with"))
+                .toList();
+    }
+
+    private static List<String> errors(JmmParserResult result) {
+        return result.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .map(Report::toString)
+                .toList();
+    }
+
+    @Test
+    public void parsesValidCodeWithSll() {
+        var parser = new JmmParserImpl();
+
+        for (var reuse : List.of("false", "true")) {
+            var config = Map.of("parseMode", "SLL", "reuseParser", reuse);
+
+            for (var code : List.of(FOO, BAR)) {
+                var result = parser.parse(code, config);
+
+                assertEquals(List.of("Parsed with SLL prediction"), parseModes(result));
+                assertEquals(tree(parser.parse(code, Map.of())), tree(result));
+            }
+        }
+    }
+
+    @Test
+    public void reportsSyntaxErrorsFromLl() {
+        var parser = new JmmParserImpl();
+        var llResult = parser.parse(SYNTAX_ERROR, Map.of());
+        var llErrors = errors(llResult);
+
+        assertFalse(llErrors.isEmpty());
+        assertEquals(List.of(), parseModes(llResult));
+
+        for (var reuse : List.of("false", "true")) {
+            // SLL gives up on the first error, and the input is parsed again with LL to report the errors as usual
+            var result = parser.parse(SYNTAX_ERROR, Map.of("parseMode", "SLL", "reuseParser", reuse));
+
+            assertEquals(List.of("Parsed with LL prediction"), parseModes(result));
+            assertEquals(llErrors, errors(result));
+
+            // A parser that fell back to LL still starts the next parse with SLL
+            assertEquals(List.of("Parsed with SLL prediction"),
+                    parseModes(parser.parse(FOO, Map.of("parseMode", "SLL", "reuseParser", reuse))));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package pt.up.fe.comp2024.symboltable;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JmmSymbolTableTest {
+
+    private static final String CODE = """
+            import io;
+            import pt.up.Foo;
+
+            class Scopes {
+                int field;
+                boolean shadowed;
+
+                public int method(int param, int[] hidden) {
+                    boolean hidden;
+                    int local;
+                    return 0;
+                }
+
+                public int other(Scopes shadowed) {
+                    return 0;
+                }
+            }
+            """;
+
+    /**
+     * A symbol table that is not a {@link JmmSymbolTable}, as given by other implementations of the analysis.
+     */
+    private record DelegatingTable(SymbolTable table) implements SymbolTable {
+
+        @Override
+        public List<String> getImports() {
+            return table.getImports();
+        }
+
+        @Override
+        public String getClassName() {
+            return table.getClassName();
+        }
+
+        @Override
+        public String getSuper() {
+            return table.getSuper();
+        }
+
+        @Override
+        public List<Symbol> getFields() {
+            return table.getFields();
+        }
+
+        @Override
+        public List<String> getMethods() {
+            return table.getMethods();
+        }
+
+        @Override
+        public Type getReturnType(String methodSignature) {
+            return table.getReturnType(methodSignature);
+        }
+
+        @Override
+        public List<Symbol> getParameters(String methodSignature) {
+            return table.getParameters(methodSignature);
+        }
+
+        @Override
+        public List<Symbol> getLocalVariables(String methodSignature) {
+            return table.getLocalVariables(methodSignature);
+        }
+    }
+
+    private static JmmSymbolTable build() {
+        return JmmSymbolTableBuilder.build(TestUtils.parse(CODE).getRootNode());
+    }
+
+    private static void assertResolves(JmmSymbolTable table, String method, String name, ResolvedSymbol.Scope scope,
+                                       Type type) {
+        var symbol = table.resolve(method, name);
+
+        assertTrue(method + ":" + name, symbol.isPresent());
+        assertEquals(name, symbol.get().getName());
+        assertEquals(scope, symbol.get().getScope());
+        assertEquals(type, symbol.get().getType());
+    }
+
+    @Test
+    public void resolvesLocals() {
+        assertResolves(build(), "method", "local", ResolvedSymbol.Scope.LOCAL, new Type("int", false));
+    }
+
+    @Test
+    public void resolvesParams() {
+        assertResolves(build(), "method", "param", ResolvedSymbol.Scope.PARAM, new Type("int", false));
+    }
+
+    @Test
+    public void resolvesFields() {
+        var table = build();
+
+        assertResolves(table, "method", "field", ResolvedSymbol.Scope.FIELD, new Type("int", false));
+        assertTrue(table.resolve("method", "field").get().isField());
+    }
+
+    @Test
+    public void resolvesInnerScopesFirst() {
+        var table = build();
+
+        // Locals hide parameters, and parameters hide fields
+        assertResolves(table, "method", "hidden", ResolvedSymbol.Scope.LOCAL, new Type("boolean", false));
+        assertResolves(table, "other", "shadowed", ResolvedSymbol.Scope.PARAM, new Type("Scopes", false));
+        assertResolves(table, "method", "shadowed", ResolvedSymbol.Scope.FIELD, new Type("boolean", false));
+    }
+
+    @Test
+    public void doesNotResolveOtherMethodsOrImports() {
+        var table = build();
+
+        assertTrue(table.resolve("other", "local").isEmpty());
+        assertTrue(table.resolve("other", "param").isEmpty());
+        assertTrue(table.resolve("method", "io").isEmpty());
+        assertTrue(table.resolve("method", "undeclared").isEmpty());
+    }
+
+    @Test
+    public void findsImports() {
+        var table = build();
+
+        assertTrue(table.isImported("io"));
+        assertTrue(table.isImported("Foo"));
+        assertFalse(table.isImported("pt"));
+        assertFalse(table.isImported("Scopes"));
+    }
+
+    @Test
+    public void doesNotTakeVariablesForImports() {
+        var table = build();
+
+        assertFalse(table.isImported("local"));
+        assertFalse(table.isImported("param"));
+        assertFalse(table.isImported("field"));
+    }
+
+    @Test
+    public void copiesOtherTables() {
+        var table = build();
+        assertSame(table, JmmSymbolTable.of(table));
+
+        var copy = JmmSymbolTable.of(new DelegatingTable(table));
+
+        assertResolves(copy, "method", "hidden", ResolvedSymbol.Scope.LOCAL, new Type("boolean", false));
+        assertResolves(copy, "other", "shadowed", ResolvedSymbol.Scope.PARAM, new Type("Scopes", false));
+        assertResolves(copy, "method", "field", ResolvedSymbol.Scope.FIELD, new Type("int", false));
+        assertTrue(copy.isImported("Foo"));
+    }
+}
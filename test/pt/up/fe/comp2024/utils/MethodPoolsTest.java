@@ -0,0 +1,24 @@
+package pt.up.fe.comp2024.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MethodPoolsTest {
+
+    @Test
+    public void shutsDownThePoolOfEachStage() {
+        var pool = MethodPools.run(2, methodPool -> {
+            assertEquals(2, methodPool.getParallelism());
+            assertFalse(methodPool.isShutdown());
+            return methodPool;
+        });
+
+        assertTrue(pool.isShutdown());
+    }
+
+    @Test
+    public void runsWithoutAPoolSequentially() {
+        assertNull(MethodPools.run(1, methodPool -> methodPool));
+    }
+}
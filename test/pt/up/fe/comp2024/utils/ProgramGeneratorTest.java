@@ -0,0 +1,54 @@
+package pt.up.fe.comp2024.utils;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProgramGeneratorTest {
+
+    private static void compiles(ProgramGenerator generator) {
+        var result = TestUtils.backend(generator.generate());
+        TestUtils.noErrors(result.getReports());
+    }
+
+    @Test
+    public void sameSeedSameProgram() {
+        var first = new ProgramGenerator().setSeed(42).generate();
+        var second = new ProgramGenerator().setSeed(42).generate();
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void manyMethods() {
+        compiles(new ProgramGenerator().setMethods(300));
+    }
+
+    @Test
+    public void manyStatements() {
+        compiles(new ProgramGenerator().setMethods(1).setStatements(1000));
+    }
+
+    @Test
+    public void manyLocals() {
+        compiles(new ProgramGenerator().setMethods(1).setLocals(1000));
+    }
+
+    @Test
+    public void deepExpressions() {
+        compiles(new ProgramGenerator().setMethods(1).setExpressionDepth(300));
+    }
+
+    @Test
+    public void deepControlFlow() {
+        compiles(new ProgramGenerator().setMethods(3).setControlDepth(8));
+    }
+
+    @Test
+    public void severalSeeds() {
+        for (int seed = 0; seed < 20; seed++) {
+            compiles(new ProgramGenerator().setSeed(seed));
+        }
+    }
+}